@@ -67,6 +67,7 @@ create table if not exists question_bank_question
     userId         bigint                             not null comment '创建用户 id',
     createTime     datetime default CURRENT_TIMESTAMP not null comment '创建时间',
     updateTime     datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    -- 按题库查询题目时的半连接走此索引
     UNIQUE (questionBankId, questionId)
 ) comment '题库题目' collate = utf8mb4_unicode_ci;
 
@@ -93,4 +94,105 @@ create table if not exists mock_interview
     updateTime     datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
     isDelete       tinyint  default 0                 not null comment '是否删除（逻辑删除）',
     index idx_userId (userId)
-) comment '模拟面试' collate = utf8mb4_unicode_ci;
\ No newline at end of file
+) comment '模拟面试' collate = utf8mb4_unicode_ci;
+
+-- 功能扩展：题目、帖子变更同步到 ES（发件箱）
+-- ES 同步发件箱（由触发器在业务事务中写入，同步任务按 id 顺序消费）
+create table if not exists es_sync_outbox
+(
+    id         bigint auto_increment comment 'id' primary key,
+    entityType varchar(32)                        not null comment '实体类型：question/post',
+    entityId   bigint                             not null comment '实体 id',
+    createTime datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    index idx_createTime (createTime)
+) comment 'ES 同步发件箱' collate = utf8mb4_unicode_ci;
+
+-- ES 同步位点
+create table if not exists es_sync_checkpoint
+(
+    name       varchar(64)                        not null comment '同步任务名' primary key,
+    lastId     bigint   default 0                 not null comment '已同步的最大发件箱 id',
+    updateTime datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间'
+) comment 'ES 同步位点' collate = utf8mb4_unicode_ci;
+
+-- 题目、帖子变更时写入发件箱（开启 binlog 时需要 log_bin_trust_function_creators 或 SUPER 权限）
+create trigger question_es_sync_insert after insert on question
+    for each row insert into es_sync_outbox (entityType, entityId) values ('question', NEW.id);
+create trigger question_es_sync_update after update on question
+    for each row insert into es_sync_outbox (entityType, entityId) values ('question', NEW.id);
+create trigger question_es_sync_delete after delete on question
+    for each row insert into es_sync_outbox (entityType, entityId) values ('question', OLD.id);
+create trigger post_es_sync_insert after insert on post
+    for each row insert into es_sync_outbox (entityType, entityId) values ('post', NEW.id);
+create trigger post_es_sync_update after update on post
+    for each row insert into es_sync_outbox (entityType, entityId) values ('post', NEW.id);
+create trigger post_es_sync_delete after delete on post
+    for each row insert into es_sync_outbox (entityType, entityId) values ('post', OLD.id);
+
+-- 功能扩展：MySQL 题目搜索走索引（不使用 ES 时）
+-- 标题、内容、答案的 ngram 全文索引（match 的列必须与某个全文索引的列完全一致）
+-- ngram 会丢弃包含停用词的词元，建议设置 innodb_ft_enable_stopword = OFF 后再建索引
+ALTER TABLE question
+    ADD FULLTEXT INDEX ft_title_content (title, content) WITH PARSER ngram,
+    ADD FULLTEXT INDEX ft_title (title) WITH PARSER ngram,
+    ADD FULLTEXT INDEX ft_content (content) WITH PARSER ngram,
+    ADD FULLTEXT INDEX ft_answer (answer) WITH PARSER ngram;
+
+-- 题目标签表（由触发器根据 question.tags 维护，只包含未删除的题目）
+create table if not exists question_tag
+(
+    tag        varchar(256) not null comment '标签',
+    questionId bigint       not null comment '题目 id',
+    primary key (tag, questionId),
+    index idx_questionId (questionId)
+) comment '题目标签' collate = utf8mb4_unicode_ci;
+
+-- 题目变更时重写标签（需要 MySQL 8.0 的 json_table），标签和删除状态都没变时跳过
+create trigger question_tag_insert after insert on question
+    for each row insert ignore into question_tag (tag, questionId)
+        select jt.tag, NEW.id from json_table(NEW.tags, '$[*]' columns (tag varchar(256) path '$')) jt
+        where NEW.isDelete = 0 and jt.tag is not null;
+create trigger question_tag_update_delete after update on question
+    for each row delete from question_tag where questionId = OLD.id
+        and not (OLD.tags <=> NEW.tags and OLD.isDelete <=> NEW.isDelete);
+create trigger question_tag_update_insert after update on question
+    for each row follows question_tag_update_delete insert ignore into question_tag (tag, questionId)
+        select jt.tag, NEW.id from json_table(NEW.tags, '$[*]' columns (tag varchar(256) path '$')) jt
+        where NEW.isDelete = 0 and jt.tag is not null
+          and not (OLD.tags <=> NEW.tags and OLD.isDelete <=> NEW.isDelete);
+create trigger question_tag_delete after delete on question
+    for each row delete from question_tag where questionId = OLD.id;
+
+-- 已有数据回填标签
+insert ignore into question_tag (tag, questionId)
+select jt.tag, q.id
+from question q,
+     json_table(q.tags, '$[*]' columns (tag varchar(256) path '$')) jt
+where q.isDelete = 0 and jt.tag is not null;
+
+-- 功能扩展：AI 生成题目异步任务
+create table if not exists ai_generate_job
+(
+    id            bigint auto_increment comment 'id' primary key,
+    userId        bigint                             not null comment '创建用户 id',
+    questionType  varchar(128)                       not null comment '题目方向',
+    number        int                                not null comment '题目数量',
+    status        tinyint  default 0                 not null comment '状态：0-等待中 1-运行中 2-成功 3-失败',
+    totalCount    int      default 0                 not null comment '需要生成题解的题目数',
+    finishedCount int      default 0                 not null comment '已完成（含失败）的题解数',
+    questionIds   text                               null comment '生成的题目 id 列表（json 数组）',
+    errorMessage  varchar(512)                       null comment '失败原因',
+    workerId      varchar(128)                       null comment '执行节点',
+    retryCount    int      default 0                 not null comment '执行节点失联后重新排队的次数',
+    heartbeatTime datetime                           null comment '执行节点心跳时间',
+    createTime    datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime    datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    index idx_status_id (status, id),
+    index idx_userId_status (userId, status)
+) comment 'AI 生成题目任务' collate = utf8mb4_unicode_ci;
+
+-- AI 生成题目任务认领锁（认领时锁定这一行，保证并发上限检查与认领在所有节点间串行执行）
+create table if not exists ai_generate_job_lock
+(
+    name varchar(64) not null comment '锁名' primary key
+) comment 'AI 生成题目任务认领锁' collate = utf8mb4_unicode_ci;
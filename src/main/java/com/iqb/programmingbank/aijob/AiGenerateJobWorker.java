@@ -0,0 +1,224 @@
+package com.iqb.programmingbank.aijob;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.iqb.programmingbank.config.AiJobConfig;
+import com.iqb.programmingbank.exception.BusinessException;
+import com.iqb.programmingbank.mapper.AiGenerateJobMapper;
+import com.iqb.programmingbank.model.entity.AiGenerateJob;
+import com.iqb.programmingbank.model.entity.Question;
+import com.iqb.programmingbank.model.entity.User;
+import com.iqb.programmingbank.model.enums.AiGenerateJobStatusEnum;
+import com.iqb.programmingbank.service.AiGenerateJobService;
+import com.iqb.programmingbank.service.QuestionService;
+import com.iqb.programmingbank.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI 生成题目任务执行器
+ * <p>
+ * 任务提交后保存在 ai_generate_job 表中，各节点定时轮询等待中的任务，认领后在本节点的专用线程池中执行，
+ * 不占用 Web 请求线程。同时执行的任务数受本节点线程数、所有节点总数和每个用户的上限限制（后两者在认领事务内检查）。
+ * 执行中在独立线程上定时刷新心跳（不与其他定时任务共用调度线程，避免被长任务拖延而误判失联）；停机时未完成的任务放回队列，宕机后心跳超时的任务由任意节点重新排队，从头重新生成。
+ * 生成的题目与任务状态在同一事务内保存，任务已被其他节点接管时不会重复保存。
+ */
+@Slf4j
+@Component
+public class AiGenerateJobWorker {
+
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 512;
+
+    @Resource
+    private AiJobConfig aiJobConfig;
+
+    @Resource
+    private AiGenerateJobMapper aiGenerateJobMapper;
+
+    @Resource
+    private QuestionService questionService;
+
+    @Resource
+    private AiGenerateJobService aiGenerateJobService;
+
+    @Resource
+    private UserService userService;
+
+    /**
+     * 本节点标识，每次启动不同，重启前认领的任务不会被误认为仍在执行
+     */
+    private final String workerId = IdUtil.fastSimpleUUID();
+
+    private final AtomicInteger runningJobs = new AtomicInteger();
+
+    private ExecutorService jobExecutor;
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    private volatile boolean stopping;
+
+    @PostConstruct
+    public void init() {
+        if (!aiJobConfig.isWorkerEnabled()) {
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        jobExecutor = Executors.newFixedThreadPool(Math.max(1, aiJobConfig.getWorkerThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "ai-generate-job-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-generate-job-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = aiJobConfig.getPollIntervalMillis();
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (jobExecutor == null) {
+            return;
+        }
+        // 中断未完成的任务，任务线程把任务放回队列，由其他节点（或重启后的本节点）重新执行；
+        // 来不及放回的任务停止刷新心跳，超时后同样会重新排队
+        stopping = true;
+        heartbeatExecutor.shutdownNow();
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * 刷新本节点运行中任务的心跳
+     */
+    private void heartbeat() {
+        if (stopping || runningJobs.get() == 0) {
+            return;
+        }
+        try {
+            aiGenerateJobMapper.heartbeat(workerId);
+        } catch (Exception e) {
+            log.error("ai generate job heartbeat failed", e);
+        }
+    }
+
+    /**
+     * 回收失联任务、认领新任务
+     */
+    @Scheduled(fixedDelayString = "${ai-job.poll-interval-millis:2000}")
+    public void poll() {
+        if (jobExecutor == null || stopping) {
+            return;
+        }
+        try {
+            recoverStaleJobs();
+            claimJobs();
+        } catch (Exception e) {
+            log.error("ai generate job poll failed", e);
+        }
+    }
+
+    private void recoverStaleJobs() {
+        Date beforeTime = new Date(System.currentTimeMillis() - aiJobConfig.getStaleTimeoutMillis());
+        int requeued = aiGenerateJobMapper.requeueStale(beforeTime, aiJobConfig.getMaxRetries());
+        int failed = aiGenerateJobMapper.failStale(beforeTime, aiJobConfig.getMaxRetries());
+        if (requeued > 0 || failed > 0) {
+            log.warn("stale ai generate jobs recovered, requeued: {}, failed: {}", requeued, failed);
+        }
+    }
+
+    private void claimJobs() {
+        int free = Math.max(1, aiJobConfig.getWorkerThreads()) - runningJobs.get();
+        if (free <= 0) {
+            return;
+        }
+        // 多读一些，跳过已达到个人上限的用户的任务
+        List<AiGenerateJob> waitingJobs = aiGenerateJobMapper.listWaiting(free * 4);
+        for (AiGenerateJob job : waitingJobs) {
+            if (free <= 0 || stopping) {
+                break;
+            }
+            if (!aiGenerateJobService.claimJob(job, workerId)) {
+                // 已达到并发上限或已被其他节点认领
+                continue;
+            }
+            free--;
+            runningJobs.incrementAndGet();
+            jobExecutor.execute(() -> {
+                try {
+                    run(job);
+                } finally {
+                    runningJobs.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void run(AiGenerateJob job) {
+        long jobId = job.getId();
+        long startTime = System.currentTimeMillis();
+        try {
+            User user = userService.getById(job.getUserId());
+            if (user == null) {
+                finish(jobId, AiGenerateJobStatusEnum.FAILED, null, "用户不存在");
+                return;
+            }
+            List<Question> questionList = questionService.aiGenerateQuestions(job.getQuestionType(), job.getNumber(), user,
+                    (finishedCount, totalCount) -> aiGenerateJobMapper.updateProgress(jobId, workerId, finishedCount, totalCount));
+            List<Long> questionIdList = aiGenerateJobService.completeJob(jobId, workerId, questionList);
+            if (questionIdList == null) {
+                log.warn("ai generate job already taken over, generated questions discarded, id: {}", jobId);
+                return;
+            }
+            log.info("ai generate job succeed, id: {}, questions: {}, cost: {} ms",
+                    jobId, questionIdList.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            if (stopping || Thread.currentThread().isInterrupted()) {
+                release(jobId);
+                return;
+            }
+            if (e instanceof BusinessException) {
+                finish(jobId, AiGenerateJobStatusEnum.FAILED, null, e.getMessage());
+                return;
+            }
+            log.error("ai generate job failed, id: {}", jobId, e);
+            finish(jobId, AiGenerateJobStatusEnum.FAILED, null, "生成失败");
+        }
+    }
+
+    /**
+     * 停机中断的任务放回队列
+     */
+    private void release(long jobId) {
+        // 清除中断标记，避免影响数据库操作
+        Thread.interrupted();
+        try {
+            aiGenerateJobMapper.release(jobId, workerId);
+            log.info("ai generate job released on shutdown, id: {}", jobId);
+        } catch (Exception e) {
+            // 停止刷新心跳，超时后重新排队
+            log.warn("release ai generate job failed, id: {}", jobId, e);
+        }
+    }
+
+    private void finish(long jobId, AiGenerateJobStatusEnum status, String questionIds, String errorMessage) {
+        int updated = aiGenerateJobMapper.finish(jobId, workerId, status.getValue(), questionIds,
+                StrUtil.maxLength(errorMessage, MAX_ERROR_MESSAGE_LENGTH - 3));
+        if (updated == 0) {
+            log.warn("ai generate job already taken over, id: {}, status: {}", jobId, status);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.iqb.programmingbank.annotation;
+
+import com.iqb.programmingbank.model.enums.RateLimitAlgorithmEnum;
+import com.iqb.programmingbank.model.enums.RateLimitTypeEnum;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口限流
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimit {
+
+    /**
+     * 限流资源名，默认为 类名.方法名
+     *
+     * @return
+     */
+    String key() default "";
+
+    /**
+     * 限流维度
+     *
+     * @return
+     */
+    RateLimitTypeEnum limitType() default RateLimitTypeEnum.USER;
+
+    /**
+     * 限流算法
+     *
+     * @return
+     */
+    RateLimitAlgorithmEnum algorithm() default RateLimitAlgorithmEnum.SLIDING_WINDOW;
+
+    /**
+     * 每个周期允许的请求数
+     *
+     * @return
+     */
+    long rate();
+
+    /**
+     * 周期
+     *
+     * @return
+     */
+    long period() default 1;
+
+    /**
+     * 周期单位
+     *
+     * @return
+     */
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * 允许的突发请求数（仅 GCRA），默认等于 1，即严格匀速
+     *
+     * @return
+     */
+    long burst() default 1;
+
+    /**
+     * 被限流时的提示信息
+     *
+     * @return
+     */
+    String message() default "access too frequent, please try again later";
+}
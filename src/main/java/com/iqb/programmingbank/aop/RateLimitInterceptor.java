@@ -0,0 +1,81 @@
+package com.iqb.programmingbank.aop;
+
+import cn.dev33.satoken.stp.StpUtil;
+import cn.hutool.core.util.StrUtil;
+import com.iqb.programmingbank.annotation.RateLimit;
+import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.constant.RedisConstant;
+import com.iqb.programmingbank.exception.BusinessException;
+import com.iqb.programmingbank.manager.RateLimiterManager;
+import com.iqb.programmingbank.model.enums.RateLimitTypeEnum;
+import com.iqb.programmingbank.utils.NetUtils;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 接口限流 AOP
+ */
+@Aspect
+@Component
+public class RateLimitInterceptor {
+
+    @Resource
+    private RateLimiterManager rateLimiterManager;
+
+    /**
+     * 执行拦截
+     *
+     * @param joinPoint
+     * @param rateLimit
+     * @return
+     */
+    @Around("@annotation(rateLimit)")
+    public Object doInterceptor(ProceedingJoinPoint joinPoint, RateLimit rateLimit) throws Throwable {
+        String key = RedisConstant.getRateLimitKey(getResource(joinPoint, rateLimit), getDimension(rateLimit));
+        long periodMillis = rateLimit.timeUnit().toMillis(rateLimit.period());
+        boolean allowed = rateLimiterManager.tryAcquire(key, rateLimit.algorithm(), rateLimit.rate(),
+                periodMillis, rateLimit.burst());
+        if (!allowed) {
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, rateLimit.message());
+        }
+        return joinPoint.proceed();
+    }
+
+    /**
+     * 限流资源名，默认为 类名.方法名
+     */
+    private String getResource(ProceedingJoinPoint joinPoint, RateLimit rateLimit) {
+        if (StrUtil.isNotBlank(rateLimit.key())) {
+            return rateLimit.key();
+        }
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        return signature.getDeclaringType().getSimpleName() + "." + signature.getName();
+    }
+
+    /**
+     * 限流维度的值（不查库，直接从登录态中取用户 id）
+     */
+    private String getDimension(RateLimit rateLimit) {
+        if (RateLimitTypeEnum.GLOBAL.equals(rateLimit.limitType())) {
+            return "global";
+        }
+        if (RateLimitTypeEnum.USER.equals(rateLimit.limitType())) {
+            Object loginId = StpUtil.getLoginIdDefaultNull();
+            if (loginId != null) {
+                return "user:" + loginId;
+            }
+        }
+        RequestAttributes requestAttributes = RequestContextHolder.currentRequestAttributes();
+        HttpServletRequest request = ((ServletRequestAttributes) requestAttributes).getRequest();
+        return "ip:" + NetUtils.getIpAddress(request);
+    }
+}
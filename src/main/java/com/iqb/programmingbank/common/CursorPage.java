@@ -0,0 +1,28 @@
+package com.iqb.programmingbank.common;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+
+/**
+ * 游标分页结果，在普通分页结果的基础上返回下一页游标
+ *
+ * @param <T>
+ */
+public class CursorPage<T> extends Page<T> {
+
+    /**
+     * 下一页游标，为空表示没有更多数据
+     */
+    private String nextCursor;
+
+    public CursorPage(long size) {
+        super(1, size, false);
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
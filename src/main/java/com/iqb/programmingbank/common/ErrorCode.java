@@ -13,6 +13,7 @@ public enum ErrorCode {
     NO_AUTH_ERROR(40101, "no auth"),
     NOT_FOUND_ERROR(40400, "request data not found"),
     FORBIDDEN_ERROR(40300, "forbidden"),
+    TOO_MANY_REQUEST(42900, "too many requests"),
     SYSTEM_ERROR(50000, "system error"),
     OPERATION_ERROR(50001, "operation failed"),
     EXISITING_ERROR(50002, "This data already exists in the database");
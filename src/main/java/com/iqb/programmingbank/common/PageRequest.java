@@ -30,4 +30,14 @@ public class PageRequest {
      * 排序顺序（默认升序）
      */
     private String sortOrder = CommonConstant.SORT_ORDER_ASC;
+
+    /**
+     * 游标（游标分页模式）：为 null 时使用普通分页；首页传空字符串，之后传上一页返回的 nextCursor
+     */
+    private String cursor;
+
+    /**
+     * 是否查询总数，为空时普通分页查询、游标分页不查询
+     */
+    private Boolean searchCount;
 }
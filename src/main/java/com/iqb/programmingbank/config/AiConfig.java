@@ -8,6 +8,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
@@ -18,6 +19,26 @@ public class AiConfig {
     // ApiKey
     private String apiKey;
 
+    /**
+     * 同时调用 AI 接口的最大请求数（整个实例共享）
+     */
+    private int maxConcurrency = 8;
+
+    /**
+     * 异步调用排队的最大任务数，超出时拒绝
+     */
+    private int maxQueueSize = 200;
+
+    /**
+     * 单次调用的超时时间（毫秒），同步调用等待并发许可也不超过这个时间
+     */
+    private long callTimeoutMillis = 120000;
+
+    /**
+     * 批量生成题目时等待全部题解的最长时间（毫秒），超时的题目放弃
+     */
+    private long generateTimeoutMillis = 600000;
+
     /**
      * AI 请求客户端
      *
@@ -25,9 +46,14 @@ public class AiConfig {
      */
     @Bean
     public ArkService aiService() {
-        ConnectionPool connectionPool = new ConnectionPool(5, 1, TimeUnit.SECONDS);
+        int maxRequests = Math.max(1, maxConcurrency);
+        ConnectionPool connectionPool = new ConnectionPool(maxRequests, 1, TimeUnit.SECONDS);
+        // OkHttp 默认每个 host 最多 5 个并发请求，与并发上限保持一致
         Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
         ArkService service = ArkService.builder().dispatcher(dispatcher).connectionPool(connectionPool)
+                .timeout(Duration.ofMillis(callTimeoutMillis))
                 .baseUrl("https://ark.cn-beijing.volces.com/api/v3")
                 .apiKey(apiKey)
                 .build();
@@ -0,0 +1,65 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * AI 生成题目异步任务配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai-job")
+@Data
+public class AiJobConfig {
+
+    /**
+     * 是否在本节点执行任务（默认关闭，须先执行建表语句中的 ai_generate_job、ai_generate_job_lock 表再开启；
+     * 所有节点都关闭时提交的任务会一直排队）
+     */
+    private boolean workerEnabled = false;
+
+    /**
+     * 轮询等待中任务、刷新心跳的间隔（毫秒），心跳在独立线程上刷新
+     */
+    private long pollIntervalMillis = 2000;
+
+    /**
+     * 本节点同时执行的任务数
+     */
+    private int workerThreads = 2;
+
+    /**
+     * 所有节点同时执行的最大任务数
+     */
+    private int maxRunningJobs = 4;
+
+    /**
+     * 每个用户同时执行的最大任务数
+     */
+    private int maxUserRunningJobs = 1;
+
+    /**
+     * 每个用户最多排队的任务数（不含运行中），超出后拒绝提交
+     */
+    private int maxUserWaitingJobs = 5;
+
+    /**
+     * 所有用户最多排队的任务数，超出后拒绝提交
+     */
+    private int maxWaitingJobs = 100;
+
+    /**
+     * 单次提交最多生成的题目数
+     */
+    private int maxQuestionNumber = 50;
+
+    /**
+     * 心跳超过该时间（毫秒）未刷新的运行中任务视为执行节点失联，重新排队
+     */
+    private long staleTimeoutMillis = 60000;
+
+    /**
+     * 失联任务最多重新排队的次数
+     */
+    private int maxRetries = 2;
+}
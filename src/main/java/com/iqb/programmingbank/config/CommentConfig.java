@@ -0,0 +1,24 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 评论配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "comment")
+@Data
+public class CommentConfig {
+
+    /**
+     * 是否缓存按题目构建好的评论树（评论新增、删除时失效）
+     */
+    private boolean treeCacheEnabled = true;
+
+    /**
+     * 分页查询顶级评论时，每条评论附带的回复数量，更多回复通过 rid 分页加载
+     */
+    private int previewReplySize = 3;
+}
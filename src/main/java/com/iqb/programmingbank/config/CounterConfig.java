@@ -0,0 +1,39 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 通用计数器配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "counter")
+@Data
+public class CounterConfig {
+
+    /**
+     * 是否开启批量模式：并发请求的计数先在本地聚合，再按固定间隔通过 pipeline 一次性提交到 Redis
+     */
+    private boolean batchEnabled = false;
+
+    /**
+     * 批量模式下本地聚合的时间窗口（毫秒），也是调用方最多额外等待的时间
+     */
+    private long batchWindowMillis = 2;
+
+    /**
+     * 单次 pipeline 最多提交的 key 数量
+     */
+    private int batchMaxKeys = 1000;
+
+    /**
+     * 待提交 key 数量上限，超过后直接同步调用 Redis（背压）
+     */
+    private int batchMaxPendingKeys = 10000;
+
+    /**
+     * 批量模式下调用方等待结果的超时时间（毫秒）
+     */
+    private long batchTimeoutMillis = 1000;
+}
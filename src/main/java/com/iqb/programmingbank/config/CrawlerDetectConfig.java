@@ -0,0 +1,59 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 爬虫检测配置（阈值均为每分钟的访问次数）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "crawler")
+@Data
+public class CrawlerDetectConfig {
+
+    /**
+     * 访问事件缓冲区大小，满了之后直接丢弃（不阻塞请求）
+     */
+    private int bufferSize = 65536;
+
+    /**
+     * 每批最多处理的事件数
+     */
+    private int batchSize = 1000;
+
+    /**
+     * 用户访问多少次时告警
+     */
+    private long userWarnCount = 10;
+
+    /**
+     * 用户访问多少次时封号
+     */
+    private long userBanCount = 20;
+
+    /**
+     * 同一 IP 访问多少次时告警
+     */
+    private long ipWarnCount = 60;
+
+    /**
+     * 同一 IP 访问多少次时临时封禁
+     */
+    private long ipBlockCount = 120;
+
+    /**
+     * IP 临时封禁时长（秒）
+     */
+    private long ipBlockSeconds = 600;
+
+    /**
+     * 同一用户在同一题库内访问多少次时告警（按题库刷题目）
+     */
+    private long bankWarnCount = 15;
+
+    /**
+     * 跨节点同步检测结果的 topic
+     */
+    private String actionTopic = "crawler:action";
+}
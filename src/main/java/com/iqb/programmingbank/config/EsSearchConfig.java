@@ -0,0 +1,34 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * ES 搜索分页配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "es-search")
+@Data
+public class EsSearchConfig {
+
+    /**
+     * 普通分页（from + size）允许的最大深度，与索引的 max_result_window 一致，更深的页需要使用游标分页
+     */
+    private int maxResultWindow = 10000;
+
+    /**
+     * 精确统计总数的上限（track_total_hits），超过后只返回下限，统计开销不随结果数增长
+     */
+    private int trackTotalHitsUpTo = 1000;
+
+    /**
+     * 游标分页是否使用 point in time，翻页期间看到一致的快照
+     */
+    private boolean pointInTimeEnabled = false;
+
+    /**
+     * point in time 的保持时间（秒），每次翻页都会续期，应大于搜索结果缓存的过期时间
+     */
+    private long pointInTimeKeepAliveSeconds = 60;
+}
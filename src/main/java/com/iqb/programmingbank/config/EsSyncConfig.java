@@ -0,0 +1,94 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * MySQL => ES 同步配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "es-sync")
+@Data
+public class EsSyncConfig {
+
+    /**
+     * 是否开启发件箱同步（须先配置 ES 并执行建表语句中的发件箱表和触发器）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 每次从发件箱读取的最大变更数，同一批内同一实体的多次变更只同步一次
+     */
+    private int batchSize = 500;
+
+    /**
+     * 单次 bulk 请求的最大文档数
+     */
+    private int bulkSize = 200;
+
+    /**
+     * 写 ES 失败时的重试次数（仍失败则不推进位点，下次轮询重新同步）
+     */
+    private int maxRetries = 3;
+
+    /**
+     * 重试的初始退避时间（毫秒），每次翻倍
+     */
+    private long retryBackoffMillis = 200;
+
+    /**
+     * 发件箱 id 出现空洞时最多等待的时间（秒），超过后认为对应事务已回滚，跳过该空洞
+     */
+    private long gapTimeoutSeconds = 10;
+
+    /**
+     * 已同步变更的保留时间（小时）
+     */
+    private long outboxRetentionHours = 24;
+
+    /**
+     * 全量重建索引时每次从数据库读取的行数
+     */
+    private int reindexScanSize = 1000;
+
+    /**
+     * 全量重建索引时单个 bulk 请求的大小（字节）
+     */
+    private long reindexBulkBytes = 5 * 1024 * 1024;
+
+    /**
+     * 全量重建索引时并发的 bulk 请求数
+     */
+    private int reindexConcurrency = 4;
+
+    /**
+     * 是否开启写后同步（服务层变更提交后放入内存队列，秒级写入 ES，需要先配置 ES）
+     */
+    private boolean writeBehindEnabled = false;
+
+    /**
+     * 写后同步的刷新间隔（毫秒）
+     */
+    private long writeBehindFlushMillis = 200;
+
+    /**
+     * 写后同步队列的最大长度，超过后丢弃（由发件箱同步兜底）
+     */
+    private int writeBehindMaxPending = 100000;
+
+    /**
+     * 写后同步延迟超过该值（毫秒）时打印告警日志
+     */
+    private long writeBehindLagWarnMillis = 5000;
+
+    /**
+     * 搜索结果参与孤儿文档核对的比例（0~1），抽样控制核对带来的数据库查询
+     */
+    private double orphanCheckSampleRate = 0.1;
+
+    /**
+     * 同一个帖子 id 两次核对的最小间隔（分钟）
+     */
+    private long orphanCheckIntervalMinutes = 60;
+}
@@ -1,51 +1,55 @@
 package com.iqb.programmingbank.config;
 
-import com.jd.platform.hotkey.client.ClientStarter;
 import lombok.Data;
-import org.springframework.context.annotation.Bean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
 
 /**
- * hotkey 热 key 发现配置
-
+ * hotkey 热 key 发现配置（进程内探测，无需 etcd / worker）
  */
-// todo 取消注释开启 HotKey（须先配置 HotKey）
-//@Configuration
-//@ConfigurationProperties(prefix = "hotkey")
+@Configuration
+@ConfigurationProperties(prefix = "hotkey")
 @Data
 public class HotKeyConfig {
 
     /**
-     * Etcd 服务器完整地址
+     * 滑动窗口分片数，窗口长度 = windowSlots * slotMillis
      */
-    private String etcdServer = "http://127.0.0.1:2379";
+    private int windowSlots = 10;
 
     /**
-     * 应用名称
+     * 每个分片的时长（毫秒）
      */
-    private String appName = "app";
+    private long slotMillis = 1000L;
 
     /**
-     * 本地缓存最大数量
+     * 窗口内访问次数达到该值视为热 key
      */
-    private int caffeineSize = 10000;
+    private long threshold = 50;
+
+    /**
+     * 最多同时保留的热 key 数量
+     */
+    private int topK = 500;
+
+    /**
+     * Count-Min Sketch 行数
+     */
+    private int sketchDepth = 4;
 
     /**
-     * 批量推送 key 的间隔时间
+     * Count-Min Sketch 每行计数器个数
      */
-    private long pushPeriod = 1000L;
+    private int sketchWidth = 8192;
+
+    /**
+     * 本地缓存最大数量
+     */
+    private int caffeineSize = 10000;
 
     /**
-     * 初始化 hotkey
+     * 本地缓存过期时间（秒），其他节点修改数据后本节点最多脏这么久
      */
-    @Bean
-    public void initHotkey() {
-        ClientStarter.Builder builder = new ClientStarter.Builder();
-        ClientStarter starter = builder.setAppName(appName)
-                .setCaffeineSize(caffeineSize)
-                .setPushPeriod(pushPeriod)
-                .setEtcdServer(etcdServer)
-                .build();
-        starter.startPipeline();
-    }
+    private long caffeineExpireSeconds = 30;
 
 }
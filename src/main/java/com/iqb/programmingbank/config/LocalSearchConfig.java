@@ -0,0 +1,44 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 内嵌 Lucene 本地搜索配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "local-search")
+@Data
+public class LocalSearchConfig {
+
+    /**
+     * 是否开启本地题目索引（启动时从数据库重建，之后消费 ES 同步发件箱保持同步）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 是否优先使用本地索引搜索（不部署 ES 时开启），关闭时只在 ES 不可用时降级使用
+     */
+    private boolean primary = false;
+
+    /**
+     * 索引目录
+     */
+    private String indexPath = "data/lucene/question";
+
+    /**
+     * 消费发件箱的间隔（毫秒）
+     */
+    private long pollIntervalMillis = 1000;
+
+    /**
+     * 每次从发件箱读取的最大变更数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 重建索引时每次从数据库读取的行数
+     */
+    private int loadBatchSize = 1000;
+}
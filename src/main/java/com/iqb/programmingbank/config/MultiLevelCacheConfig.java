@@ -0,0 +1,44 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 多级缓存（本地 Caffeine + Redis）配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cache.multi-level")
+@Data
+public class MultiLevelCacheConfig {
+
+    /**
+     * 本地缓存最大数量
+     */
+    private long localMaximumSize = 10000;
+
+    /**
+     * 本地缓存过期时间（秒），应明显短于 Redis，其他节点的本地缓存最多脏这么久
+     */
+    private long localExpireSeconds = 60;
+
+    /**
+     * 是否只把热 key 放入本地缓存（由 hotkey 探测），关闭则所有 key 都进本地缓存
+     */
+    private boolean localHotKeyOnly = true;
+
+    /**
+     * Redis 缓存基础过期时间（秒）
+     */
+    private long redisExpireSeconds = 600;
+
+    /**
+     * Redis 过期时间随机抖动上限（秒），避免同一批 key 同时过期引发雪崩
+     */
+    private long redisExpireJitterSeconds = 120;
+
+    /**
+     * 跨节点本地缓存失效通知的 topic
+     */
+    private String evictTopic = "cache:multi-level:evict";
+}
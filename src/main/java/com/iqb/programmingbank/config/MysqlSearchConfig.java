@@ -0,0 +1,29 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * MySQL 题目搜索配置（不使用 ES 时的查询方式）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "mysql-search")
+@Data
+public class MysqlSearchConfig {
+
+    /**
+     * 是否使用 ngram 全文索引检索标题、内容、答案（默认关闭，先创建 question 表的 FULLTEXT 索引后再开启），关闭时使用 like
+     */
+    private boolean fulltextEnabled = false;
+
+    /**
+     * 与 MySQL 的 ngram_token_size 保持一致，短于该长度的关键词无法走全文索引，改用 like
+     */
+    private int ngramTokenSize = 2;
+
+    /**
+     * 是否通过 question_tag 表按标签过滤（默认关闭，先创建 question_tag 表和触发器后再开启），关闭时对 tags 字段 like
+     */
+    private boolean tagTableEnabled = false;
+}
@@ -0,0 +1,29 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 刷题记录配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "practice-log")
+@Data
+public class PracticeLogConfig {
+
+    /**
+     * 刷题记录保留的月数（不含当月），过期后自动删除
+     */
+    private int retentionMonths = 12;
+
+    /**
+     * 是否在新记录中查不到时读取旧版记录（按日期保存题目标题的 set）
+     */
+    private boolean legacyFallbackEnabled = true;
+
+    /**
+     * 批量同步签到记录时一次最多的记录数
+     */
+    private int maxBatchRecords = 500;
+}
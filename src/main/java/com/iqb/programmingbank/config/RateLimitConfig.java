@@ -0,0 +1,34 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 接口限流配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "rate-limit")
+@Data
+public class RateLimitConfig {
+
+    /**
+     * 是否只使用本地限流（单机部署或没有 Redis 时使用，多节点时限额按节点计算）
+     */
+    private boolean localOnly = false;
+
+    /**
+     * Redis 不可用时是否降级为本地限流，关闭则直接放行
+     */
+    private boolean localFallback = true;
+
+    /**
+     * 本地限流最多保存的 key 数量
+     */
+    private long localMaximumKeys = 100000;
+
+    /**
+     * 本地限流状态的空闲过期时间（秒）
+     */
+    private long localExpireSeconds = 3600;
+}
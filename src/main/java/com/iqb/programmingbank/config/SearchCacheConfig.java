@@ -0,0 +1,39 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * ES 搜索结果缓存配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cache.search")
+@Data
+public class SearchCacheConfig {
+
+    /**
+     * 是否开启搜索结果缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每种实体缓存的最大查询数
+     */
+    private long maximumSize = 10000;
+
+    /**
+     * 过期时间（秒），索引写入时会整体失效，这里只是兜底
+     */
+    private long expireSeconds = 30;
+
+    /**
+     * ES 索引刷新间隔（毫秒），索引写入后这段时间内的搜索结果可能还看不到新数据，不缓存
+     */
+    private long indexRefreshMillis = 1000;
+
+    /**
+     * 跨节点通知索引已写入的 topic
+     */
+    private String generationTopic = "cache:search:generation";
+}
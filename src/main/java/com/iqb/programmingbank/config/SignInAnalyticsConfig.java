@@ -0,0 +1,34 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 签到统计配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "sign-in-analytics")
+@Data
+public class SignInAnalyticsConfig {
+
+    /**
+     * 是否定期生成签到排行榜快照
+     */
+    private boolean leaderboardEnabled = true;
+
+    /**
+     * 排行榜快照间隔（毫秒）
+     */
+    private long snapshotIntervalMillis = 10 * 60 * 1000;
+
+    /**
+     * 生成快照时每批扫描、统计的用户数
+     */
+    private int scanBatchSize = 500;
+
+    /**
+     * 排行榜单次最多返回的用户数
+     */
+    private int maxLeaderboardSize = 100;
+}
@@ -0,0 +1,39 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 搜索补全配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "suggest")
+@Data
+public class SuggestConfig {
+
+    /**
+     * 是否开启题目标题、标签补全（启动时从数据库加载到内存）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单次补全的最大返回数
+     */
+    private int topK = 10;
+
+    /**
+     * 启动加载时每次从数据库读取的行数
+     */
+    private int loadBatchSize = 1000;
+
+    /**
+     * 跨节点通知题目变更的 topic
+     */
+    private String changeTopic = "suggest:question:change";
+
+    /**
+     * 定时与数据库全量对账的间隔（毫秒），补上 topic 通知丢失的变更
+     */
+    private long resyncIntervalMillis = 600000;
+}
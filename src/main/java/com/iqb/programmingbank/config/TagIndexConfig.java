@@ -0,0 +1,44 @@
+package com.iqb.programmingbank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 题目标签位图索引配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "tag-index")
+@Data
+public class TagIndexConfig {
+
+    /**
+     * 是否开启标签位图索引（启动时从数据库加载到内存）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 启动加载时每次从数据库读取的行数
+     */
+    private int loadBatchSize = 1000;
+
+    /**
+     * 标签过滤结果不超过该数量时，搜索直接按题目 id 过滤，否则仍按标签条件查询（避免拼接过长的 in 条件）
+     */
+    private int maxFilterIds = 500;
+
+    /**
+     * 分面计数最多返回的标签数
+     */
+    private int maxFacetSize = 100;
+
+    /**
+     * 定时与数据库全量对账的间隔（毫秒），补上 topic 通知丢失的变更
+     */
+    private long resyncIntervalMillis = 600000;
+
+    /**
+     * 跨节点通知题目变更的 topic
+     */
+    private String changeTopic = "tag-index:question:change";
+}
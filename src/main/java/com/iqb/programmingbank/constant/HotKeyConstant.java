@@ -0,0 +1,21 @@
+package com.iqb.programmingbank.constant;
+
+/**
+ * 热 key 常量
+ */
+public interface HotKeyConstant {
+
+    /**
+     * 题目详情热 key 前缀
+     */
+    String QUESTION_DETAIL_KEY_PREFIX = "question_detail_";
+
+    /**
+     * 获取题目详情热 key
+     * @param questionId 题目 id
+     * @return 拼接好的 key
+     */
+    static String getQuestionDetailKey(long questionId) {
+        return QUESTION_DETAIL_KEY_PREFIX + questionId;
+    }
+}
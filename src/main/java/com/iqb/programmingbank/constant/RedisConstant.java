@@ -19,4 +19,130 @@ public interface RedisConstant {
     static String getUserSignInRedisKey(int year, long userId) {
         return String.format("%s:%s:%S", USER_SIGN_IN_REDIS_KEY_PREFIX, year, userId);
     }
+
+    /**
+     * 获取某年所有用户签到记录的 key 匹配模式
+     * @param year 年份
+     * @return 匹配模式
+     */
+    static String getUserSignInRedisKeyPattern(int year) {
+        return String.format("%s:%s:*", USER_SIGN_IN_REDIS_KEY_PREFIX, year);
+    }
+
+    /**
+     * 获取签到排行榜快照 key（zset，member 为用户 id，score 为当年签到天数）
+     * 年份放在 hash tag 中，与构建中的 key 落在同一个 slot，集群下才能 RENAME
+     * @param year 年份
+     * @return 拼接好的 key
+     */
+    static String getSignInLeaderboardKey(int year) {
+        return "signin_leaderboard:{" + year + "}";
+    }
+
+    /**
+     * 获取构建中的签到排行榜快照 key，构建完成后 RENAME 为正式 key
+     * @param year 年份
+     * @return 拼接好的 key
+     */
+    static String getSignInLeaderboardBuildingKey(int year) {
+        return getSignInLeaderboardKey(year) + ":building";
+    }
+
+    /**
+     * 题库详情缓存 key 前缀
+     */
+    String BANK_DETAIL_KEY_PREFIX = "bank_detail_";
+
+    /**
+     * 获取某个题库所有详情缓存的 key 前缀（用于按题库失效）
+     * @param questionBankId 题库 id
+     * @return 拼接好的 key 前缀
+     */
+    static String getBankDetailKeyPrefix(long questionBankId) {
+        return BANK_DETAIL_KEY_PREFIX + questionBankId + ":";
+    }
+
+    /**
+     * 获取题库详情缓存 key（是否带题目列表、分页参数不同，缓存内容不同）
+     * @param questionBankId 题库 id
+     * @param needQueryQuestionList 是否关联查询题目列表
+     * @param current 当前页号
+     * @param pageSize 页面大小
+     * @return 拼接好的 key
+     */
+    static String getBankDetailKey(long questionBankId, boolean needQueryQuestionList, int current, int pageSize) {
+        if (!needQueryQuestionList) {
+            return getBankDetailKeyPrefix(questionBankId) + "basic";
+        }
+        return getBankDetailKeyPrefix(questionBankId) + current + ":" + pageSize;
+    }
+
+    /**
+     * 获取题库内题目 id 位图的缓存 key（与题库详情共用前缀，题库成员变化时一起失效）
+     * @param questionBankId 题库 id
+     * @return 拼接好的 key
+     */
+    static String getBankQuestionIdsKey(long questionBankId) {
+        return getBankDetailKeyPrefix(questionBankId) + "question_ids";
+    }
+
+    /**
+     * 接口限流 key 前缀
+     */
+    String RATE_LIMIT_KEY_PREFIX = "rate_limit:";
+
+    /**
+     * 获取接口限流 key
+     * @param resource 限流资源名
+     * @param dimension 限流维度的值（用户 id、IP 等）
+     * @return 拼接好的 key
+     */
+    static String getRateLimitKey(String resource, String dimension) {
+        return RATE_LIMIT_KEY_PREFIX + resource + ":" + dimension;
+    }
+
+    /**
+     * 题目评论树缓存 key 前缀
+     */
+    String COMMENT_TREE_KEY_PREFIX = "comment_tree_";
+
+    /**
+     * 获取题目评论树缓存 key
+     * @param questionId 题目 id
+     * @return 拼接好的 key
+     */
+    static String getCommentTreeKey(long questionId) {
+        return COMMENT_TREE_KEY_PREFIX + questionId;
+    }
+
+    /**
+     * 帖子计数（点赞数、收藏数）key 前缀
+     */
+    String POST_COUNT_KEY_PREFIX = "post_count_";
+
+    /**
+     * 获取帖子计数 key
+     * @param postId 帖子 id
+     * @return 拼接好的 key
+     */
+    static String getPostCountKey(long postId) {
+        return POST_COUNT_KEY_PREFIX + postId;
+    }
+
+    /**
+     * 用户刷题记录 key 前缀
+     */
+    String PRACTICE_LOG_KEY_PREFIX = "practice_log:";
+
+    /**
+     * 获取用户某月的刷题记录 key（hash，field 为日期，value 为当天题目 id 列表的编码）
+     * 以当年的签到位图 key 作为 hash tag，集群下两者在同一个 slot，记录脚本才能同时写入（签到 key 格式不变，已有数据不受影响）
+     * @param year 年份
+     * @param userId 用户 id
+     * @param month 年月（yyyyMM）
+     * @return 拼接好的 key
+     */
+    static String getPracticeLogKey(int year, long userId, String month) {
+        return PRACTICE_LOG_KEY_PREFIX + "{" + getUserSignInRedisKey(year, userId) + "}:" + month;
+    }
 }
@@ -1,11 +1,13 @@
 package com.iqb.programmingbank.controller;
 
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.iqb.programmingbank.common.BaseResponse;
 import com.iqb.programmingbank.common.ErrorCode;
 import com.iqb.programmingbank.common.ResultUtils;
 import com.iqb.programmingbank.exception.BusinessException;
 import com.iqb.programmingbank.exception.ThrowUtils;
 import com.iqb.programmingbank.model.dto.comment.CommentAddRequest;
+import com.iqb.programmingbank.model.dto.comment.CommentQueryRequest;
 import com.iqb.programmingbank.model.entity.Comment;
 import com.iqb.programmingbank.model.entity.User;
 import com.iqb.programmingbank.model.vo.CommentVO;
@@ -77,6 +79,7 @@ public class CommentController {
         // 保存评论
         boolean result = commentService.save(comment);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        commentService.invalidateCommentTreeCache(comment.getQuestionId());
         
         log.info("评论添加成功，ID={}", comment.getId());
         
@@ -125,6 +128,23 @@ public class CommentController {
         }
     }
 
+    /**
+     * 分页获取评论（rid 为空时查询顶级评论并附带部分回复，传入 rid 时分页加载该评论下的回复）
+     *
+     * @param commentQueryRequest
+     * @param request
+     * @return
+     */
+    @PostMapping("/list/page/vo")
+    public BaseResponse<Page<CommentVO>> listCommentVOByPage(@RequestBody CommentQueryRequest commentQueryRequest,
+                                                             HttpServletRequest request) {
+        ThrowUtils.throwIf(commentQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        long size = commentQueryRequest.getPageSize();
+        // 限制爬虫
+        ThrowUtils.throwIf(size > 20, ErrorCode.PARAMS_ERROR);
+        return ResultUtils.success(commentService.listCommentVOByPage(commentQueryRequest, request));
+    }
+
     /**
      * 删除评论（仅评论作者和管理员可删除）
      *
@@ -155,6 +175,7 @@ public class CommentController {
         // 删除评论
         boolean result = commentService.removeById(id);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        commentService.invalidateCommentTreeCache(comment.getQuestionId());
         
         log.info("comment delete success, id={}", id);
         
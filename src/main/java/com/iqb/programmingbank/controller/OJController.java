@@ -1,5 +1,6 @@
 package com.iqb.programmingbank.controller;
 
+import com.iqb.programmingbank.annotation.RateLimit;
 import com.iqb.programmingbank.common.BaseResponse;
 import com.iqb.programmingbank.common.ErrorCode;
 import com.iqb.programmingbank.common.ResultUtils;
@@ -7,6 +8,7 @@ import com.iqb.programmingbank.exception.ThrowUtils;
 import com.iqb.programmingbank.judge.impl.RemoteCodeSandbox;
 import com.iqb.programmingbank.judge.model.ExecuteCodeRequest;
 import com.iqb.programmingbank.judge.model.ExecuteCodeResponse;
+import com.iqb.programmingbank.model.enums.RateLimitAlgorithmEnum;
 import org.springframework.web.bind.annotation.*;
 
 /**
@@ -18,6 +20,7 @@ public class OJController {
 
 
     @PostMapping("/judge")
+    @RateLimit(key = "oj:judge", algorithm = RateLimitAlgorithmEnum.GCRA, rate = 1, burst = 5)
     public BaseResponse<ExecuteCodeResponse> ojJudge(@RequestBody ExecuteCodeRequest executeCodeRequest){
         ThrowUtils.throwIf(executeCodeRequest.getCode()==null, ErrorCode.PARAMS_ERROR);
 
@@ -19,6 +19,7 @@ import com.iqb.programmingbank.model.entity.User;
 import com.iqb.programmingbank.model.vo.PostVO;
 import com.iqb.programmingbank.service.PostService;
 import com.iqb.programmingbank.service.UserService;
+import com.iqb.programmingbank.utils.CursorPageUtils;
 import java.util.List;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -174,12 +175,12 @@ public class PostController {
     @PostMapping("/list/page/vo")
     public BaseResponse<Page<PostVO>> listPostVOByPage(@RequestBody PostQueryRequest postQueryRequest,
             HttpServletRequest request) {
-        long current = postQueryRequest.getCurrent();
         long size = postQueryRequest.getPageSize();
         // 限制爬虫
         ThrowUtils.throwIf(size > 20, ErrorCode.PARAMS_ERROR);
-        Page<Post> postPage = postService.page(new Page<>(current, size),
-                postService.getQueryWrapper(postQueryRequest));
+        // 传入 cursor 时使用游标分页
+        Page<Post> postPage = CursorPageUtils.page(postService,
+                postService.getQueryWrapper(postQueryRequest), postQueryRequest);
         return ResultUtils.success(postService.getPostVOPage(postPage, request));
     }
 
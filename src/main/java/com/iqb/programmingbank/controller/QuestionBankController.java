@@ -9,8 +9,10 @@ import com.iqb.programmingbank.common.BaseResponse;
 import com.iqb.programmingbank.common.DeleteRequest;
 import com.iqb.programmingbank.common.ErrorCode;
 import com.iqb.programmingbank.common.ResultUtils;
+import com.iqb.programmingbank.constant.RedisConstant;
 import com.iqb.programmingbank.exception.BusinessException;
 import com.iqb.programmingbank.exception.ThrowUtils;
+import com.iqb.programmingbank.manager.MultiLevelCacheManager;
 import com.iqb.programmingbank.model.dto.question.QuestionQueryRequest;
 import com.iqb.programmingbank.model.dto.questionBank.QuestionBankAddRequest;
 import com.iqb.programmingbank.model.dto.questionBank.QuestionBankEditRequest;
@@ -25,6 +27,7 @@ import com.iqb.programmingbank.sentinel.SentinelConstant;
 import com.iqb.programmingbank.service.QuestionBankService;
 import com.iqb.programmingbank.service.QuestionService;
 import com.iqb.programmingbank.service.UserService;
+import com.iqb.programmingbank.utils.CursorPageUtils;
 import com.iqb.programmingbank.utils.FileUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -39,6 +42,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -52,6 +58,16 @@ import java.util.UUID;
 @Slf4j
 public class QuestionBankController {
 
+    /**
+     * 题库详情中走缓存的题目分页大小
+     */
+    private static final Set<Integer> CACHEABLE_QUESTION_PAGE_SIZE_SET = new HashSet<>(Arrays.asList(10, 20, 50));
+
+    /**
+     * 题库详情中走缓存的最大题目页号
+     */
+    private static final int MAX_CACHEABLE_QUESTION_PAGE = 10;
+
     @Resource
     private QuestionBankService questionBankService;
 
@@ -61,6 +77,9 @@ public class QuestionBankController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private MultiLevelCacheManager multiLevelCacheManager;
+
     // region 增删改查
 
     /**
@@ -201,6 +220,8 @@ public class QuestionBankController {
         // 操作数据库
         boolean result = questionBankService.removeById(id);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 失效题库详情缓存
+        questionBankService.invalidateQuestionBankDetailCache(id);
         return ResultUtils.success(true);
     }
 
@@ -307,6 +328,8 @@ public class QuestionBankController {
         // 操作数据库
         boolean result = questionBankService.updateById(questionBank);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 失效题库详情缓存
+        questionBankService.invalidateQuestionBankDetailCache(id);
         return ResultUtils.success(true);
     }
 
@@ -321,20 +344,42 @@ public class QuestionBankController {
         ThrowUtils.throwIf(questionBankQueryRequest == null, ErrorCode.PARAMS_ERROR);
         Long id = questionBankQueryRequest.getId();
         ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
+        boolean needQueryQuestionList = questionBankQueryRequest.isNeedQueryQuestionList();
+        if (needQueryQuestionList) {
+            // 限制爬虫
+            ThrowUtils.throwIf(questionBankQueryRequest.getPageSize() > 200, ErrorCode.PARAMS_ERROR);
+            // 只缓存常用的分页参数，避免任意分页参数组合产生大量缓存 key
+            if (!isCacheableQuestionPage(questionBankQueryRequest.getCurrent(), questionBankQueryRequest.getPageSize())) {
+                return ResultUtils.success(loadQuestionBankVO(questionBankQueryRequest, request));
+            }
+        }
+        // 生成 key（是否关联题目列表、分页参数不同，缓存内容不同）
+        String key = RedisConstant.getBankDetailKey(id, needQueryQuestionList,
+                questionBankQueryRequest.getCurrent(), questionBankQueryRequest.getPageSize());
+        // 多级缓存读取，未命中时查询数据库
+        QuestionBankVO questionBankVO = multiLevelCacheManager.get(key,
+                () -> loadQuestionBankVO(questionBankQueryRequest, request));
+        // 本地缓存中的对象被所有请求共享，返回副本
+        return ResultUtils.success(QuestionBankVO.copy(questionBankVO));
+    }
 
-        // todo 取消注释开启 HotKey（须确保 HotKey 依赖被打进 jar 包）
-//        // 生成 key
-//        String key = "bank_detail_" + id;
-//        // 如果是热 key
-//        if (JdHotKeyStore.isHotKey(key)) {
-//            // 从本地缓存中获取缓存值
-//            Object cachedQuestionBankVO = JdHotKeyStore.get(key);
-//            if (cachedQuestionBankVO != null) {
-//                // 如果缓存中有值，直接返回缓存的值
-//                return ResultUtils.success((QuestionBankVO) cachedQuestionBankVO);
-//            }
-//        }
+    /**
+     * 题库详情中的题目分页是否走缓存
+     */
+    private static boolean isCacheableQuestionPage(int current, int pageSize) {
+        return current >= 1 && current <= MAX_CACHEABLE_QUESTION_PAGE
+                && CACHEABLE_QUESTION_PAGE_SIZE_SET.contains(pageSize);
+    }
 
+    /**
+     * 从数据库查询题库详情（缓存未命中时调用）
+     *
+     * @param questionBankQueryRequest
+     * @param request
+     * @return
+     */
+    private QuestionBankVO loadQuestionBankVO(QuestionBankQueryRequest questionBankQueryRequest, HttpServletRequest request) {
+        Long id = questionBankQueryRequest.getId();
         // 查询数据库
         QuestionBank questionBank = questionBankService.getById(id);
         ThrowUtils.throwIf(questionBank == null, ErrorCode.NOT_FOUND_ERROR);
@@ -352,13 +397,7 @@ public class QuestionBankController {
             Page<QuestionVO> questionVOPage = questionService.getQuestionVOPage(questionPage, request);
             questionBankVO.setQuestionPage(questionVOPage);
         }
-
-        // todo 取消注释开启 HotKey（须确保 HotKey 依赖被打进 jar 包）
-//        // 设置本地缓存（如果不是热 key，这个方法不会设置缓存）
-//        JdHotKeyStore.smartSet(key, questionBankVO);
-
-        // 获取封装类
-        return ResultUtils.success(questionBankVO);
+        return questionBankVO;
     }
 
     /**
@@ -390,13 +429,12 @@ public class QuestionBankController {
             fallback = "handleFallback")
     public BaseResponse<Page<QuestionBankVO>> listQuestionBankVOByPage(@RequestBody QuestionBankQueryRequest questionBankQueryRequest,
                                                                        HttpServletRequest request) {
-        long current = questionBankQueryRequest.getCurrent();
         long size = questionBankQueryRequest.getPageSize();
         // 限制爬虫
         ThrowUtils.throwIf(size > 200, ErrorCode.PARAMS_ERROR);
-        // 查询数据库
-        Page<QuestionBank> questionBankPage = questionBankService.page(new Page<>(current, size),
-                questionBankService.getQueryWrapper(questionBankQueryRequest));
+        // 查询数据库（传入 cursor 时使用游标分页）
+        Page<QuestionBank> questionBankPage = CursorPageUtils.page(questionBankService,
+                questionBankService.getQueryWrapper(questionBankQueryRequest), questionBankQueryRequest);
         // 获取封装类
         return ResultUtils.success(questionBankService.getQuestionBankVOPage(questionBankPage, request));
     }
@@ -559,6 +597,8 @@ public class QuestionBankController {
         
         boolean result = questionBankService.updateById(questionBank);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 失效题库详情缓存
+        questionBankService.invalidateQuestionBankDetailCache(id);
         return ResultUtils.success(true);
     }
 
@@ -22,6 +22,8 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -64,6 +66,9 @@ public class QuestionBankQuestionController {
         // 写入数据库
         boolean result = questionBankQuestionService.save(questionBankQuestion);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 题库成员变化
+        questionBankQuestionService.onBankQuestionsChanged(questionBankQuestion.getQuestionBankId(),
+                Collections.singletonList(questionBankQuestion.getQuestionId()));
         // 返回新写入的数据 id
         long newQuestionBankQuestionId = questionBankQuestion.getId();
         return ResultUtils.success(newQuestionBankQuestionId);
@@ -93,6 +98,9 @@ public class QuestionBankQuestionController {
         // 操作数据库
         boolean result = questionBankQuestionService.removeById(id);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 题库成员变化
+        questionBankQuestionService.onBankQuestionsChanged(oldQuestionBankQuestion.getQuestionBankId(),
+                Collections.singletonList(oldQuestionBankQuestion.getQuestionId()));
         return ResultUtils.success(true);
     }
 
@@ -119,6 +127,16 @@ public class QuestionBankQuestionController {
         // 操作数据库
         boolean result = questionBankQuestionService.updateById(questionBankQuestion);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 题库成员变化，新旧题库、新旧题目都要处理
+        List<Long> questionIdList = new ArrayList<>();
+        questionIdList.add(oldQuestionBankQuestion.getQuestionId());
+        if (questionBankQuestion.getQuestionId() != null) {
+            questionIdList.add(questionBankQuestion.getQuestionId());
+        }
+        questionBankQuestionService.onBankQuestionsChanged(oldQuestionBankQuestion.getQuestionBankId(), questionIdList);
+        if (questionBankQuestion.getQuestionBankId() != null) {
+            questionBankQuestionService.onBankQuestionsChanged(questionBankQuestion.getQuestionBankId(), questionIdList);
+        }
         return ResultUtils.success(true);
     }
 
@@ -222,6 +240,10 @@ public class QuestionBankQuestionController {
                 .eq(QuestionBankQuestion::getQuestionBankId, questionBankId)
                 .eq(QuestionBankQuestion::getQuestionId, questionId);
         boolean result = questionBankQuestionService.remove(lambdaQueryWrapper);
+        if (result) {
+            // 题库成员变化
+            questionBankQuestionService.onBankQuestionsChanged(questionBankId, Collections.singletonList(questionId));
+        }
         return ResultUtils.success(result);
     }
 
@@ -11,22 +11,34 @@ import com.alibaba.csp.sentinel.Tracer;
 import com.alibaba.csp.sentinel.slots.block.BlockException;
 import com.alibaba.csp.sentinel.slots.block.degrade.DegradeException;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.iqb.programmingbank.annotation.RateLimit;
 import com.iqb.programmingbank.common.BaseResponse;
 import com.iqb.programmingbank.common.DeleteRequest;
 import com.iqb.programmingbank.common.ErrorCode;
 import com.iqb.programmingbank.common.ResultUtils;
+import com.iqb.programmingbank.constant.HotKeyConstant;
 import com.iqb.programmingbank.constant.UserConstant;
+import com.iqb.programmingbank.crawler.AccessEvent;
+import com.iqb.programmingbank.crawler.CrawlerDetector;
+import com.iqb.programmingbank.essync.EsWriteBehindQueue;
 import com.iqb.programmingbank.exception.BusinessException;
 import com.iqb.programmingbank.exception.ThrowUtils;
-import com.iqb.programmingbank.manager.CounterManager;
+import com.iqb.programmingbank.hotkey.LocalHotKeyStore;
 import com.iqb.programmingbank.model.dto.question.*;
 import com.iqb.programmingbank.model.dto.question.*;
 import com.iqb.programmingbank.model.entity.Question;
 import com.iqb.programmingbank.model.entity.User;
+import com.iqb.programmingbank.model.enums.RateLimitAlgorithmEnum;
+import com.iqb.programmingbank.model.vo.AiGenerateJobVO;
+import com.iqb.programmingbank.model.vo.EsSyncStatusVO;
 import com.iqb.programmingbank.model.vo.QuestionVO;
+import com.iqb.programmingbank.model.vo.TagFacetVO;
 import com.iqb.programmingbank.sentinel.SentinelConstant;
+import com.iqb.programmingbank.service.AiGenerateJobService;
 import com.iqb.programmingbank.service.QuestionService;
 import com.iqb.programmingbank.service.UserService;
+import com.iqb.programmingbank.suggest.QuestionSuggester;
+import com.iqb.programmingbank.utils.NetUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.web.bind.annotation.*;
@@ -53,6 +65,21 @@ public class QuestionController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private LocalHotKeyStore localHotKeyStore;
+
+    @Resource
+    private CrawlerDetector crawlerDetector;
+
+    @Resource
+    private QuestionSuggester questionSuggester;
+
+    @Resource
+    private AiGenerateJobService aiGenerateJobService;
+
+    @Resource
+    private EsWriteBehindQueue esWriteBehindQueue;
+
     // region 增删改查
 
     /**
@@ -115,6 +142,7 @@ public class QuestionController {
         // 操作数据库
         boolean result = questionService.removeById(id);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        localHotKeyStore.remove(HotKeyConstant.getQuestionDetailKey(id));
         return ResultUtils.success(true);
     }
 
@@ -146,6 +174,7 @@ public class QuestionController {
         // 操作数据库
         boolean result = questionService.updateById(question);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        localHotKeyStore.remove(HotKeyConstant.getQuestionDetailKey(id));
         return ResultUtils.success(true);
     }
 
@@ -153,55 +182,31 @@ public class QuestionController {
      * 根据 id 获取题目（封装类）
      *
      * @param id
+     * @param questionBankId 从哪个题库进入（可选，用于爬虫检测）
      * @return
      */
     @GetMapping("/get/vo")
-    public BaseResponse<QuestionVO> getQuestionVOById(Long id, HttpServletRequest request) {
+    @RateLimit(key = "question:view", rate = 60, timeUnit = TimeUnit.MINUTES)
+    public BaseResponse<QuestionVO> getQuestionVOById(Long id, Long questionBankId, HttpServletRequest request) {
         ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
-        User loginUser = userService.getLoginUserPermitNull(request);
-        if (loginUser != null) {
-            crawlerDetect(loginUser.getId());
+        // 爬虫检测（只入队，异步判定）
+        Object loginUserId = StpUtil.getLoginIdDefaultNull();
+        Long userId = loginUserId == null ? null : Long.valueOf(loginUserId.toString());
+        crawlerDetector.checkAndRecord(new AccessEvent(userId, NetUtils.getIpAddress(request), id, questionBankId));
+        // 热 key 直接走本地缓存
+        String key = HotKeyConstant.getQuestionDetailKey(id);
+        if (localHotKeyStore.isHotKey(key)) {
+            Object cachedQuestionVO = localHotKeyStore.get(key);
+            if (cachedQuestionVO != null) {
+                return ResultUtils.success(QuestionVO.copy((QuestionVO) cachedQuestionVO));
+            }
         }
-
         Question question = questionService.getById(id);
         ThrowUtils.throwIf(question == null, ErrorCode.NOT_FOUND_ERROR);
-        return ResultUtils.success(questionService.getQuestionVO(question, request));
-    }
-
-    // 仅是为了方便，才把这段代码写到这里
-    @Resource
-    private CounterManager counterManager;
-
-    /**
-     * 检测爬虫
-     *
-     * @param loginUserId
-     */
-    private void crawlerDetect(long loginUserId) {
-        // 调用多少次时告警
-        final int WARN_COUNT = 10;
-        // 调用多少次时封号
-        final int BAN_COUNT = 20;
-        // 拼接访问 key
-        String key = String.format("user:access:%s", loginUserId);
-        // 统计一分钟内访问次数，180 秒过期
-        long count = counterManager.incrAndGetCounter(key, 1, TimeUnit.MINUTES, 180);
-        // 是否封号
-        if (count > BAN_COUNT) {
-            // 踢下线
-            StpUtil.kickout(loginUserId);
-            // 封号
-            User updateUser = new User();
-            updateUser.setId(loginUserId);
-            updateUser.setUserRole("ban");
-            userService.updateById(updateUser);
-            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "access too many times");
-        }
-        // 是否告警
-        if (count == WARN_COUNT) {
-            // 可以改为向管理员发送邮件通知
-            throw new BusinessException(110, "warning: access too frequent");
-        }
+        QuestionVO questionVO = questionService.getQuestionVO(question, request);
+        // 是热 key 才会写入本地缓存（存一份副本，不与本次返回的对象共享）
+        localHotKeyStore.smartSet(key, QuestionVO.copy(questionVO));
+        return ResultUtils.success(questionVO);
     }
 
     /**
@@ -296,7 +301,15 @@ public class QuestionController {
      */
     public BaseResponse<Page<QuestionVO>> handleFallback(@RequestBody QuestionQueryRequest questionQueryRequest,
                                                          HttpServletRequest request, Throwable ex) {
-        // 可以返回本地数据或空数据
+        // 本地索引可用时返回本地索引的数据，否则返回空数据
+        try {
+            Page<Question> questionPage = questionService.searchFromLocalIndex(questionQueryRequest);
+            if (questionPage != null) {
+                return ResultUtils.success(questionService.getQuestionVOPage(questionPage, request));
+            }
+        } catch (Exception e) {
+            log.warn("list question from local index failed", e);
+        }
         return ResultUtils.success(null);
     }
 
@@ -326,6 +339,31 @@ public class QuestionController {
         return ResultUtils.success(questionService.getQuestionVOPage(questionPage, request));
     }
 
+    /**
+     * 题目标题、标签补全（输入时调用，只查内存）
+     *
+     * @param prefix 输入的前缀
+     * @param size   返回数
+     * @return
+     */
+    @GetMapping("/suggest")
+    public BaseResponse<List<String>> suggestQuestion(String prefix, @RequestParam(defaultValue = "10") int size) {
+        ThrowUtils.throwIf(StrUtil.isBlank(prefix) || prefix.length() > 80, ErrorCode.PARAMS_ERROR);
+        return ResultUtils.success(questionSuggester.suggest(prefix, size));
+    }
+
+    /**
+     * 题目标签分面计数（只查内存中的标签位图索引）
+     *
+     * @param questionTagFacetRequest
+     * @return 满足条件的题目中各标签的题目数
+     */
+    @PostMapping("/tags/facets")
+    public BaseResponse<List<TagFacetVO>> listQuestionTagFacets(@RequestBody QuestionTagFacetRequest questionTagFacetRequest) {
+        ThrowUtils.throwIf(questionTagFacetRequest == null, ErrorCode.PARAMS_ERROR);
+        return ResultUtils.success(questionService.listQuestionTagFacets(questionTagFacetRequest));
+    }
+
     /**
      * 编辑题目（给用户使用）
      *
@@ -360,6 +398,7 @@ public class QuestionController {
         // 操作数据库
         boolean result = questionService.updateById(question);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        localHotKeyStore.remove(HotKeyConstant.getQuestionDetailKey(id));
         return ResultUtils.success(true);
     }
 
@@ -388,15 +427,16 @@ public class QuestionController {
     }
 
     /**
-     * AI 生成题目（仅管理员可用）
+     * AI 生成题目（仅管理员可用），提交后立即返回任务 id，通过任务状态接口查询进度和结果
      *
      * @param questionAIGenerateRequest 请求参数
      * @param request HTTP 请求
-     * @return 是否生成成功
+     * @return 任务 id
      */
     @PostMapping("/ai/generate/question")
     @SaCheckRole(UserConstant.ADMIN_ROLE)
-    public BaseResponse<Boolean> aiGenerateQuestions(@RequestBody QuestionAIGenerateRequest questionAIGenerateRequest, HttpServletRequest request) {
+    @RateLimit(key = "question:ai_generate", algorithm = RateLimitAlgorithmEnum.GCRA, rate = 1, timeUnit = TimeUnit.MINUTES, burst = 3)
+    public BaseResponse<Long> aiGenerateQuestions(@RequestBody QuestionAIGenerateRequest questionAIGenerateRequest, HttpServletRequest request) {
         String questionType = questionAIGenerateRequest.getQuestionType();
         int number = questionAIGenerateRequest.getNumber();
         // 校验参数
@@ -404,9 +444,50 @@ public class QuestionController {
         ThrowUtils.throwIf(number <= 0, ErrorCode.PARAMS_ERROR, "question number must be greater than 0");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
-        // 调用 AI 生成题目服务
-        questionService.aiGenerateQuestions(questionType, number, loginUser);
-        // 返回结果
-        return ResultUtils.success(true);
+        // 提交 AI 生成题目任务
+        long jobId = aiGenerateJobService.submitJob(questionType, number, loginUser);
+        // 返回任务 id
+        return ResultUtils.success(jobId);
+    }
+
+    /**
+     * 获取 AI 生成题目任务的状态（进度、生成的题目 id）
+     *
+     * @param id      任务 id
+     * @param request HTTP 请求
+     * @return
+     */
+    @GetMapping("/ai/generate/job/get")
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    public BaseResponse<AiGenerateJobVO> getAiGenerateJob(long id, HttpServletRequest request) {
+        ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(aiGenerateJobService.getJobVO(id, loginUser));
+    }
+
+    /**
+     * 获取当前用户最近的 AI 生成题目任务
+     *
+     * @param size    返回的任务数
+     * @param request HTTP 请求
+     * @return
+     */
+    @GetMapping("/ai/generate/job/list/my")
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    public BaseResponse<List<AiGenerateJobVO>> listMyAiGenerateJob(@RequestParam(defaultValue = "10") int size,
+                                                                  HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(aiGenerateJobService.listMyJobVO(loginUser, size));
+    }
+
+    /**
+     * 获取 ES 写后同步队列状态（积压、延迟、失败数）
+     *
+     * @return
+     */
+    @GetMapping("/es/sync/status")
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    public BaseResponse<EsSyncStatusVO> getEsSyncStatus() {
+        return ResultUtils.success(esWriteBehindQueue.getStatus());
     }
 }
@@ -18,6 +18,8 @@ import com.iqb.programmingbank.model.entity.QuestionBank;
 import com.iqb.programmingbank.model.entity.User;
 import com.iqb.programmingbank.model.vo.LoginUserVO;
 import com.iqb.programmingbank.model.vo.PracticeRecordVO;
+import com.iqb.programmingbank.model.vo.SignInLeaderboardVO;
+import com.iqb.programmingbank.model.vo.SignInStatsVO;
 import com.iqb.programmingbank.model.vo.UserVO;
 import com.iqb.programmingbank.service.EmailService;
 import com.iqb.programmingbank.service.QuestionBankService;
@@ -43,6 +45,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -233,6 +236,7 @@ public class UserController {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         boolean b = userService.removeById(deleteRequest.getId());
+        userService.invalidateUserCache(deleteRequest.getId());
         return ResultUtils.success(b);
     }
 
@@ -254,6 +258,7 @@ public class UserController {
         BeanUtils.copyProperties(userUpdateRequest, user);
         boolean result = userService.updateById(user);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        userService.invalidateUserCache(user.getId());
         return ResultUtils.success(true);
     }
 
@@ -287,6 +292,7 @@ public class UserController {
         user.setId(loginUser.getId());
         boolean result = userService.updateById(user);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        userService.invalidateUserCache(user.getId());
         return ResultUtils.success(true);
     }
 
@@ -386,6 +392,7 @@ public class UserController {
         user.setId(loginUser.getId());
         boolean result = userService.updateById(user);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        userService.invalidateUserCache(user.getId());
         return ResultUtils.success(true);
     }
 
@@ -393,16 +400,32 @@ public class UserController {
      * 添加用户签到记录
      *
      * @param request
-     * @return 当前是否已签到成功
+     * @return 当天练习的题目数
      */
     @PostMapping("/add/sign_in")
-    public BaseResponse<Boolean> addUserSignIn(HttpServletRequest request , @RequestParam String questionTitle) {
+    public BaseResponse<Integer> addUserSignIn(HttpServletRequest request,
+                                               @RequestParam(required = false) Long questionId,
+                                               @RequestParam(required = false) String questionTitle) {
         // 必须要登录才能签到
         User loginUser = userService.getLoginUser(request);
-        boolean result = userService.addUserSignIn(loginUser.getId(),questionTitle);
+        int result = userService.addUserSignIn(loginUser.getId(), questionId, questionTitle);
         return ResultUtils.success(result);
     }
 
+    /**
+     * 批量添加用户签到记录（离线练习后同步）
+     *
+     * @param userSignInBatchRequest
+     * @param request
+     * @return 日期 => 当天练习的题目数
+     */
+    @PostMapping("/add/sign_in/batch")
+    public BaseResponse<Map<String, Integer>> addUserSignInBatch(@RequestBody UserSignInBatchRequest userSignInBatchRequest,
+                                                                 HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(userService.addUserSignInBatch(loginUser.getId(), userSignInBatchRequest));
+    }
+
     /**
      * 添加用户签到记录
      *
@@ -434,6 +457,36 @@ public class UserController {
         return ResultUtils.success(userSignInRecord);
     }
 
+    /**
+     * 获取用户签到统计（连续签到、每月天数）
+     *
+     * @param year    年份（为空表示当前年份）
+     * @param request
+     * @return
+     */
+    @GetMapping("/get/sign_in/stats")
+    public BaseResponse<SignInStatsVO> getUserSignInStats(Integer year, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(userService.getUserSignInStats(loginUser.getId(), year));
+    }
+
+    /**
+     * 获取签到排行榜（定期生成的快照）
+     *
+     * @param year    年份（为空表示当前年份）
+     * @param size    返回的名次数
+     * @param request
+     * @return
+     */
+    @GetMapping("/get/sign_in/leaderboard")
+    public BaseResponse<SignInLeaderboardVO> getSignInLeaderboard(Integer year,
+                                                                  @RequestParam(defaultValue = "10") int size,
+                                                                  HttpServletRequest request) {
+        User loginUser = userService.getLoginUserPermitNull(request);
+        Long userId = loginUser == null ? null : loginUser.getId();
+        return ResultUtils.success(userService.getSignInLeaderboard(year, size, userId));
+    }
+
     /**
      * 发送注册验证码
      * @param email 邮箱
@@ -544,6 +597,7 @@ public class UserController {
             user.setUserAvatar(avatarUrl);
             boolean result = userService.updateById(user);
             ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "avatar update failed");
+            userService.invalidateUserCache(userId);
             
             return ResultUtils.success(avatarUrl);
         } catch (IOException e) {
@@ -653,9 +707,10 @@ public class UserController {
         updateUser.setUserPassword(encryptPassword);
         boolean result = userService.updateById(updateUser);
         
-        // 操作成功后删除验证码
+        // 操作成功后删除验证码，清除用户缓存
         if (result) {
             stringRedisTemplate.delete(key);
+            userService.invalidateUserCache(user.getId());
         }
         
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "password reset failed");
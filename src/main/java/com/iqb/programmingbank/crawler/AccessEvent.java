@@ -0,0 +1,32 @@
+package com.iqb.programmingbank.crawler;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 访问事件（题目浏览）
+ */
+@Data
+@AllArgsConstructor
+public class AccessEvent {
+
+    /**
+     * 登录用户 id，未登录为 null
+     */
+    private Long userId;
+
+    /**
+     * 客户端 IP
+     */
+    private String ip;
+
+    /**
+     * 题目 id
+     */
+    private Long questionId;
+
+    /**
+     * 所在题库 id，可为 null
+     */
+    private Long questionBankId;
+}
@@ -0,0 +1,294 @@
+package com.iqb.programmingbank.crawler;
+
+import cn.dev33.satoken.stp.StpUtil;
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.config.CrawlerDetectConfig;
+import com.iqb.programmingbank.exception.BusinessException;
+import com.iqb.programmingbank.manager.CounterManager;
+import com.iqb.programmingbank.model.entity.User;
+import com.iqb.programmingbank.model.enums.UserRoleEnum;
+import com.iqb.programmingbank.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步爬虫检测
+ * <p>
+ * 请求线程只做两件事：检查本地的封禁 / 告警状态，把访问事件非阻塞地放入有界缓冲区（满了直接丢弃）。
+ * 后台线程批量取出事件，按用户、IP、用户 + 题库聚合后一次 pipeline 累加分钟计数，
+ * 超过阈值时异步封号、封 IP 或告警，结果通过 topic 同步给所有节点。
+ */
+@Slf4j
+@Component
+public class CrawlerDetector {
+
+    private static final String ACTION_WARN_USER = "warn:user:";
+
+    private static final String ACTION_BLOCK_IP = "block:ip:";
+
+    /**
+     * 计数器过期时间（秒）
+     */
+    private static final long COUNTER_EXPIRE_SECONDS = 180;
+
+    @Resource
+    private CrawlerDetectConfig crawlerDetectConfig;
+
+    @Resource
+    private CounterManager counterManager;
+
+    @Resource
+    private UserService userService;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    /**
+     * 访问事件缓冲区（基于数组的环形队列）
+     */
+    private BlockingQueue<AccessEvent> eventQueue;
+
+    /**
+     * 待提示告警的用户，下次访问时提示一次
+     */
+    private Cache<Long, Boolean> warnedUserCache;
+
+    /**
+     * 临时封禁的 IP
+     */
+    private Cache<String, Boolean> blockedIpCache;
+
+    /**
+     * 本节点最近封号的用户，避免重复更新数据库
+     */
+    private Cache<Long, Boolean> bannedUserCache;
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private RTopic actionTopic;
+
+    private int actionListenerId;
+
+    private Thread detectThread;
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        eventQueue = new ArrayBlockingQueue<>(crawlerDetectConfig.getBufferSize());
+        warnedUserCache = Caffeine.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(1, TimeUnit.MINUTES)
+                .build();
+        blockedIpCache = Caffeine.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(crawlerDetectConfig.getIpBlockSeconds(), TimeUnit.SECONDS)
+                .build();
+        bannedUserCache = Caffeine.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(COUNTER_EXPIRE_SECONDS, TimeUnit.SECONDS)
+                .build();
+        actionTopic = redissonClient.getTopic(crawlerDetectConfig.getActionTopic(), StringCodec.INSTANCE);
+        actionListenerId = actionTopic.addListener(String.class, (channel, message) -> applyAction(message));
+        detectThread = new Thread(this::detectLoop, "crawler-detector");
+        detectThread.setDaemon(true);
+        detectThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        detectThread.interrupt();
+        actionTopic.removeListener(actionListenerId);
+    }
+
+    /**
+     * 检查访问者是否被限制，并记录本次访问（不阻塞）
+     *
+     * @param accessEvent
+     */
+    public void checkAndRecord(AccessEvent accessEvent) {
+        String ip = accessEvent.getIp();
+        if (StrUtil.isNotBlank(ip) && blockedIpCache.getIfPresent(ip) != null) {
+            throw new BusinessException(ErrorCode.FORBIDDEN_ERROR, "access too many times");
+        }
+        Long userId = accessEvent.getUserId();
+        if (userId != null && warnedUserCache.asMap().remove(userId) != null) {
+            throw new BusinessException(110, "warning: access too frequent");
+        }
+        if (!eventQueue.offer(accessEvent)) {
+            droppedCount.increment();
+        }
+    }
+
+    /**
+     * 因缓冲区已满被丢弃的事件数
+     *
+     * @return
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    private void detectLoop() {
+        List<AccessEvent> batch = new ArrayList<>(crawlerDetectConfig.getBatchSize());
+        while (running) {
+            try {
+                AccessEvent first = eventQueue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                eventQueue.drainTo(batch, crawlerDetectConfig.getBatchSize() - 1);
+                detect(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("crawler detect failed, batch size: {}", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 批量检测
+     */
+    private void detect(List<AccessEvent> batch) {
+        // 1. 本批次按维度聚合
+        Map<String, Long> keyDeltas = new HashMap<>();
+        Set<Long> userIdSet = new HashSet<>();
+        Set<String> ipSet = new HashSet<>();
+        Map<String, AccessEvent> bankKeyMap = new HashMap<>();
+        for (AccessEvent accessEvent : batch) {
+            Long userId = accessEvent.getUserId();
+            if (userId != null) {
+                userIdSet.add(userId);
+                keyDeltas.merge(getUserKey(userId), 1L, Long::sum);
+                if (accessEvent.getQuestionBankId() != null) {
+                    String bankKey = getBankKey(accessEvent.getQuestionBankId(), userId);
+                    bankKeyMap.putIfAbsent(bankKey, accessEvent);
+                    keyDeltas.merge(bankKey, 1L, Long::sum);
+                }
+            }
+            if (StrUtil.isNotBlank(accessEvent.getIp())) {
+                ipSet.add(accessEvent.getIp());
+                keyDeltas.merge(getIpKey(accessEvent.getIp()), 1L, Long::sum);
+            }
+        }
+        // 2. 一次 pipeline 累加一分钟内的计数
+        Map<String, Long> counts = counterManager.incrAndGetCounters(keyDeltas, 1, TimeUnit.MINUTES, COUNTER_EXPIRE_SECONDS);
+        // 3. 按规则处理
+        for (Long userId : userIdSet) {
+            String userKey = getUserKey(userId);
+            long count = counts.getOrDefault(userKey, 0L);
+            if (count > crawlerDetectConfig.getUserBanCount()) {
+                banUser(userId);
+            } else if (crossed(count, keyDeltas.get(userKey), crawlerDetectConfig.getUserWarnCount())) {
+                warnUser(userId, "user access too frequent");
+            }
+        }
+        bankKeyMap.forEach((bankKey, accessEvent) -> {
+            if (crossed(counts.getOrDefault(bankKey, 0L), keyDeltas.get(bankKey), crawlerDetectConfig.getBankWarnCount())) {
+                warnUser(accessEvent.getUserId(), "user sweeping question bank " + accessEvent.getQuestionBankId());
+            }
+        });
+        for (String ip : ipSet) {
+            String ipKey = getIpKey(ip);
+            long count = counts.getOrDefault(ipKey, 0L);
+            if (count > crawlerDetectConfig.getIpBlockCount()) {
+                blockIp(ip);
+            } else if (crossed(count, keyDeltas.get(ipKey), crawlerDetectConfig.getIpWarnCount())) {
+                // 可以改为向管理员发送邮件通知
+                log.warn("crawler detected, ip access too frequent, ip: {}, count: {}", ip, count);
+            }
+        }
+    }
+
+    /**
+     * 本批次的增量是否让计数越过阈值（保证每个窗口只触发一次）
+     */
+    private boolean crossed(long count, Long delta, long threshold) {
+        return delta != null && count >= threshold && count - delta < threshold;
+    }
+
+    private void banUser(long userId) {
+        if (bannedUserCache.asMap().putIfAbsent(userId, true) != null) {
+            return;
+        }
+        log.warn("crawler detected, ban user: {}", userId);
+        // 踢下线
+        StpUtil.kickout(userId);
+        // 封号
+        User updateUser = new User();
+        updateUser.setId(userId);
+        updateUser.setUserRole(UserRoleEnum.BAN.getValue());
+        userService.updateById(updateUser);
+        userService.invalidateUserCache(userId);
+    }
+
+    private void warnUser(long userId, String reason) {
+        // 可以改为向管理员发送邮件通知
+        log.warn("crawler detected, {}, userId: {}", reason, userId);
+        publish(ACTION_WARN_USER + userId);
+    }
+
+    private void blockIp(String ip) {
+        if (blockedIpCache.getIfPresent(ip) != null) {
+            return;
+        }
+        log.warn("crawler detected, block ip: {}", ip);
+        publish(ACTION_BLOCK_IP + ip);
+    }
+
+    private void publish(String action) {
+        // 先在本节点生效，再通知其他节点
+        applyAction(action);
+        try {
+            actionTopic.publish(action);
+        } catch (Exception e) {
+            log.error("crawler action publish failed, action: {}", action, e);
+        }
+    }
+
+    private void applyAction(String action) {
+        if (action.startsWith(ACTION_WARN_USER)) {
+            warnedUserCache.put(Long.valueOf(action.substring(ACTION_WARN_USER.length())), true);
+        } else if (action.startsWith(ACTION_BLOCK_IP)) {
+            blockedIpCache.put(action.substring(ACTION_BLOCK_IP.length()), true);
+        }
+    }
+
+    private static String getUserKey(long userId) {
+        return String.format("user:access:%s", userId);
+    }
+
+    private static String getIpKey(String ip) {
+        return String.format("ip:access:%s", ip);
+    }
+
+    private static String getBankKey(long questionBankId, long userId) {
+        return String.format("bank:access:%s:%s", questionBankId, userId);
+    }
+}
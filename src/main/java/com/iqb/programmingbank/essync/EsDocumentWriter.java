@@ -0,0 +1,161 @@
+package com.iqb.programmingbank.essync;
+
+import cn.hutool.core.collection.CollUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.iqb.programmingbank.config.EsSyncConfig;
+import com.iqb.programmingbank.esdao.PostEsDao;
+import com.iqb.programmingbank.esdao.QuestionEsDao;
+import com.iqb.programmingbank.manager.SearchCacheManager;
+import com.iqb.programmingbank.mapper.PostMapper;
+import com.iqb.programmingbank.mapper.QuestionBankQuestionMapper;
+import com.iqb.programmingbank.mapper.QuestionMapper;
+import com.iqb.programmingbank.model.dto.post.PostEsDTO;
+import com.iqb.programmingbank.model.dto.question.QuestionEsDTO;
+import com.iqb.programmingbank.model.entity.Post;
+import com.iqb.programmingbank.model.entity.Question;
+import com.iqb.programmingbank.model.entity.QuestionBankQuestion;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 按 id 把数据库中的最新状态写入 ES（幂等）
+ * <p>
+ * 逻辑删除的数据带 isDelete 写入，搜索时过滤；数据库中已不存在的数据从 ES 删除。
+ */
+@Slf4j
+@Component
+public class EsDocumentWriter {
+
+    @Resource
+    private EsSyncConfig esSyncConfig;
+
+    @Resource
+    private QuestionMapper questionMapper;
+
+    @Resource
+    private PostMapper postMapper;
+
+    @Resource
+    private QuestionBankQuestionMapper questionBankQuestionMapper;
+
+    @Resource
+    private QuestionEsDao questionEsDao;
+
+    @Resource
+    private PostEsDao postEsDao;
+
+    @Resource
+    private SearchCacheManager searchCacheManager;
+
+    /**
+     * 同步一批实体，失败时按指数退避重试，重试耗尽后抛出异常
+     *
+     * @param entityType
+     * @param ids
+     */
+    public void sync(EsSyncEntityTypeEnum entityType, Collection<Long> ids) {
+        if (CollUtil.isEmpty(ids)) {
+            return;
+        }
+        List<Long> idList = new ArrayList<>(ids);
+        int bulkSize = Math.max(1, esSyncConfig.getBulkSize());
+        try {
+            for (int i = 0; i < idList.size(); i += bulkSize) {
+                List<Long> subIdList = idList.subList(i, Math.min(i + bulkSize, idList.size()));
+                syncWithRetry(entityType, subIdList);
+            }
+        } finally {
+            // 部分写入成功也要失效搜索结果缓存
+            searchCacheManager.invalidate(entityType);
+        }
+    }
+
+    private void syncWithRetry(EsSyncEntityTypeEnum entityType, List<Long> idList) {
+        long backoffMillis = esSyncConfig.getRetryBackoffMillis();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                doSync(entityType, idList);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= esSyncConfig.getMaxRetries()) {
+                    throw e;
+                }
+                log.warn("es sync failed, retry {} in {} ms, entityType: {}, size: {}",
+                        attempt + 1, backoffMillis, entityType.getValue(), idList.size(), e);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoffMillis *= 2;
+            }
+        }
+    }
+
+    private void doSync(EsSyncEntityTypeEnum entityType, List<Long> idList) {
+        Set<Long> missingIdSet = new HashSet<>(idList);
+        switch (entityType) {
+            case QUESTION:
+                List<Question> questionList = questionMapper.listQuestionWithDeleteByIds(idList);
+                if (CollUtil.isNotEmpty(questionList)) {
+                    questionEsDao.saveAll(toQuestionEsDTOList(questionList));
+                    questionList.forEach(question -> missingIdSet.remove(question.getId()));
+                }
+                if (!missingIdSet.isEmpty()) {
+                    questionEsDao.deleteAllById(missingIdSet);
+                }
+                break;
+            case POST:
+                List<Post> postList = postMapper.listPostWithDeleteByIds(idList);
+                if (CollUtil.isNotEmpty(postList)) {
+                    postEsDao.saveAll(postList.stream()
+                            .map(PostEsDTO::objToDto)
+                            .collect(Collectors.toList()));
+                    postList.forEach(post -> missingIdSet.remove(post.getId()));
+                }
+                if (!missingIdSet.isEmpty()) {
+                    postEsDao.deleteAllById(missingIdSet);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 题目转为 ES 文档，并补充所属题库 id
+     *
+     * @param questionList
+     * @return
+     */
+    public List<QuestionEsDTO> toQuestionEsDTOList(List<Question> questionList) {
+        if (CollUtil.isEmpty(questionList)) {
+            return new ArrayList<>();
+        }
+        List<Long> questionIdList = questionList.stream().map(Question::getId).collect(Collectors.toList());
+        Map<Long, List<Long>> questionBankIdMap = questionBankQuestionMapper.selectList(
+                        Wrappers.lambdaQuery(QuestionBankQuestion.class)
+                                .select(QuestionBankQuestion::getQuestionId, QuestionBankQuestion::getQuestionBankId)
+                                .in(QuestionBankQuestion::getQuestionId, questionIdList))
+                .stream()
+                .collect(Collectors.groupingBy(QuestionBankQuestion::getQuestionId,
+                        Collectors.mapping(QuestionBankQuestion::getQuestionBankId, Collectors.toList())));
+        return questionList.stream().map(question -> {
+            QuestionEsDTO questionEsDTO = QuestionEsDTO.objToDto(question);
+            questionEsDTO.setQuestionBankIds(questionBankIdMap.getOrDefault(question.getId(), Collections.emptyList()));
+            return questionEsDTO;
+        }).collect(Collectors.toList());
+    }
+}
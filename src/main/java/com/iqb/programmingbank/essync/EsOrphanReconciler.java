@@ -0,0 +1,139 @@
+package com.iqb.programmingbank.essync;
+
+import cn.hutool.core.collection.CollUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iqb.programmingbank.config.EsSyncConfig;
+import com.iqb.programmingbank.esdao.PostEsDao;
+import com.iqb.programmingbank.manager.SearchCacheManager;
+import com.iqb.programmingbank.mapper.PostMapper;
+import com.iqb.programmingbank.model.entity.Post;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ES 孤儿文档清理（异步）
+ * <p>
+ * 按比例抽样搜索结果，命中的帖子 id 非阻塞地放入有界队列（满了直接丢弃），后台线程批量到数据库核对，
+ * 把数据库中已物理删除的帖子从 ES 删除。同一个 id 在一段时间内只核对一次，避免热门结果反复查库，
+ * 核对带来的数据库查询与搜索量无关。
+ */
+@Slf4j
+@Component
+public class EsOrphanReconciler {
+
+    private static final int QUEUE_SIZE = 10000;
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int CHECKED_ID_CACHE_SIZE = 100000;
+
+    @Resource
+    private EsSyncConfig esSyncConfig;
+
+    @Resource
+    private PostMapper postMapper;
+
+    @Resource
+    private PostEsDao postEsDao;
+
+    @Resource
+    private SearchCacheManager searchCacheManager;
+
+    private BlockingQueue<Long> postIdQueue;
+
+    /**
+     * 最近核对过的帖子 id
+     */
+    private Cache<Long, Boolean> checkedPostIdCache;
+
+    private Thread reconcileThread;
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        postIdQueue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        checkedPostIdCache = Caffeine.newBuilder()
+                .maximumSize(CHECKED_ID_CACHE_SIZE)
+                .expireAfterWrite(esSyncConfig.getOrphanCheckIntervalMinutes(), TimeUnit.MINUTES)
+                .build();
+        reconcileThread = new Thread(this::reconcileLoop, "es-orphan-reconciler");
+        reconcileThread.setDaemon(true);
+        reconcileThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        reconcileThread.interrupt();
+    }
+
+    /**
+     * 提交搜索命中的帖子 id 等待核对（不阻塞，按比例抽样，最近核对过的 id 跳过）
+     *
+     * @param postIds
+     */
+    public void submitPostIds(Collection<Long> postIds) {
+        if (CollUtil.isEmpty(postIds) || ThreadLocalRandom.current().nextDouble() >= esSyncConfig.getOrphanCheckSampleRate()) {
+            return;
+        }
+        for (Long postId : postIds) {
+            if (checkedPostIdCache.asMap().putIfAbsent(postId, true) == null && !postIdQueue.offer(postId)) {
+                // 队列已满，下次命中时再核对
+                checkedPostIdCache.invalidate(postId);
+            }
+        }
+    }
+
+    private void reconcileLoop() {
+        List<Long> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                Long first = postIdQueue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                postIdQueue.drainTo(batch, BATCH_SIZE - 1);
+                reconcile(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("es orphan reconcile failed, batch size: {}", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void reconcile(List<Long> postIdList) {
+        // 逻辑删除的帖子仍在 ES 中（带 isDelete），只清理数据库中已不存在的
+        Set<Long> orphanIdSet = new HashSet<>(postIdList);
+        List<Post> postList = postMapper.listPostWithDeleteByIds(postIdList);
+        if (postList != null) {
+            postList.forEach(post -> orphanIdSet.remove(post.getId()));
+        }
+        if (orphanIdSet.isEmpty()) {
+            return;
+        }
+        postEsDao.deleteAllById(orphanIdSet);
+        searchCacheManager.invalidate(EsSyncEntityTypeEnum.POST);
+        log.info("delete orphan posts from es: {}", orphanIdSet);
+    }
+}
@@ -0,0 +1,152 @@
+package com.iqb.programmingbank.essync;
+
+import com.iqb.programmingbank.config.EsSyncConfig;
+import com.iqb.programmingbank.mapper.EsSyncOutboxMapper;
+import com.iqb.programmingbank.model.entity.EsSyncOutbox;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发件箱同步任务（替代按 updateTime 轮询的增量同步）
+ * <p>
+ * 题目、帖子表的触发器在业务事务中把变更的 id 写入 es_sync_outbox，本任务按 id 顺序消费：
+ * 同一批内按实体去重合并，从数据库读取最新状态批量写入 ES，成功后推进位点（es_sync_checkpoint），
+ * 重启后从位点继续。ES 写入失败时不推进位点，也不继续读取新的变更（背压），下次轮询重试。
+ * 多个节点通过分布式锁保证同一时间只有一个节点消费。
+ */
+@Slf4j
+@Component
+public class EsOutboxSyncJob {
+
+    private static final String CHECKPOINT_NAME = "es_outbox";
+
+    private static final String LOCK_KEY = "es_sync:outbox:lock";
+
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    @Resource
+    private EsSyncConfig esSyncConfig;
+
+    @Resource
+    private EsSyncOutboxMapper esSyncOutboxMapper;
+
+    @Resource
+    private EsDocumentWriter esDocumentWriter;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    /**
+     * 轮询发件箱，有积压时连续消费直到追上
+     */
+    @Scheduled(fixedDelayString = "${es-sync.poll-interval-millis:1000}")
+    public void run() {
+        if (!esSyncConfig.isEnabled()) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(LOCK_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            while (syncBatch() >= esSyncConfig.getBatchSize()) {
+                log.debug("es outbox backlog, continue syncing");
+            }
+        } catch (Exception e) {
+            log.error("es outbox sync failed, will retry from checkpoint", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清理已同步的变更
+     */
+    @Scheduled(cron = "0 0 * * * *")
+    public void purge() {
+        if (!esSyncConfig.isEnabled()) {
+            return;
+        }
+        long checkpoint = getCheckpoint();
+        Date beforeTime = new Date(System.currentTimeMillis()
+                - TimeUnit.HOURS.toMillis(esSyncConfig.getOutboxRetentionHours()));
+        int deleted;
+        do {
+            deleted = esSyncOutboxMapper.deleteSynced(checkpoint, beforeTime, PURGE_BATCH_SIZE);
+        } while (deleted >= PURGE_BATCH_SIZE);
+    }
+
+    /**
+     * 同步一批变更
+     *
+     * @return 位点推进的变更数
+     */
+    private int syncBatch() {
+        long checkpoint = getCheckpoint();
+        List<EsSyncOutbox> outboxList = esSyncOutboxMapper.listAfter(checkpoint, esSyncConfig.getBatchSize());
+        if (outboxList.isEmpty()) {
+            return 0;
+        }
+        // 1. 按实体去重合并
+        Map<EsSyncEntityTypeEnum, Set<Long>> entityIdMap = new EnumMap<>(EsSyncEntityTypeEnum.class);
+        for (EsSyncOutbox outbox : outboxList) {
+            EsSyncEntityTypeEnum entityType = EsSyncEntityTypeEnum.getEnumByValue(outbox.getEntityType());
+            if (entityType == null) {
+                log.warn("unknown es sync entity type: {}, outbox id: {}", outbox.getEntityType(), outbox.getId());
+                continue;
+            }
+            entityIdMap.computeIfAbsent(entityType, key -> new LinkedHashSet<>()).add(outbox.getEntityId());
+        }
+        // 2. 写入 ES（失败抛出异常，不推进位点）
+        entityIdMap.forEach(esDocumentWriter::sync);
+        // 3. 推进位点
+        long newCheckpoint = getNextCheckpoint(checkpoint, outboxList, esSyncConfig.getGapTimeoutSeconds());
+        if (newCheckpoint > checkpoint) {
+            esSyncOutboxMapper.saveCheckpoint(CHECKPOINT_NAME, newCheckpoint);
+        }
+        log.debug("es outbox synced, changes: {}, checkpoint: {}", outboxList.size(), newCheckpoint);
+        return (int) outboxList.stream().filter(outbox -> outbox.getId() <= newCheckpoint).count();
+    }
+
+    /**
+     * 计算新的位点
+     * <p>
+     * 自增 id 按分配顺序而不是提交顺序可见，id 出现空洞可能是还没提交的事务，位点只能推进到空洞之前；
+     * 空洞之后的变更已经同步过，下次会重复同步（幂等）。空洞超过 gapTimeoutSeconds 仍未出现，则认为事务已回滚。
+     *
+     * @param checkpoint        当前位点
+     * @param outboxList        位点之后按 id 排序的变更
+     * @param gapTimeoutSeconds 空洞最多等待的时间
+     * @return
+     */
+    public static long getNextCheckpoint(long checkpoint, List<EsSyncOutbox> outboxList, long gapTimeoutSeconds) {
+        long gapDeadline = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(gapTimeoutSeconds);
+        long newCheckpoint = checkpoint;
+        for (EsSyncOutbox outbox : outboxList) {
+            boolean contiguous = outbox.getId() == newCheckpoint + 1;
+            if (!contiguous && outbox.getCreateTime().getTime() > gapDeadline) {
+                break;
+            }
+            newCheckpoint = outbox.getId();
+        }
+        return newCheckpoint;
+    }
+
+    private long getCheckpoint() {
+        Long checkpoint = esSyncOutboxMapper.getCheckpoint(CHECKPOINT_NAME);
+        return checkpoint == null ? 0 : checkpoint;
+    }
+}
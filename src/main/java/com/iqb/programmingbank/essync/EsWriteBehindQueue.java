@@ -0,0 +1,275 @@
+package com.iqb.programmingbank.essync;
+
+import cn.hutool.core.collection.CollUtil;
+import com.iqb.programmingbank.config.EsSyncConfig;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
+import com.iqb.programmingbank.model.vo.EsSyncStatusVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ES 写后同步队列（write-behind）
+ * <p>
+ * 题目、帖子在服务层变更后，事务提交时把 id 放入本队列，同一实体在刷新前的多次变更合并为一次；
+ * 后台线程每隔 writeBehindFlushMillis 批量从数据库读取最新状态写入 ES，使编辑在秒级内可被搜索到。
+ * 队列只在内存中，满了或节点宕机时丢失的变更由发件箱同步（{@link EsOutboxSyncJob}）兜底。
+ */
+@Slf4j
+@Component
+public class EsWriteBehindQueue {
+
+    @Resource
+    private EsSyncConfig esSyncConfig;
+
+    @Resource
+    private EsDocumentWriter esDocumentWriter;
+
+    /**
+     * 实体类型 => (实体 id => 首次入队时间)
+     */
+    private final Map<EsSyncEntityTypeEnum, ConcurrentHashMap<Long, Long>> pendingMap = new EnumMap<>(EsSyncEntityTypeEnum.class);
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final LongAdder flushedCount = new LongAdder();
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final LongAdder failedCount = new LongAdder();
+
+    /**
+     * 最近一次刷新中最早入队的变更从入队到写入 ES 的耗时（毫秒）
+     */
+    private volatile long lastLagMillis;
+
+    private Thread flushThread;
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        for (EsSyncEntityTypeEnum entityType : EsSyncEntityTypeEnum.values()) {
+            pendingMap.put(entityType, new ConcurrentHashMap<>());
+        }
+        if (!esSyncConfig.isWriteBehindEnabled()) {
+            return;
+        }
+        flushThread = new Thread(this::flushLoop, "es-write-behind");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        if (flushThread != null) {
+            flushThread.interrupt();
+        }
+    }
+
+    /**
+     * 实体变更后调用，有事务时在提交后入队（回滚则不入队）
+     *
+     * @param entityType
+     * @param ids
+     */
+    public void enqueue(EsSyncEntityTypeEnum entityType, Collection<Long> ids) {
+        if (!esSyncConfig.isWriteBehindEnabled() || CollUtil.isEmpty(ids)) {
+            return;
+        }
+        List<Long> idList = new ArrayList<>(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doEnqueue(entityType, idList);
+                }
+            });
+            return;
+        }
+        doEnqueue(entityType, idList);
+    }
+
+    /**
+     * 待同步的变更数
+     *
+     * @return
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * 最早的待同步变更已等待的时间（毫秒），没有待同步变更时为 0
+     *
+     * @return
+     */
+    public long getOldestPendingAgeMillis() {
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        for (ConcurrentHashMap<Long, Long> idTimeMap : pendingMap.values()) {
+            for (Long enqueueTime : idTimeMap.values()) {
+                oldest = Math.min(oldest, enqueueTime);
+            }
+        }
+        return now - oldest;
+    }
+
+    /**
+     * 最近一次刷新的同步延迟（毫秒）
+     *
+     * @return
+     */
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    /**
+     * 已写入 ES 的变更数
+     *
+     * @return
+     */
+    public long getFlushedCount() {
+        return flushedCount.sum();
+    }
+
+    /**
+     * 因队列已满被丢弃的变更数（由发件箱同步兜底）
+     *
+     * @return
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * 写入 ES 失败的变更数（失败后重新入队）
+     *
+     * @return
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * 队列状态（管理员查看同步积压和延迟）
+     *
+     * @return
+     */
+    public EsSyncStatusVO getStatus() {
+        EsSyncStatusVO esSyncStatusVO = new EsSyncStatusVO();
+        esSyncStatusVO.setPendingCount(getPendingCount());
+        esSyncStatusVO.setOldestPendingAgeMillis(getOldestPendingAgeMillis());
+        esSyncStatusVO.setLastLagMillis(getLastLagMillis());
+        esSyncStatusVO.setFlushedCount(getFlushedCount());
+        esSyncStatusVO.setDroppedCount(getDroppedCount());
+        esSyncStatusVO.setFailedCount(getFailedCount());
+        return esSyncStatusVO;
+    }
+
+    private void doEnqueue(EsSyncEntityTypeEnum entityType, List<Long> idList) {
+        ConcurrentHashMap<Long, Long> idTimeMap = pendingMap.get(entityType);
+        long now = System.currentTimeMillis();
+        for (Long id : idList) {
+            if (id == null || idTimeMap.containsKey(id)) {
+                // 已在队列中，合并
+                continue;
+            }
+            if (pendingCount.get() >= esSyncConfig.getWriteBehindMaxPending()) {
+                droppedCount.increment();
+                continue;
+            }
+            if (idTimeMap.putIfAbsent(id, now) == null) {
+                pendingCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                // 有积压（刷满一批）时立即继续，否则等待下一个周期
+                if (!flush()) {
+                    Thread.sleep(esSyncConfig.getWriteBehindFlushMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("es write-behind flush failed", e);
+            }
+        }
+    }
+
+    /**
+     * 每种实体取出一批变更写入 ES
+     *
+     * @return 是否还有积压
+     */
+    private boolean flush() throws InterruptedException {
+        boolean backlog = false;
+        int batchSize = Math.max(1, esSyncConfig.getBatchSize());
+        for (Map.Entry<EsSyncEntityTypeEnum, ConcurrentHashMap<Long, Long>> entry : pendingMap.entrySet()) {
+            ConcurrentHashMap<Long, Long> idTimeMap = entry.getValue();
+            if (idTimeMap.isEmpty()) {
+                continue;
+            }
+            // 1. 取出一批（取出后再变更的实体会重新入队，不会漏）
+            List<Long> idList = new ArrayList<>();
+            long oldestEnqueueTime = Long.MAX_VALUE;
+            Iterator<Map.Entry<Long, Long>> iterator = idTimeMap.entrySet().iterator();
+            while (iterator.hasNext() && idList.size() < batchSize) {
+                Map.Entry<Long, Long> idTime = iterator.next();
+                if (idTimeMap.remove(idTime.getKey(), idTime.getValue())) {
+                    pendingCount.decrementAndGet();
+                    idList.add(idTime.getKey());
+                    oldestEnqueueTime = Math.min(oldestEnqueueTime, idTime.getValue());
+                }
+            }
+            backlog |= !idTimeMap.isEmpty();
+            if (idList.isEmpty()) {
+                continue;
+            }
+            // 2. 写入 ES（内部按 bulkSize 分批并重试）
+            EsSyncEntityTypeEnum entityType = entry.getKey();
+            try {
+                esDocumentWriter.sync(entityType, idList);
+            } catch (RuntimeException e) {
+                failedCount.add(idList.size());
+                log.error("es write-behind sync failed, requeue, entityType: {}, size: {}",
+                        entityType.getValue(), idList.size(), e);
+                doEnqueue(entityType, idList);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                continue;
+            }
+            // 3. 记录延迟
+            flushedCount.add(idList.size());
+            lastLagMillis = System.currentTimeMillis() - oldestEnqueueTime;
+            if (lastLagMillis > esSyncConfig.getWriteBehindLagWarnMillis()) {
+                log.warn("es write-behind lag {} ms, entityType: {}, flushed: {}, pending: {}",
+                        lastLagMillis, entityType.getValue(), idList.size(), pendingCount.get());
+            } else {
+                log.debug("es write-behind flushed, entityType: {}, size: {}, lag: {} ms",
+                        entityType.getValue(), idList.size(), lastLagMillis);
+            }
+        }
+        return backlog;
+    }
+}
@@ -0,0 +1,116 @@
+package com.iqb.programmingbank.hotkey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min Sketch 频率估计（无锁，基于 AtomicLongArray）
+ * <p>
+ * 只会高估不会低估，内存固定为 depth * width 个 long，与 key 的数量无关。
+ */
+public class CountMinSketch {
+
+    private final int depth;
+
+    private final int width;
+
+    private final int mask;
+
+    private final AtomicLongArray table;
+
+    /**
+     * @param depth 哈希函数个数（行数）
+     * @param width 每行的计数器个数，会向上取整为 2 的幂
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth <= 0 || width <= 0) {
+            throw new IllegalArgumentException("depth and width must be positive");
+        }
+        int roundedWidth = Integer.highestOneBit(width);
+        if (roundedWidth < width) {
+            roundedWidth <<= 1;
+        }
+        this.depth = depth;
+        this.width = roundedWidth;
+        this.mask = this.width - 1;
+        this.table = new AtomicLongArray(depth * this.width);
+    }
+
+    /**
+     * 计算 key 在每一行的下标，同一个 key 在多个 sketch 之间可以复用
+     *
+     * @param key
+     * @return
+     */
+    public int[] indexes(String key) {
+        int h1 = spread(key.hashCode());
+        int h2 = spread(h1 ^ 0x9E3779B9) | 1;
+        int[] indexes = new int[depth];
+        for (int i = 0; i < depth; i++) {
+            indexes[i] = i * width + ((h1 + i * h2) & mask);
+        }
+        return indexes;
+    }
+
+    /**
+     * 增加计数
+     *
+     * @param indexes 由 {@link #indexes(String)} 计算
+     * @param delta
+     * @return 增加后的估计值
+     */
+    public long add(int[] indexes, long delta) {
+        long min = Long.MAX_VALUE;
+        for (int index : indexes) {
+            min = Math.min(min, table.addAndGet(index, delta));
+        }
+        return min;
+    }
+
+    /**
+     * 估计频率
+     *
+     * @param indexes 由 {@link #indexes(String)} 计算
+     * @return
+     */
+    public long estimate(int[] indexes) {
+        long min = Long.MAX_VALUE;
+        for (int index : indexes) {
+            min = Math.min(min, table.get(index));
+        }
+        return min;
+    }
+
+    /**
+     * 从当前 sketch 中减去另一个同规格 sketch 的计数，并清空另一个 sketch
+     *
+     * @param other
+     */
+    public void subtractAndClear(CountMinSketch other) {
+        if (other.table.length() != table.length()) {
+            throw new IllegalArgumentException("sketch size mismatch");
+        }
+        for (int i = 0; i < table.length(); i++) {
+            long count = other.table.getAndSet(i, 0);
+            if (count != 0) {
+                table.addAndGet(i, -count);
+            }
+        }
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
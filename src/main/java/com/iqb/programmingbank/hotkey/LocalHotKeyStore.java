@@ -0,0 +1,120 @@
+package com.iqb.programmingbank.hotkey;
+
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iqb.programmingbank.config.HotKeyConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地热 key 存储
+ * <p>
+ * 用法与京东 hotkey 的 JdHotKeyStore 一致：isHotKey 上报访问并判断是否为热 key，
+ * smartSet 只缓存热 key 的数据，get 读取本地缓存。
+ */
+@Slf4j
+@Component
+public class LocalHotKeyStore {
+
+    @Resource
+    private HotKeyConfig hotKeyConfig;
+
+    private SlidingWindowHotKeyDetector detector;
+
+    /**
+     * 热 key 本地缓存
+     */
+    private Cache<String, Object> localCache;
+
+    @PostConstruct
+    public void init() {
+        detector = new SlidingWindowHotKeyDetector(hotKeyConfig.getWindowSlots(), hotKeyConfig.getThreshold(),
+                hotKeyConfig.getTopK(), hotKeyConfig.getSketchDepth(), hotKeyConfig.getSketchWidth());
+        localCache = Caffeine.newBuilder()
+                .maximumSize(hotKeyConfig.getCaffeineSize())
+                .expireAfterWrite(hotKeyConfig.getCaffeineExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 记录一次访问，并判断是否为热 key
+     *
+     * @param key
+     * @return
+     */
+    public boolean isHotKey(String key) {
+        if (StrUtil.isBlank(key)) {
+            return false;
+        }
+        return detector.access(key);
+    }
+
+    /**
+     * 获取本地缓存的值（不记录访问）
+     *
+     * @param key
+     * @return
+     */
+    public Object get(String key) {
+        if (StrUtil.isBlank(key)) {
+            return null;
+        }
+        return localCache.getIfPresent(key);
+    }
+
+    /**
+     * 如果是热 key，则缓存到本地
+     *
+     * @param key
+     * @param value
+     */
+    public void smartSet(String key, Object value) {
+        if (StrUtil.isBlank(key) || value == null) {
+            return;
+        }
+        if (detector.isHot(key)) {
+            localCache.put(key, value);
+        }
+    }
+
+    /**
+     * 删除本地缓存（数据修改后调用）
+     *
+     * @param key
+     */
+    public void remove(String key) {
+        if (StrUtil.isBlank(key)) {
+            return;
+        }
+        localCache.invalidate(key);
+    }
+
+    /**
+     * 当前热 key 及其估计访问次数
+     *
+     * @return
+     */
+    public List<SlidingWindowHotKeyDetector.KeyCount> getHotKeys() {
+        return detector.getTopKeys();
+    }
+
+    /**
+     * 滑动窗口前进一个分片，不再热的 key 从本地缓存中移除
+     */
+    @Scheduled(fixedRateString = "${hotkey.slot-millis:1000}")
+    public void rotate() {
+        Set<String> cooledKeys = detector.rotate();
+        if (!cooledKeys.isEmpty()) {
+            localCache.invalidateAll(cooledKeys);
+            log.debug("hot key cooled: {}", cooledKeys);
+        }
+    }
+}
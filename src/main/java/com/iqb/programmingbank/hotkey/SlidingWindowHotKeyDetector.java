@@ -0,0 +1,218 @@
+package com.iqb.programmingbank.hotkey;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 滑动窗口热 key 探测器
+ * <p>
+ * 窗口被切成若干个分片，每个分片一个 Count-Min Sketch，另外维护一个窗口总计 sketch。
+ * 访问时只需累加当前分片和总计（O(depth)），分片轮转时把最老分片从总计里减掉再清空。
+ * 窗口内访问次数达到阈值的 key 进入 Top-K 候选，热 key 集合以不可变快照的形式发布，读无锁；
+ * Top-K 已满时先无锁比较堆中的最小次数，挤不进去的 key 不加锁。
+ */
+public class SlidingWindowHotKeyDetector {
+
+    private final CountMinSketch[] slots;
+
+    private final CountMinSketch window;
+
+    private final AtomicInteger currentSlot = new AtomicInteger();
+
+    private final long threshold;
+
+    private final int topK;
+
+    /**
+     * Top-K 候选（小顶堆），只在 key 超过阈值或分片轮转时加锁访问
+     */
+    private final PriorityQueue<KeyCount> heap = new PriorityQueue<>();
+
+    private final Map<String, KeyCount> heapIndex = new HashMap<>();
+
+    /**
+     * 进入 Top-K 需要超过的次数（堆满时为堆中最小次数，未满时为 -1），在锁内更新，锁外只读
+     */
+    private volatile long admissionCount = -1;
+
+    /**
+     * 当前热 key 快照
+     */
+    private volatile Set<String> hotKeys = Collections.emptySet();
+
+    /**
+     * @param windowSlots 窗口分片数
+     * @param threshold   窗口内访问次数达到该值视为热 key
+     * @param topK        最多同时保留的热 key 数量
+     * @param depth       sketch 行数
+     * @param width       sketch 每行计数器个数
+     */
+    public SlidingWindowHotKeyDetector(int windowSlots, long threshold, int topK, int depth, int width) {
+        if (windowSlots <= 0 || threshold <= 0 || topK <= 0) {
+            throw new IllegalArgumentException("windowSlots, threshold and topK must be positive");
+        }
+        this.slots = new CountMinSketch[windowSlots];
+        for (int i = 0; i < windowSlots; i++) {
+            slots[i] = new CountMinSketch(depth, width);
+        }
+        this.window = new CountMinSketch(depth, width);
+        this.threshold = threshold;
+        this.topK = topK;
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @param key
+     * @return 访问后该 key 是否为热 key
+     */
+    public boolean access(String key) {
+        int[] indexes = window.indexes(key);
+        slots[currentSlot.get()].add(indexes, 1);
+        long count = window.add(indexes, 1);
+        if (hotKeys.contains(key)) {
+            return true;
+        }
+        if (count < threshold) {
+            return false;
+        }
+        return offer(key, count);
+    }
+
+    /**
+     * 是否为热 key（不记录访问）
+     *
+     * @param key
+     * @return
+     */
+    public boolean isHot(String key) {
+        return hotKeys.contains(key);
+    }
+
+    /**
+     * 窗口内的估计访问次数
+     *
+     * @param key
+     * @return
+     */
+    public long estimate(String key) {
+        return window.estimate(window.indexes(key));
+    }
+
+    /**
+     * 滑动到下一个分片，淘汰最老分片的计数，并重新评估热 key
+     *
+     * @return 本次不再是热 key 的 key
+     */
+    public Set<String> rotate() {
+        int next = (currentSlot.get() + 1) % slots.length;
+        // 下一个分片就是窗口中最老的分片，先从总计中扣除再切换，切换前没有线程会写入它
+        window.subtractAndClear(slots[next]);
+        currentSlot.set(next);
+        Set<String> cooledKeys = new HashSet<>();
+        synchronized (heap) {
+            List<KeyCount> candidates = heap.stream()
+                    .map(keyCount -> new KeyCount(keyCount.key, estimate(keyCount.key)))
+                    .collect(Collectors.toList());
+            heap.clear();
+            heapIndex.clear();
+            for (KeyCount candidate : candidates) {
+                if (candidate.count >= threshold) {
+                    heap.offer(candidate);
+                    heapIndex.put(candidate.key, candidate);
+                } else {
+                    cooledKeys.add(candidate.key);
+                }
+            }
+            if (!cooledKeys.isEmpty()) {
+                publish();
+            }
+            updateAdmissionCount();
+        }
+        return cooledKeys;
+    }
+
+    /**
+     * 当前热 key 及其估计访问次数，按次数降序
+     *
+     * @return
+     */
+    public List<KeyCount> getTopKeys() {
+        synchronized (heap) {
+            return heap.stream()
+                    .sorted(Collections.reverseOrder())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private boolean offer(String key, long count) {
+        // 快照可能稍旧：误拒的 key 下次访问会再判断，误放行的在锁内再判断
+        if (count <= admissionCount) {
+            return false;
+        }
+        synchronized (heap) {
+            KeyCount existing = heapIndex.get(key);
+            if (existing != null) {
+                return true;
+            }
+            if (heap.size() >= topK) {
+                KeyCount min = heap.peek();
+                if (min == null || min.count >= count) {
+                    return false;
+                }
+                heap.poll();
+                heapIndex.remove(min.key);
+            }
+            KeyCount keyCount = new KeyCount(key, count);
+            heap.offer(keyCount);
+            heapIndex.put(key, keyCount);
+            publish();
+            updateAdmissionCount();
+            return true;
+        }
+    }
+
+    private void publish() {
+        hotKeys = Collections.unmodifiableSet(new HashSet<>(heapIndex.keySet()));
+    }
+
+    private void updateAdmissionCount() {
+        KeyCount min = heap.peek();
+        admissionCount = heap.size() >= topK && min != null ? min.count : -1;
+    }
+
+    /**
+     * key 及其估计访问次数
+     */
+    public static class KeyCount implements Comparable<KeyCount> {
+
+        private final String key;
+
+        private final long count;
+
+        public KeyCount(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public int compareTo(KeyCount other) {
+            return Long.compare(count, other.count);
+        }
+    }
+}
@@ -1,19 +1,53 @@
 package com.iqb.programmingbank.job.once;
 
-import cn.hutool.core.collection.CollUtil;
-import com.iqb.programmingbank.esdao.QuestionEsDao;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.iqb.programmingbank.config.EsSyncConfig;
+import com.iqb.programmingbank.essync.EsDocumentWriter;
+import com.iqb.programmingbank.manager.SearchCacheManager;
+import com.iqb.programmingbank.mapper.EsSyncOutboxMapper;
+import com.iqb.programmingbank.mapper.QuestionMapper;
 import com.iqb.programmingbank.model.dto.question.QuestionEsDTO;
+import com.iqb.programmingbank.model.entity.EsSyncOutbox;
 import com.iqb.programmingbank.model.entity.Question;
-import com.iqb.programmingbank.service.QuestionService;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
 
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
- * 全量同步题目到 es
+ * 全量同步题目到 es（重建索引）
+ * <p>
+ * 按 id 游标分批读取题目，边读边转换，按字节数攒成 bulk 请求并发写入一个新索引，
+ * 完成后原子地把别名切换到新索引并删除旧索引，重建期间搜索不受影响，内存占用与题目总数无关。
+ * 重建期间的变更（包括物理删除）从发件箱回放：切换别名前写入新索引，切换后再补写一次。
  *
 @author zeden
  */
@@ -22,33 +56,270 @@ import java.util.stream.Collectors;
 @Slf4j
 public class FullSyncQuestionToEs implements CommandLineRunner {
 
+    /**
+     * 题目索引别名（搜索和增量同步都通过别名读写）
+     */
+    private static final String QUESTION_INDEX_ALIAS = "question";
+
+    /**
+     * 需要从旧索引复制的 settings
+     */
+    private static final Set<String> COPIED_SETTING_KEY_SET = new HashSet<>(Arrays.asList(
+            "index.number_of_shards", "index.number_of_replicas", "index.refresh_interval", "index.max_result_window"));
+
+    /**
+     * 分词器等分析配置的前缀
+     */
+    private static final String ANALYSIS_SETTING_PREFIX = "index.analysis.";
+
+    @Resource
+    private QuestionMapper questionMapper;
+
+    @Resource
+    private EsSyncOutboxMapper esSyncOutboxMapper;
+
+    @Resource
+    private ElasticsearchRestTemplate elasticsearchRestTemplate;
+
     @Resource
-    private QuestionService questionService;
+    private EsDocumentWriter esDocumentWriter;
 
     @Resource
-    private QuestionEsDao questionEsDao;
+    private EsSyncConfig esSyncConfig;
+
+    @Resource
+    private SearchCacheManager searchCacheManager;
 
     @Override
     public void run(String... args) {
-        // 全量获取题目（数据量不大的情况下使用）
-        List<Question> questionList = questionService.list();
-        if (CollUtil.isEmpty(questionList)) {
-            return;
-        }
-        // 转为 ES 实体类
-        List<QuestionEsDTO> questionEsDTOList = questionList.stream()
-                .map(QuestionEsDTO::objToDto)
-                .collect(Collectors.toList());
-        // 分页批量插入到 ES
-        final int pageSize = 500;
-        int total = questionEsDTOList.size();
-        log.info("FullSyncQuestionToEs start, total {}", total);
-        for (int i = 0; i < total; i += pageSize) {
-            // 注意同步的数据下标不能超过总数据量
-            int end = Math.min(i + pageSize, total);
-            log.info("sync from {} to {}", i, end);
-            questionEsDao.saveAll(questionEsDTOList.subList(i, end));
-        }
-        log.info("FullSyncQuestionToEs end, total {}", total);
+        // 记录开始时的发件箱位置和时间，重建期间的变更（包括物理删除）从这里开始补写
+        long outboxId = getMaxOutboxId();
+        Date changedSince = new Date();
+        String newIndexName = QUESTION_INDEX_ALIAS + "_" + System.currentTimeMillis();
+        IndexCoordinates newIndex = IndexCoordinates.of(newIndexName);
+        IndexOperations aliasIndexOps = elasticsearchRestTemplate.indexOps(IndexCoordinates.of(QUESTION_INDEX_ALIAS));
+        Set<String> oldIndexNameSet = aliasIndexOps.getAliases(QUESTION_INDEX_ALIAS).keySet();
+        if (oldIndexNameSet.isEmpty() && aliasIndexOps.exists()) {
+            // 别名与普通索引不能重名，需要先按 sql/question_es_mapping.json 建立带别名的索引
+            throw new IllegalStateException("index " + QUESTION_INDEX_ALIAS
+                    + " is not an alias, recreate it with sql/question_es_mapping.json before reindexing online");
+        }
+        // 1. 创建新索引，沿用当前索引的 settings（分词器、分片、刷新间隔）和 mapping
+        IndexOperations newIndexOps = elasticsearchRestTemplate.indexOps(newIndex);
+        Document mapping;
+        if (oldIndexNameSet.isEmpty()) {
+            mapping = elasticsearchRestTemplate.indexOps(QuestionEsDTO.class).createMapping();
+            newIndexOps.create();
+        } else {
+            IndexOperations oldIndexOps = elasticsearchRestTemplate.indexOps(
+                    IndexCoordinates.of(oldIndexNameSet.iterator().next()));
+            mapping = Document.from(oldIndexOps.getMapping());
+            newIndexOps.create(copySettings(oldIndexOps.getSettings()));
+        }
+        newIndexOps.putMapping(mapping);
+        log.info("FullSyncQuestionToEs start, new index {}", newIndexName);
+        long total;
+        int changedCount;
+        try {
+            // 2. 流式写入新索引
+            total = reindex(newIndex);
+            // 3. 切换别名前把重建期间的变更（包括删除）补写到新索引
+            Set<Long> changedIdSet = new LinkedHashSet<>();
+            Date nextChangedSince = new Date();
+            outboxId = collectChangedIds(outboxId, changedSince, changedIdSet);
+            changedSince = nextChangedSince;
+            syncToIndex(changedIdSet, newIndex);
+            changedCount = changedIdSet.size();
+            newIndexOps.refresh();
+        } catch (RuntimeException e) {
+            log.error("FullSyncQuestionToEs failed, delete new index {}", newIndexName, e);
+            newIndexOps.delete();
+            throw e;
+        }
+        // 4. 原子切换别名
+        List<AliasAction> aliasActionList = new ArrayList<>();
+        for (String oldIndexName : oldIndexNameSet) {
+            aliasActionList.add(new AliasAction.Remove(AliasActionParameters.builder()
+                    .withIndices(oldIndexName).withAliases(QUESTION_INDEX_ALIAS).build()));
+        }
+        aliasActionList.add(new AliasAction.Add(AliasActionParameters.builder()
+                .withIndices(newIndexName).withAliases(QUESTION_INDEX_ALIAS).build()));
+        newIndexOps.alias(new AliasActions(aliasActionList.toArray(new AliasAction[0])));
+        searchCacheManager.invalidate(EsSyncEntityTypeEnum.QUESTION);
+        // 5. 补写上一步之后、切换别名之前的变更（这些变更由增量同步写到了旧索引）
+        Set<Long> changedIdSet = new LinkedHashSet<>();
+        collectChangedIds(outboxId, changedSince, changedIdSet);
+        esDocumentWriter.sync(EsSyncEntityTypeEnum.QUESTION, changedIdSet);
+        changedCount += changedIdSet.size();
+        // 6. 删除旧索引
+        for (String oldIndexName : oldIndexNameSet) {
+            elasticsearchRestTemplate.indexOps(IndexCoordinates.of(oldIndexName)).delete();
+        }
+        log.info("FullSyncQuestionToEs end, total {}, changed during reindex {}", total, changedCount);
+    }
+
+    /**
+     * 只保留可以复制到新索引的 settings（uuid、创建时间、版本等由 ES 生成）
+     */
+    private static Map<String, Object> copySettings(Map<String, Object> settings) {
+        Map<String, Object> flatSettings = new LinkedHashMap<>();
+        flattenSettings("", settings, flatSettings);
+        Map<String, Object> copiedSettings = new LinkedHashMap<>();
+        flatSettings.forEach((key, value) -> {
+            if (COPIED_SETTING_KEY_SET.contains(key) || key.startsWith(ANALYSIS_SETTING_PREFIX)) {
+                copiedSettings.put(key, value);
+            }
+        });
+        return copiedSettings;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flattenSettings(String prefix, Map<String, Object> settings, Map<String, Object> flatSettings) {
+        settings.forEach((key, value) -> {
+            if (value instanceof Map) {
+                flattenSettings(prefix + key + ".", (Map<String, Object>) value, flatSettings);
+            } else {
+                flatSettings.put(prefix + key, value);
+            }
+        });
+    }
+
+    /**
+     * 收集发件箱位置、更新时间之后变更的题目 id（发件箱没有开启时只能靠 updateTime，查不到物理删除）
+     *
+     * @return 新的发件箱位置
+     */
+    private long collectChangedIds(long outboxId, Date changedSince, Set<Long> changedIdSet) {
+        // 发件箱没有开启时表和触发器可能不存在
+        while (esSyncConfig.isEnabled()) {
+            List<EsSyncOutbox> outboxList = esSyncOutboxMapper.listAfter(outboxId, esSyncConfig.getBatchSize());
+            if (outboxList.isEmpty()) {
+                break;
+            }
+            for (EsSyncOutbox outbox : outboxList) {
+                if (EsSyncEntityTypeEnum.QUESTION.getValue().equals(outbox.getEntityType())) {
+                    changedIdSet.add(outbox.getEntityId());
+                }
+            }
+            outboxId = outboxList.get(outboxList.size() - 1).getId();
+        }
+        questionMapper.listQuestionWithDelete(changedSince).forEach(question -> changedIdSet.add(question.getId()));
+        return outboxId;
+    }
+
+    /**
+     * 把题目的最新状态直接写入指定索引，数据库中已不存在的题目从索引删除
+     */
+    private void syncToIndex(Collection<Long> questionIds, IndexCoordinates index) {
+        List<Long> questionIdList = new ArrayList<>(questionIds);
+        int bulkSize = Math.max(1, esSyncConfig.getBulkSize());
+        for (int i = 0; i < questionIdList.size(); i += bulkSize) {
+            List<Long> subIdList = questionIdList.subList(i, Math.min(i + bulkSize, questionIdList.size()));
+            Set<Long> missingIdSet = new HashSet<>(subIdList);
+            List<Question> questionList = questionMapper.listQuestionWithDeleteByIds(subIdList);
+            List<IndexQuery> indexQueryList = esDocumentWriter.toQuestionEsDTOList(questionList).stream()
+                    .map(questionEsDTO -> new IndexQueryBuilder()
+                            .withId(String.valueOf(questionEsDTO.getId()))
+                            .withObject(questionEsDTO)
+                            .build())
+                    .collect(Collectors.toList());
+            if (!indexQueryList.isEmpty()) {
+                elasticsearchRestTemplate.bulkIndex(indexQueryList, index);
+            }
+            questionList.forEach(question -> missingIdSet.remove(question.getId()));
+            for (Long questionId : missingIdSet) {
+                elasticsearchRestTemplate.delete(String.valueOf(questionId), index);
+            }
+        }
+    }
+
+    /**
+     * 发件箱当前位置（往前留出空洞等待时间，可能还没提交的变更会被回放，重复写入是幂等的）
+     */
+    private long getMaxOutboxId() {
+        if (!esSyncConfig.isEnabled()) {
+            return 0;
+        }
+        Date beforeTime = new Date(System.currentTimeMillis()
+                - TimeUnit.SECONDS.toMillis(esSyncConfig.getGapTimeoutSeconds()));
+        Long maxId = esSyncOutboxMapper.getMaxIdBefore(beforeTime);
+        return maxId == null ? 0 : maxId;
+    }
+
+    /**
+     * 按 id 游标读取所有题目并写入索引
+     *
+     * @return 写入的题目数
+     */
+    private long reindex(IndexCoordinates index) {
+        int concurrency = Math.max(1, esSyncConfig.getReindexConcurrency());
+        // 同时在途的 bulk 请求数有上限，内存占用约为 (并发数 + 1) * bulk 字节数
+        Semaphore inflight = new Semaphore(concurrency);
+        ExecutorService bulkExecutor = Executors.newFixedThreadPool(concurrency);
+        AtomicReference<RuntimeException> bulkError = new AtomicReference<>();
+        long total = 0;
+        try {
+            List<IndexQuery> bulkList = new ArrayList<>();
+            long bulkBytes = 0;
+            long lastId = 0;
+            while (true) {
+                // 只查当前批次，不会把全表加载到内存
+                LambdaQueryWrapper<Question> queryWrapper = Wrappers.lambdaQuery(Question.class)
+                        .gt(Question::getId, lastId)
+                        .orderByAsc(Question::getId)
+                        .last("limit " + esSyncConfig.getReindexScanSize());
+                List<Question> questionList = questionMapper.selectList(queryWrapper);
+                if (questionList.isEmpty()) {
+                    break;
+                }
+                for (QuestionEsDTO questionEsDTO : esDocumentWriter.toQuestionEsDTOList(questionList)) {
+                    String source = elasticsearchRestTemplate.getElasticsearchConverter()
+                            .mapObject(questionEsDTO).toJson();
+                    bulkList.add(new IndexQueryBuilder()
+                            .withId(String.valueOf(questionEsDTO.getId()))
+                            .withSource(source)
+                            .build());
+                    bulkBytes += source.getBytes(StandardCharsets.UTF_8).length;
+                    if (bulkBytes >= esSyncConfig.getReindexBulkBytes()) {
+                        submitBulk(bulkList, index, bulkExecutor, inflight, bulkError);
+                        bulkList = new ArrayList<>();
+                        bulkBytes = 0;
+                    }
+                }
+                total += questionList.size();
+                lastId = questionList.get(questionList.size() - 1).getId();
+                log.info("FullSyncQuestionToEs progress, total {}, last id {}", total, lastId);
+            }
+            if (!bulkList.isEmpty()) {
+                submitBulk(bulkList, index, bulkExecutor, inflight, bulkError);
+            }
+            // 等待所有 bulk 请求完成
+            inflight.acquireUninterruptibly(concurrency);
+            inflight.release(concurrency);
+        } finally {
+            bulkExecutor.shutdown();
+        }
+        if (bulkError.get() != null) {
+            throw bulkError.get();
+        }
+        return total;
+    }
+
+    private void submitBulk(List<IndexQuery> bulkList, IndexCoordinates index, ExecutorService bulkExecutor,
+                            Semaphore inflight, AtomicReference<RuntimeException> bulkError) {
+        if (bulkError.get() != null) {
+            throw bulkError.get();
+        }
+        // 在途请求已满时阻塞读取（背压）
+        inflight.acquireUninterruptibly();
+        bulkExecutor.execute(() -> {
+            try {
+                elasticsearchRestTemplate.bulkIndex(bulkList, index);
+            } catch (RuntimeException e) {
+                bulkError.compareAndSet(null, e);
+            } finally {
+                inflight.release();
+            }
+        });
     }
 }
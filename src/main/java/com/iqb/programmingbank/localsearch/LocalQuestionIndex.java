@@ -0,0 +1,525 @@
+package com.iqb.programmingbank.localsearch;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.iqb.programmingbank.common.CursorPage;
+import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.config.EsSearchConfig;
+import com.iqb.programmingbank.config.EsSyncConfig;
+import com.iqb.programmingbank.config.LocalSearchConfig;
+import com.iqb.programmingbank.constant.CommonConstant;
+import com.iqb.programmingbank.essync.EsOutboxSyncJob;
+import com.iqb.programmingbank.exception.BusinessException;
+import com.iqb.programmingbank.exception.ThrowUtils;
+import com.iqb.programmingbank.manager.SearchCacheManager;
+import com.iqb.programmingbank.mapper.EsSyncOutboxMapper;
+import com.iqb.programmingbank.mapper.QuestionMapper;
+import com.iqb.programmingbank.model.dto.question.QuestionQueryRequest;
+import com.iqb.programmingbank.model.entity.EsSyncOutbox;
+import com.iqb.programmingbank.model.entity.Question;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.cn.smart.SmartChineseAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.QueryBuilder;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 内嵌 Lucene 题目索引（ES 的降级方案，也可作为小规模部署的主搜索）
+ * <p>
+ * 索引文件使用 MMapDirectory 内存映射。启动时在后台从数据库全量重建（重建完成前不可用），
+ * 之后和 ES 一样消费同步发件箱（es_sync_outbox）增量更新，每个节点在内存中维护自己的位点。
+ * 查询条件、排序和分页方式与 ES 搜索保持一致，游标分页使用 search_after。
+ */
+@Slf4j
+@Component
+public class LocalQuestionIndex {
+
+    private static final String ID_FIELD = "id";
+
+    private static final String TITLE_FIELD = "title";
+
+    private static final String CONTENT_FIELD = "content";
+
+    private static final String ANSWER_FIELD = "answer";
+
+    private static final String TAGS_FIELD = "tags";
+
+    private static final String USER_ID_FIELD = "userId";
+
+    private static final String CREATE_TIME_FIELD = "createTime";
+
+    private static final String UPDATE_TIME_FIELD = "updateTime";
+
+    private static final String EDIT_TIME_FIELD = "editTime";
+
+    /**
+     * 支持排序的字段（都有数值 doc values）
+     */
+    private static final Set<String> SORT_FIELD_SET = new LinkedHashSet<>(Arrays.asList(
+            ID_FIELD, USER_ID_FIELD, CREATE_TIME_FIELD, UPDATE_TIME_FIELD, EDIT_TIME_FIELD));
+
+    private static final String CURSOR_SEARCH_AFTER = "after";
+
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    @Resource
+    private LocalSearchConfig localSearchConfig;
+
+    @Resource
+    private EsSyncConfig esSyncConfig;
+
+    @Resource
+    private EsSearchConfig esSearchConfig;
+
+    @Resource
+    private QuestionMapper questionMapper;
+
+    @Resource
+    private EsSyncOutboxMapper esSyncOutboxMapper;
+
+    @Resource
+    private SearchCacheManager searchCacheManager;
+
+    private Analyzer analyzer;
+
+    private MMapDirectory directory;
+
+    private IndexWriter indexWriter;
+
+    private SearcherManager searcherManager;
+
+    private Thread rebuildThread;
+
+    /**
+     * 已应用到索引的发件箱位点（只在本节点有效）
+     */
+    private volatile long checkpoint;
+
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() {
+        if (!localSearchConfig.isEnabled()) {
+            return;
+        }
+        try {
+            Path indexPath = Paths.get(localSearchConfig.getIndexPath());
+            Files.createDirectories(indexPath);
+            analyzer = new SmartChineseAnalyzer();
+            directory = new MMapDirectory(indexPath);
+            // 每次启动重建，不复用上次的索引文件
+            IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+            indexWriter = new IndexWriter(directory, indexWriterConfig);
+            searcherManager = new SearcherManager(indexWriter, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("open local question index failed", e);
+        }
+        rebuildThread = new Thread(this::rebuild, "local-question-index-rebuild");
+        rebuildThread.setDaemon(true);
+        rebuildThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        if (indexWriter == null) {
+            return;
+        }
+        rebuildThread.interrupt();
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+        analyzer.close();
+    }
+
+    /**
+     * 索引是否可用
+     *
+     * @return
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 消费发件箱中的题目变更
+     */
+    @Scheduled(fixedDelayString = "${local-search.poll-interval-millis:1000}")
+    public void poll() {
+        if (!ready) {
+            return;
+        }
+        try {
+            while (applyBatch() >= localSearchConfig.getBatchSize()) {
+                log.debug("local question index backlog, continue applying");
+            }
+        } catch (Exception e) {
+            log.error("local question index update failed, will retry from checkpoint: {}", checkpoint, e);
+        }
+    }
+
+    /**
+     * 未开启 ES 同步时，由本地索引清理已消费的变更
+     */
+    @Scheduled(cron = "0 0 * * * *")
+    public void purge() {
+        if (!ready || esSyncConfig.isEnabled()) {
+            return;
+        }
+        Date beforeTime = new Date(System.currentTimeMillis()
+                - TimeUnit.HOURS.toMillis(esSyncConfig.getOutboxRetentionHours()));
+        int deleted;
+        do {
+            deleted = esSyncOutboxMapper.deleteSynced(checkpoint, beforeTime, PURGE_BATCH_SIZE);
+        } while (deleted >= PURGE_BATCH_SIZE);
+    }
+
+    /**
+     * 搜索题目
+     *
+     * @param questionQueryRequest 查询条件（同 ES 搜索）
+     * @param questionIdBitmap     题库中的题目 id，为 null 时不过滤
+     * @return 游标分页时返回 {@link CursorPage}
+     */
+    public Page<Question> search(QuestionQueryRequest questionQueryRequest, RoaringBitmap questionIdBitmap) {
+        ThrowUtils.throwIf(!ready, ErrorCode.SYSTEM_ERROR, "local search index not ready");
+        int pageSize = questionQueryRequest.getPageSize();
+        ThrowUtils.throwIf(pageSize <= 0, ErrorCode.PARAMS_ERROR);
+        Query query = buildQuery(questionQueryRequest, questionIdBitmap);
+        Sort sort = buildSort(questionQueryRequest.getSortField(), questionQueryRequest.getSortOrder());
+        String cursor = questionQueryRequest.getCursor();
+        try {
+            IndexSearcher indexSearcher = searcherManager.acquire();
+            try {
+                // 普通分页
+                if (cursor == null) {
+                    int current = Math.max(1, questionQueryRequest.getCurrent());
+                    ThrowUtils.throwIf((long) current * pageSize > esSearchConfig.getMaxResultWindow(),
+                            ErrorCode.PARAMS_ERROR, "page too deep, use cursor");
+                    TopFieldDocs topDocs = indexSearcher.search(query, current * pageSize, sort, true);
+                    Page<Question> page = new Page<>(current, pageSize, topDocs.totalHits.value);
+                    ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+                    List<Question> questionList = new ArrayList<>();
+                    for (int i = (current - 1) * pageSize; i < scoreDocs.length; i++) {
+                        questionList.add(toQuestion(indexSearcher.doc(scoreDocs[i].doc)));
+                    }
+                    page.setRecords(questionList);
+                    return page;
+                }
+                // 游标分页：多查一条判断是否还有下一页
+                FieldDoc after = null;
+                if (!cursor.isEmpty()) {
+                    // 排序值相同时按文档号比较，id 唯一，取最大文档号即可
+                    int maxDoc = indexSearcher.getIndexReader().maxDoc();
+                    after = new FieldDoc(Math.max(0, maxDoc - 1), Float.NaN, decodeCursor(cursor, sort));
+                }
+                TopFieldDocs topDocs = indexSearcher.searchAfter(after, query, pageSize + 1, sort, true);
+                CursorPage<Question> cursorPage = new CursorPage<>(pageSize);
+                if (Boolean.TRUE.equals(questionQueryRequest.getSearchCount())) {
+                    cursorPage.setTotal(topDocs.totalHits.value);
+                }
+                ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+                int count = Math.min(pageSize, scoreDocs.length);
+                List<Question> questionList = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    questionList.add(toQuestion(indexSearcher.doc(scoreDocs[i].doc)));
+                }
+                if (scoreDocs.length > pageSize) {
+                    cursorPage.setNextCursor(encodeCursor((FieldDoc) scoreDocs[pageSize - 1]));
+                }
+                cursorPage.setRecords(questionList);
+                return cursorPage;
+            } finally {
+                searcherManager.release(indexSearcher);
+            }
+        } catch (IOException e) {
+            log.error("search local question index failed", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "local search failed");
+        }
+    }
+
+    /**
+     * 从数据库全量重建索引
+     */
+    private void rebuild() {
+        long startTime = System.currentTimeMillis();
+        long lastId = 0;
+        try {
+            // 先记下位点，重建期间的变更之后重放（幂等）
+            Date gapDeadline = new Date(startTime - TimeUnit.SECONDS.toMillis(esSyncConfig.getGapTimeoutSeconds()));
+            Long maxOutboxId = esSyncOutboxMapper.getMaxIdBefore(gapDeadline);
+            checkpoint = maxOutboxId == null ? 0 : maxOutboxId;
+            int count = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                LambdaQueryWrapper<Question> queryWrapper = Wrappers.lambdaQuery(Question.class)
+                        .gt(Question::getId, lastId)
+                        .orderByAsc(Question::getId)
+                        .last("limit " + localSearchConfig.getLoadBatchSize());
+                List<Question> questionList = questionMapper.selectList(queryWrapper);
+                if (questionList.isEmpty()) {
+                    break;
+                }
+                for (Question question : questionList) {
+                    indexWriter.addDocument(toDocument(question));
+                }
+                count += questionList.size();
+                lastId = questionList.get(questionList.size() - 1).getId();
+            }
+            searcherManager.maybeRefresh();
+            ready = true;
+            log.info("local question index rebuilt, questions: {}, checkpoint: {}, cost: {} ms",
+                    count, checkpoint, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("local question index rebuild failed, last id: {}", lastId, e);
+        }
+    }
+
+    /**
+     * 应用一批变更
+     *
+     * @return 位点推进的变更数
+     */
+    private int applyBatch() throws IOException {
+        long currentCheckpoint = checkpoint;
+        List<EsSyncOutbox> outboxList = esSyncOutboxMapper.listAfter(currentCheckpoint, localSearchConfig.getBatchSize());
+        if (outboxList.isEmpty()) {
+            return 0;
+        }
+        Set<Long> questionIdSet = outboxList.stream()
+                .filter(outbox -> EsSyncEntityTypeEnum.QUESTION.getValue().equals(outbox.getEntityType()))
+                .map(EsSyncOutbox::getEntityId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (!questionIdSet.isEmpty()) {
+            update(questionIdSet);
+        }
+        long newCheckpoint = EsOutboxSyncJob.getNextCheckpoint(currentCheckpoint, outboxList,
+                esSyncConfig.getGapTimeoutSeconds());
+        checkpoint = newCheckpoint;
+        return (int) outboxList.stream().filter(outbox -> outbox.getId() <= newCheckpoint).count();
+    }
+
+    /**
+     * 按数据库最新状态更新题目（包括已删除的）
+     */
+    private void update(Collection<Long> questionIds) throws IOException {
+        Map<Long, Question> questionMap = questionMapper.listQuestionWithDeleteByIds(new ArrayList<>(questionIds)).stream()
+                .collect(Collectors.toMap(Question::getId, question -> question, (a, b) -> a));
+        for (Long questionId : questionIds) {
+            Question question = questionMap.get(questionId);
+            Term idTerm = new Term(ID_FIELD, String.valueOf(questionId));
+            if (question == null || Integer.valueOf(1).equals(question.getIsDelete())) {
+                indexWriter.deleteDocuments(idTerm);
+            } else {
+                indexWriter.updateDocument(idTerm, toDocument(question));
+            }
+        }
+        searcherManager.maybeRefresh();
+        if (localSearchConfig.isPrimary()) {
+            // 本地索引是主搜索时，搜索缓存随本地索引失效
+            searchCacheManager.invalidate(EsSyncEntityTypeEnum.QUESTION);
+        }
+    }
+
+    private Query buildQuery(QuestionQueryRequest questionQueryRequest, RoaringBitmap questionIdBitmap) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        // 过滤
+        builder.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        if (questionQueryRequest.getId() != null) {
+            builder.add(new TermQuery(new Term(ID_FIELD, String.valueOf(questionQueryRequest.getId()))),
+                    BooleanClause.Occur.FILTER);
+        }
+        if (questionQueryRequest.getNotId() != null) {
+            builder.add(new TermQuery(new Term(ID_FIELD, String.valueOf(questionQueryRequest.getNotId()))),
+                    BooleanClause.Occur.MUST_NOT);
+        }
+        if (questionQueryRequest.getUserId() != null) {
+            builder.add(new TermQuery(new Term(USER_ID_FIELD, String.valueOf(questionQueryRequest.getUserId()))),
+                    BooleanClause.Occur.FILTER);
+        }
+        if (questionIdBitmap != null) {
+            List<BytesRef> idTermList = new ArrayList<>(questionIdBitmap.getCardinality());
+            questionIdBitmap.forEach((int questionId) -> idTermList.add(new BytesRef(String.valueOf(questionId))));
+            builder.add(new TermInSetQuery(ID_FIELD, idTermList), BooleanClause.Occur.FILTER);
+        }
+        // 必须包含所有标签
+        if (CollUtil.isNotEmpty(questionQueryRequest.getTags())) {
+            for (String tag : questionQueryRequest.getTags()) {
+                builder.add(new TermQuery(new Term(TAGS_FIELD, tag)), BooleanClause.Occur.FILTER);
+            }
+        }
+        // 按关键词检索：title、content、answer 任意一个匹配
+        String searchText = questionQueryRequest.getSearchText();
+        if (StringUtils.isNotBlank(searchText)) {
+            QueryBuilder queryBuilder = new QueryBuilder(analyzer);
+            BooleanQuery.Builder textBuilder = new BooleanQuery.Builder();
+            boolean hasTextQuery = false;
+            for (String field : new String[]{TITLE_FIELD, CONTENT_FIELD, ANSWER_FIELD}) {
+                Query textQuery = queryBuilder.createBooleanQuery(field, searchText);
+                if (textQuery != null) {
+                    textBuilder.add(textQuery, BooleanClause.Occur.SHOULD);
+                    hasTextQuery = true;
+                }
+            }
+            builder.add(hasTextQuery ? textBuilder.build() : new MatchNoDocsQuery(), BooleanClause.Occur.MUST);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 排序字段之后加 id 作为第二排序字段（与主排序同向），保证游标分页顺序稳定
+     */
+    private static Sort buildSort(String sortField, String sortOrder) {
+        if (StringUtils.isBlank(sortField)) {
+            return new Sort(SortField.FIELD_SCORE, new SortField(ID_FIELD, SortField.Type.LONG, true));
+        }
+        ThrowUtils.throwIf(!SORT_FIELD_SET.contains(sortField), ErrorCode.PARAMS_ERROR, "unsupported sort field");
+        boolean reverse = !CommonConstant.SORT_ORDER_ASC.equals(sortOrder);
+        if (ID_FIELD.equals(sortField)) {
+            return new Sort(new SortField(ID_FIELD, SortField.Type.LONG, reverse));
+        }
+        return new Sort(new SortField(sortField, SortField.Type.LONG, reverse),
+                new SortField(ID_FIELD, SortField.Type.LONG, reverse));
+    }
+
+    private static Document toDocument(Question question) {
+        Document document = new Document();
+        document.add(new StringField(ID_FIELD, String.valueOf(question.getId()), Field.Store.YES));
+        document.add(new NumericDocValuesField(ID_FIELD, question.getId()));
+        addText(document, TITLE_FIELD, question.getTitle());
+        addText(document, CONTENT_FIELD, question.getContent());
+        addText(document, ANSWER_FIELD, question.getAnswer());
+        if (JSONUtil.isTypeJSONArray(question.getTags())) {
+            for (String tag : JSONUtil.toList(question.getTags(), String.class)) {
+                document.add(new StringField(TAGS_FIELD, tag, Field.Store.YES));
+            }
+        }
+        if (question.getUserId() != null) {
+            document.add(new StringField(USER_ID_FIELD, String.valueOf(question.getUserId()), Field.Store.YES));
+            document.add(new NumericDocValuesField(USER_ID_FIELD, question.getUserId()));
+        }
+        addTime(document, CREATE_TIME_FIELD, question.getCreateTime());
+        addTime(document, UPDATE_TIME_FIELD, question.getUpdateTime());
+        addTime(document, EDIT_TIME_FIELD, question.getEditTime());
+        return document;
+    }
+
+    private static void addText(Document document, String field, String value) {
+        if (value != null) {
+            document.add(new TextField(field, value, Field.Store.YES));
+        }
+    }
+
+    private static void addTime(Document document, String field, Date value) {
+        if (value != null) {
+            document.add(new NumericDocValuesField(field, value.getTime()));
+            document.add(new StoredField(field, value.getTime()));
+        }
+    }
+
+    private static Question toQuestion(Document document) {
+        Question question = new Question();
+        question.setId(Long.valueOf(document.get(ID_FIELD)));
+        question.setTitle(document.get(TITLE_FIELD));
+        question.setContent(document.get(CONTENT_FIELD));
+        question.setAnswer(document.get(ANSWER_FIELD));
+        question.setTags(JSONUtil.toJsonStr(document.getValues(TAGS_FIELD)));
+        String userId = document.get(USER_ID_FIELD);
+        question.setUserId(userId == null ? null : Long.valueOf(userId));
+        question.setCreateTime(getTime(document, CREATE_TIME_FIELD));
+        question.setUpdateTime(getTime(document, UPDATE_TIME_FIELD));
+        question.setEditTime(getTime(document, EDIT_TIME_FIELD));
+        question.setIsDelete(0);
+        return question;
+    }
+
+    private static Date getTime(Document document, String field) {
+        IndexableField indexableField = document.getField(field);
+        return indexableField == null ? null : new Date(indexableField.numericValue().longValue());
+    }
+
+    /**
+     * 游标格式与 ES 游标相同：{"after": [排序值...]}，Base64 编码
+     */
+    private static String encodeCursor(FieldDoc fieldDoc) {
+        JSONObject cursorObj = new JSONObject();
+        cursorObj.set(CURSOR_SEARCH_AFTER, new JSONArray(fieldDoc.fields));
+        return Base64.encodeUrlSafe(cursorObj.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static Object[] decodeCursor(String cursor, Sort sort) {
+        try {
+            JSONArray searchAfter = JSONUtil.parseObj(Base64.decodeStr(cursor, StandardCharsets.UTF_8))
+                    .getJSONArray(CURSOR_SEARCH_AFTER);
+            SortField[] sortFields = sort.getSort();
+            ThrowUtils.throwIf(searchAfter == null || searchAfter.size() != sortFields.length,
+                    ErrorCode.PARAMS_ERROR, "invalid cursor");
+            Object[] fields = new Object[sortFields.length];
+            for (int i = 0; i < sortFields.length; i++) {
+                fields[i] = sortFields[i].getType() == SortField.Type.SCORE
+                        ? searchAfter.getFloat(i)
+                        : searchAfter.getLong(i);
+            }
+            return fields;
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "invalid cursor");
+        }
+    }
+}
@@ -7,15 +7,29 @@ import com.volcengine.ark.runtime.model.completion.chat.ChatMessage;
 import com.volcengine.ark.runtime.model.completion.chat.ChatMessageRole;
 import com.volcengine.ark.runtime.service.ArkService;
 import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.config.AiConfig;
 import com.iqb.programmingbank.exception.BusinessException;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 通用的 AI 调用类
+ * <p>
+ * 所有调用（同步、异步）共用一组并发许可，保证整个实例同时发往 AI 接口的请求不超过 maxConcurrency；
+ * 异步调用在有界线程池中执行，队列满时直接拒绝。
  */
 @Service
 public class AiManager {
@@ -23,8 +37,66 @@ public class AiManager {
     @Resource
     private ArkService aiService;
 
+    @Resource
+    private AiConfig aiConfig;
+
     private final String DEFAULT_MODEL = "deepseek-v3-241226";
 
+    private Semaphore permits;
+
+    private ThreadPoolExecutor asyncExecutor;
+
+    @PostConstruct
+    public void init() {
+        int maxConcurrency = Math.max(1, aiConfig.getMaxConcurrency());
+        permits = new Semaphore(maxConcurrency, true);
+        AtomicInteger threadNumber = new AtomicInteger();
+        asyncExecutor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, aiConfig.getMaxQueueSize())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ai-chat-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        asyncExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        asyncExecutor.shutdownNow();
+    }
+
+    /**
+     * 异步调用 AI 接口，在有界线程池中执行
+     * <p>
+     * 取消返回的 future 会中断执行线程，正在进行的请求随之取消，请求真正结束后才释放并发许可
+     *
+     * @param systemPrompt
+     * @param userPrompt
+     * @return
+     */
+    public CompletableFuture<String> doChatAsync(String systemPrompt, String userPrompt) {
+        InterruptibleFuture<String> future = new InterruptibleFuture<>();
+        Future<?> task;
+        try {
+            task = asyncExecutor.submit(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(doChat(systemPrompt, userPrompt));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "AI 调用排队过多，请稍后再试");
+        }
+        future.setTask(task);
+        return future;
+    }
+
     /**
      * 调用 AI 接口，获取响应字符串
      *
@@ -88,8 +160,15 @@ public class AiManager {
                 .model(model)
                 .messages(messages)
                 .build();
-        // 调用接口发送请求
-        List<ChatCompletionChoice> choices = aiService.createChatCompletion(chatCompletionRequest).getChoices();
+        // 调用接口发送请求（受全局并发上限限制）
+        acquirePermit();
+        List<ChatCompletionChoice> choices;
+        try {
+            // 线程被中断（异步调用被取消）时，SDK 会取消底层 HTTP 请求后再返回，请求结束后才释放许可
+            choices = aiService.createChatCompletion(chatCompletionRequest).getChoices();
+        } finally {
+            permits.release();
+        }
         if (CollUtil.isNotEmpty(choices)) {
             return (String) choices.get(0).getMessage().getContent();
         }
@@ -97,4 +176,42 @@ public class AiManager {
 //        // shutdown service after all requests is finished
 //        aiService.shutdownExecutor();
     }
+
+    private void acquirePermit() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(aiConfig.getCallTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "AI 调用被中断");
+        }
+        if (!acquired) {
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "AI 调用繁忙，请稍后再试");
+        }
+    }
+
+    /**
+     * 取消时同时中断执行线程的 future（CompletableFuture 本身的 cancel 不会中断任务）
+     */
+    private static class InterruptibleFuture<T> extends CompletableFuture<T> {
+
+        private volatile Future<?> task;
+
+        void setTask(Future<?> task) {
+            this.task = task;
+            if (isCancelled()) {
+                task.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<?> currentTask = task;
+            if (currentTask != null) {
+                currentTask.cancel(true);
+            }
+            return cancelled;
+        }
+    }
 }
@@ -1,27 +1,98 @@
 package com.iqb.programmingbank.manager;
 
 import cn.hutool.core.util.StrUtil;
+import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.config.CounterConfig;
+import com.iqb.programmingbank.exception.BusinessException;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
 import org.redisson.api.RScript;
+import org.redisson.api.RScriptAsync;
 import org.redisson.api.RedissonClient;
 import org.redisson.client.codec.IntegerCodec;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 通用计数器（可用于实现频率统计、限流、封禁等等）
+ * <p>
+ * Lua 脚本只加载一次，之后通过 EVALSHA 调用；开启批量模式后，并发请求对同一个 key 的计数在本地合并，
+ * 不同 key 通过 pipeline 一次提交，每个调用方仍然拿到自己那一次递增后的精确计数。
  */
 @Slf4j
 @Service
 public class CounterManager {
 
+    /**
+     * 计数 Lua 脚本：KEYS[1] 计数 key，ARGV[1] 过期时间（秒），ARGV[2] 增量；首次创建时设置过期时间
+     */
+    static final String COUNTER_LUA_SCRIPT =
+            "local count = redis.call('incrby', KEYS[1], ARGV[2]); " +
+                    "if count == tonumber(ARGV[2]) then " +
+                    "  redis.call('expire', KEYS[1], ARGV[1]); " +
+                    "end " +
+                    "return count";
+
     @Resource
     private RedissonClient redissonClient;
 
+    @Resource
+    private CounterConfig counterConfig;
+
+    /**
+     * 脚本 SHA，Redis 重启或 SCRIPT FLUSH 后会重新加载
+     */
+    private volatile String scriptSha;
+
+    /**
+     * 待提交的计数（key 为带时间窗口的 Redis Key），由 pendingLock 保护
+     */
+    private Map<String, PendingCounter> pendingCounters = new HashMap<>();
+
+    private final Object pendingLock = new Object();
+
+    private ScheduledExecutorService flushExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (counterConfig.isBatchEnabled()) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "counter-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long windowMillis = Math.max(1, counterConfig.getBatchWindowMillis());
+            flushExecutor.scheduleWithFixedDelay(this::flushQuietly, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            // 提交剩余的计数
+            flushQuietly();
+        }
+    }
+
     /**
      * 增加并返回计数，默认统计一分钟内的计数结果
      *
@@ -72,8 +143,55 @@ public class CounterManager {
         if (StrUtil.isBlank(key)) {
             return 0;
         }
+        String redisKey = getRedisKey(key, timeInterval, timeUnit);
+        if (!counterConfig.isBatchEnabled()) {
+            return evalSha(redisKey, expirationTimeInSeconds, 1);
+        }
+        CompletableFuture<Long> future = enqueue(redisKey, expirationTimeInSeconds);
+        if (future == null) {
+            // 待提交的 key 太多，直接同步调用
+            return evalSha(redisKey, expirationTimeInSeconds, 1);
+        }
+        return await(future);
+    }
 
-        // 根据时间粒度生成 Redis Key
+    /**
+     * 批量增加并返回计数（一次 pipeline 提交）
+     *
+     * @param keyDeltas               缓存键 -> 增量
+     * @param timeInterval            时间间隔
+     * @param timeUnit                时间间隔单位
+     * @param expirationTimeInSeconds 计数器缓存过期时间
+     * @return 缓存键 -> 增加后的计数
+     */
+    public Map<String, Long> incrAndGetCounters(Map<String, Long> keyDeltas, int timeInterval, TimeUnit timeUnit,
+                                                long expirationTimeInSeconds) {
+        Map<String, Long> result = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        List<Map.Entry<String, PendingCounter>> entries = new ArrayList<>();
+        keyDeltas.forEach((key, delta) -> {
+            if (StrUtil.isBlank(key) || delta == null || delta <= 0) {
+                return;
+            }
+            keys.add(key);
+            entries.add(new AbstractMap.SimpleEntry<>(getRedisKey(key, timeInterval, timeUnit),
+                    new PendingCounter(expirationTimeInSeconds, delta)));
+        });
+        int batchMaxKeys = Math.max(1, counterConfig.getBatchMaxKeys());
+        for (int i = 0; i < entries.size(); i += batchMaxKeys) {
+            int end = Math.min(i + batchMaxKeys, entries.size());
+            List<?> responses = executeBatch(entries.subList(i, end));
+            for (int j = i; j < end; j++) {
+                result.put(keys.get(j), ((Number) responses.get(j - i)).longValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 根据时间粒度生成 Redis Key
+     */
+    private String getRedisKey(String key, int timeInterval, TimeUnit timeUnit) {
         long timeFactor;
         switch (timeUnit) {
             case SECONDS:
@@ -88,41 +206,191 @@ public class CounterManager {
             default:
                 throw new IllegalArgumentException("不支持的单位");
         }
+        return key + ":" + timeFactor;
+    }
 
-        String redisKey = key + ":" + timeFactor;
+    /**
+     * 同步执行计数脚本
+     */
+    private long evalSha(String redisKey, long expirationTimeInSeconds, long delta) {
+        RScript script = redissonClient.getScript(IntegerCodec.INSTANCE);
+        Long count;
+        try {
+            count = script.evalSha(RScript.Mode.READ_WRITE, getScriptSha(), RScript.ReturnType.INTEGER,
+                    Collections.singletonList(redisKey), expirationTimeInSeconds, delta);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            count = script.evalSha(RScript.Mode.READ_WRITE, reloadScriptSha(), RScript.ReturnType.INTEGER,
+                    Collections.singletonList(redisKey), expirationTimeInSeconds, delta);
+        }
+        return count;
+    }
 
-        // Lua 脚本
-        String luaScript =
-                "if redis.call('exists', KEYS[1]) == 1 then " +
-                        "  return redis.call('incr', KEYS[1]); " +
-                        "else " +
-                        "  redis.call('set', KEYS[1], 1); " +
-                        "  redis.call('expire', KEYS[1], ARGV[1]); " +
-                        "  return 1; " +
-                        "end";
+    /**
+     * 加入待提交队列
+     *
+     * @return 本次递增的结果，队列已满时返回 null
+     */
+    private CompletableFuture<Long> enqueue(String redisKey, long expirationTimeInSeconds) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        synchronized (pendingLock) {
+            PendingCounter pendingCounter = pendingCounters.get(redisKey);
+            if (pendingCounter == null) {
+                if (pendingCounters.size() >= counterConfig.getBatchMaxPendingKeys()) {
+                    return null;
+                }
+                pendingCounter = new PendingCounter(expirationTimeInSeconds);
+                pendingCounters.put(redisKey, pendingCounter);
+            }
+            pendingCounter.add(future);
+        }
+        return future;
+    }
 
-        // 执行 Lua 脚本
-        RScript script = redissonClient.getScript(IntegerCodec.INSTANCE);
-        Object countObj = script.eval(
-                RScript.Mode.READ_WRITE,
-                luaScript,
-                RScript.ReturnType.INTEGER,
-                Collections.singletonList(redisKey), expirationTimeInSeconds
-        );
-        return (long) countObj;
+    private long await(CompletableFuture<Long> future) {
+        try {
+            return future.get(counterConfig.getBatchTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "计数被中断");
+        } catch (TimeoutException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "计数超时");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "计数失败");
+        }
     }
-}
 
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("counter flush failed", e);
+        }
+    }
 
+    /**
+     * 把待提交的计数通过 pipeline 提交到 Redis，并回填每个调用方的结果
+     */
+    void flush() {
+        Map<String, PendingCounter> counters;
+        synchronized (pendingLock) {
+            if (pendingCounters.isEmpty()) {
+                return;
+            }
+            counters = pendingCounters;
+            pendingCounters = new HashMap<>();
+        }
+        List<Map.Entry<String, PendingCounter>> entries = new ArrayList<>(counters.entrySet());
+        int batchMaxKeys = Math.max(1, counterConfig.getBatchMaxKeys());
+        for (int i = 0; i < entries.size(); i += batchMaxKeys) {
+            List<Map.Entry<String, PendingCounter>> batchEntries = entries.subList(i, Math.min(i + batchMaxKeys, entries.size()));
+            try {
+                List<?> responses = executeBatch(batchEntries);
+                for (int j = 0; j < batchEntries.size(); j++) {
+                    batchEntries.get(j).getValue().complete(((Number) responses.get(j)).longValue());
+                }
+            } catch (RuntimeException e) {
+                log.error("counter batch failed, keys: {}", batchEntries.size(), e);
+                batchEntries.forEach(entry -> entry.getValue().fail(e));
+            }
+        }
+    }
 
+    private List<?> executeBatch(List<Map.Entry<String, PendingCounter>> batchEntries) {
+        try {
+            return executeBatch(batchEntries, getScriptSha());
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            return executeBatch(batchEntries, reloadScriptSha());
+        }
+    }
 
+    private List<?> executeBatch(List<Map.Entry<String, PendingCounter>> batchEntries, String sha) {
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        RScriptAsync script = batch.getScript(IntegerCodec.INSTANCE);
+        for (Map.Entry<String, PendingCounter> entry : batchEntries) {
+            PendingCounter pendingCounter = entry.getValue();
+            script.evalShaAsync(RScript.Mode.READ_WRITE, sha, RScript.ReturnType.INTEGER,
+                    Collections.singletonList(entry.getKey()), pendingCounter.expirationTimeInSeconds, pendingCounter.delta);
+        }
+        BatchResult<?> result = batch.execute();
+        return result.getResponses();
+    }
+
+    private String getScriptSha() {
+        String sha = scriptSha;
+        if (sha == null) {
+            sha = reloadScriptSha();
+        }
+        return sha;
+    }
+
+    private String reloadScriptSha() {
+        String sha = redissonClient.getScript(IntegerCodec.INSTANCE).scriptLoad(COUNTER_LUA_SCRIPT);
+        scriptSha = sha;
+        return sha;
+    }
+
+    private boolean isNoScript(Throwable e) {
+        while (e != null) {
+            if (e.getMessage() != null && e.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+            e = e.getCause();
+        }
+        return false;
+    }
 
+    /**
+     * 同一个 Redis Key 在一个时间窗口内合并的计数
+     */
+    private static class PendingCounter {
 
+        private final long expirationTimeInSeconds;
 
+        private final List<CompletableFuture<Long>> futures = new ArrayList<>();
 
+        /**
+         * 第 i 个调用方递增后，本批次内的累计增量
+         */
+        private final List<Long> offsets = new ArrayList<>();
 
+        private long delta;
 
+        private PendingCounter(long expirationTimeInSeconds) {
+            this(expirationTimeInSeconds, 0);
+        }
 
+        private PendingCounter(long expirationTimeInSeconds, long delta) {
+            this.expirationTimeInSeconds = expirationTimeInSeconds;
+            this.delta = delta;
+        }
 
+        private void add(CompletableFuture<Long> future) {
+            delta++;
+            futures.add(future);
+            offsets.add(delta);
+        }
 
+        /**
+         * Redis 返回的是整批递增后的值，按顺序还原每个调用方看到的计数
+         */
+        private void complete(long count) {
+            long base = count - delta;
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).complete(base + offsets.get(i));
+            }
+        }
 
+        private void fail(Throwable e) {
+            futures.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.iqb.programmingbank.manager;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONConfig;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.iqb.programmingbank.common.CursorPage;
+import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.common.PageRequest;
+import com.iqb.programmingbank.config.EsSearchConfig;
+import com.iqb.programmingbank.exception.BusinessException;
+import com.iqb.programmingbank.exception.ThrowUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ES 分页搜索
+ * <p>
+ * 请求中 cursor 为 null 时使用普通分页（from + size），深度受 maxResultWindow 限制；
+ * 否则使用 search_after 游标分页：在排序字段之后加 id 作为第二排序字段保证顺序稳定，
+ * 游标记录上一页最后一条的排序值（可选附带 point in time），翻页开销与深度无关。
+ * 总数统计最多精确到 trackTotalHitsUpTo，游标分页默认不统计。
+ */
+@Slf4j
+@Component
+public class EsSearchManager {
+
+    private static final String ID_FIELD = "id";
+
+    private static final String CURSOR_SEARCH_AFTER = "after";
+
+    private static final String CURSOR_PIT = "pit";
+
+    @Resource
+    private ElasticsearchRestTemplate elasticsearchRestTemplate;
+
+    @Resource
+    private EsSearchConfig esSearchConfig;
+
+    /**
+     * 分页搜索
+     *
+     * @param queryBuilder 查询条件
+     * @param sortBuilder  排序
+     * @param pageRequest  分页请求
+     * @param clazz        文档类型
+     * @param <T>
+     * @return 记录为命中结果，游标分页时返回 {@link CursorPage}
+     */
+    public <T> Page<SearchHit<T>> search(QueryBuilder queryBuilder, SortBuilder<?> sortBuilder,
+                                         PageRequest pageRequest, Class<T> clazz) {
+        int pageSize = pageRequest.getPageSize();
+        ThrowUtils.throwIf(pageSize <= 0, ErrorCode.PARAMS_ERROR);
+        NativeSearchQueryBuilder searchQueryBuilder = new NativeSearchQueryBuilder()
+                .withQuery(queryBuilder)
+                .withSorts(sortBuilder);
+        String cursor = pageRequest.getCursor();
+        // 普通分页
+        if (cursor == null) {
+            int current = Math.max(1, pageRequest.getCurrent());
+            ThrowUtils.throwIf((long) current * pageSize > esSearchConfig.getMaxResultWindow(),
+                    ErrorCode.PARAMS_ERROR, "page too deep, use cursor");
+            NativeSearchQuery searchQuery = searchQueryBuilder
+                    .withPageable(org.springframework.data.domain.PageRequest.of(current - 1, pageSize))
+                    .build();
+            applyTrackTotalHits(searchQuery, !Boolean.FALSE.equals(pageRequest.getSearchCount()));
+            SearchHits<T> searchHits = elasticsearchRestTemplate.search(searchQuery, clazz);
+            Page<SearchHit<T>> page = new Page<>(current, pageSize, searchHits.getTotalHits());
+            page.setRecords(new ArrayList<>(searchHits.getSearchHits()));
+            return page;
+        }
+        // 游标分页：id 作为第二排序字段（与主排序同向），多查一条判断是否还有下一页
+        if (!(sortBuilder instanceof FieldSortBuilder && ID_FIELD.equals(((FieldSortBuilder) sortBuilder).getFieldName()))) {
+            searchQueryBuilder.withSorts(SortBuilders.fieldSort(ID_FIELD).order(sortBuilder.order()));
+        }
+        searchQueryBuilder.withPageable(org.springframework.data.domain.PageRequest.of(0, pageSize + 1));
+        String pointInTimeId = null;
+        if (!cursor.isEmpty()) {
+            JSONObject cursorObj = decodeCursor(cursor);
+            searchQueryBuilder.withSearchAfter(getSearchAfter(cursorObj));
+            pointInTimeId = cursorObj.getStr(CURSOR_PIT);
+        }
+        NativeSearchQuery searchQuery = searchQueryBuilder.build();
+        boolean searchCount = Boolean.TRUE.equals(pageRequest.getSearchCount());
+        applyTrackTotalHits(searchQuery, searchCount);
+        if (esSearchConfig.isPointInTimeEnabled()) {
+            Duration keepAlive = Duration.ofSeconds(esSearchConfig.getPointInTimeKeepAliveSeconds());
+            if (pointInTimeId == null) {
+                pointInTimeId = elasticsearchRestTemplate.openPointInTime(
+                        elasticsearchRestTemplate.getIndexCoordinatesFor(clazz), keepAlive);
+            }
+            searchQuery.setPointInTime(new Query.PointInTime(pointInTimeId, keepAlive));
+        }
+        SearchHits<T> searchHits = elasticsearchRestTemplate.search(searchQuery, clazz);
+        if (searchHits.getPointInTimeId() != null) {
+            // point in time 的 id 可能在每次搜索后变化
+            pointInTimeId = searchHits.getPointInTimeId();
+        }
+        CursorPage<SearchHit<T>> cursorPage = new CursorPage<>(pageSize);
+        if (searchCount) {
+            cursorPage.setTotal(searchHits.getTotalHits());
+        }
+        List<SearchHit<T>> searchHitList = new ArrayList<>(searchHits.getSearchHits());
+        if (searchHitList.size() > pageSize) {
+            searchHitList = searchHitList.subList(0, pageSize);
+            cursorPage.setNextCursor(encodeCursor(searchHitList.get(pageSize - 1).getSortValues(), pointInTimeId));
+        } else if (esSearchConfig.isPointInTimeEnabled()) {
+            // 最后一页，及时释放 point in time
+            closePointInTime(pointInTimeId);
+        }
+        cursorPage.setRecords(searchHitList);
+        return cursorPage;
+    }
+
+    private void applyTrackTotalHits(NativeSearchQuery searchQuery, boolean searchCount) {
+        if (searchCount) {
+            searchQuery.setTrackTotalHitsUpTo(esSearchConfig.getTrackTotalHitsUpTo());
+        } else {
+            searchQuery.setTrackTotalHits(false);
+        }
+    }
+
+    private void closePointInTime(String pointInTimeId) {
+        try {
+            elasticsearchRestTemplate.closePointInTime(pointInTimeId);
+        } catch (Exception e) {
+            // 过期后会自动释放
+            log.warn("close point in time failed, id: {}", pointInTimeId, e);
+        }
+    }
+
+    /**
+     * 游标格式：{"after": [排序值...], "pit": point in time id}，Base64 编码
+     */
+    private static String encodeCursor(List<Object> sortValues, String pointInTimeId) {
+        JSONConfig jsonConfig = JSONConfig.create().setIgnoreNullValue(false);
+        JSONObject cursorObj = new JSONObject(jsonConfig);
+        cursorObj.set(CURSOR_SEARCH_AFTER, new JSONArray(sortValues, jsonConfig));
+        if (pointInTimeId != null) {
+            cursorObj.set(CURSOR_PIT, pointInTimeId);
+        }
+        return Base64.encodeUrlSafe(cursorObj.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static JSONObject decodeCursor(String cursor) {
+        try {
+            JSONObject cursorObj = JSONUtil.parseObj(Base64.decodeStr(cursor, StandardCharsets.UTF_8),
+                    JSONConfig.create().setIgnoreNullValue(false));
+            ThrowUtils.throwIf(cursorObj.getJSONArray(CURSOR_SEARCH_AFTER) == null, ErrorCode.PARAMS_ERROR, "invalid cursor");
+            return cursorObj;
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "invalid cursor");
+        }
+    }
+
+    private static List<Object> getSearchAfter(JSONObject cursorObj) {
+        List<Object> searchAfter = new ArrayList<>();
+        for (Object value : cursorObj.getJSONArray(CURSOR_SEARCH_AFTER)) {
+            // JSON 解析出的大数类型转回 ES 客户端支持的类型
+            if (value instanceof BigDecimal) {
+                value = ((BigDecimal) value).doubleValue();
+            } else if (value instanceof BigInteger) {
+                value = ((BigInteger) value).longValue();
+            } else if (JSONUtil.isNull(value)) {
+                value = null;
+            }
+            searchAfter.add(value);
+        }
+        return searchAfter;
+    }
+}
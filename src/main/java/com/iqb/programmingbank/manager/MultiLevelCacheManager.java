@@ -0,0 +1,218 @@
+package com.iqb.programmingbank.manager;
+
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iqb.programmingbank.config.MultiLevelCacheConfig;
+import com.iqb.programmingbank.hotkey.LocalHotKeyStore;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 多级缓存（本地 Caffeine + Redis），读穿透
+ * <p>
+ * 读：本地缓存 -> Redis -> 回源加载，同一个 key 在本节点同时只有一个线程回源（single flight）；
+ * 开启 localHotKeyOnly 时只有被探测为热 key 的数据才进入本地缓存，长尾数据只走 Redis；
+ * 写 Redis 时过期时间加随机抖动；失效时删除 Redis 并通过 topic 通知所有节点清理本地缓存。
+ */
+@Slf4j
+@Component
+public class MultiLevelCacheManager {
+
+    /**
+     * 失效通知中表示按前缀失效的后缀
+     */
+    private static final String PREFIX_EVICT_SUFFIX = "*";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private MultiLevelCacheConfig multiLevelCacheConfig;
+
+    @Resource
+    private LocalHotKeyStore localHotKeyStore;
+
+    /**
+     * 本地缓存
+     */
+    private Cache<String, Object> localCache;
+
+    /**
+     * 正在回源加载的 key
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loadingMap = new ConcurrentHashMap<>();
+
+    private RTopic evictTopic;
+
+    private int evictListenerId;
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(multiLevelCacheConfig.getLocalMaximumSize())
+                .expireAfterWrite(multiLevelCacheConfig.getLocalExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+        // 监听其他节点的失效通知
+        evictTopic = redissonClient.getTopic(multiLevelCacheConfig.getEvictTopic(), StringCodec.INSTANCE);
+        evictListenerId = evictTopic.addListener(String.class, (channel, message) -> evictLocal(message));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        evictTopic.removeListener(evictListenerId);
+    }
+
+    /**
+     * 读取缓存，未命中时回源加载并回填两级缓存
+     *
+     * @param key    缓存键
+     * @param loader 回源加载逻辑（返回 null 表示不缓存）
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        // 记录访问，决定回源后是否写入本地缓存
+        boolean cacheLocal = !multiLevelCacheConfig.isLocalHotKeyOnly() || localHotKeyStore.isHotKey(key);
+        // 1. 本地缓存
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            return (T) value;
+        }
+        // 2. 同一个 key 只允许一个线程回源，其他线程等待结果
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> loadingFuture = loadingMap.putIfAbsent(key, future);
+        if (loadingFuture != null) {
+            return (T) join(loadingFuture);
+        }
+        try {
+            // 抢到回源权后再查一次本地缓存，可能刚被上一个线程回填
+            value = localCache.getIfPresent(key);
+            if (value == null) {
+                value = loadFromRedis(key, loader, cacheLocal);
+            }
+            future.complete(value);
+            return (T) value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingMap.remove(key, future);
+        }
+    }
+
+    /**
+     * 失效单个 key
+     *
+     * @param key
+     */
+    public void evict(String key) {
+        if (StrUtil.isBlank(key)) {
+            return;
+        }
+        localCache.invalidate(key);
+        try {
+            redissonClient.getBucket(key).delete();
+            evictTopic.publish(key);
+        } catch (Exception e) {
+            log.error("multi level cache evict failed, key: {}", key, e);
+        }
+    }
+
+    /**
+     * 按前缀失效（同一份数据有多个变体时使用，比如不同分页参数）
+     *
+     * @param keyPrefix
+     */
+    public void evictByPrefix(String keyPrefix) {
+        if (StrUtil.isBlank(keyPrefix)) {
+            return;
+        }
+        evictLocalByPrefix(keyPrefix);
+        try {
+            redissonClient.getKeys().deleteByPattern(keyPrefix + PREFIX_EVICT_SUFFIX);
+            evictTopic.publish(keyPrefix + PREFIX_EVICT_SUFFIX);
+        } catch (Exception e) {
+            log.error("multi level cache evict failed, keyPrefix: {}", keyPrefix, e);
+        }
+    }
+
+    /**
+     * 查 Redis，未命中再回源，并回填两级缓存
+     */
+    private Object loadFromRedis(String key, Supplier<?> loader, boolean cacheLocal) {
+        RBucket<Object> bucket = redissonClient.getBucket(key);
+        Object value = null;
+        try {
+            value = bucket.get();
+        } catch (Exception e) {
+            // Redis 不可用时直接回源，不影响主流程
+            log.warn("multi level cache read redis failed, key: {}", key, e);
+        }
+        if (value == null) {
+            value = loader.get();
+            if (value == null) {
+                return null;
+            }
+            try {
+                bucket.set(value, getRedisExpireSeconds(), TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.warn("multi level cache write redis failed, key: {}", key, e);
+            }
+        }
+        if (cacheLocal) {
+            localCache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Redis 过期时间 = 基础时间 + 随机抖动
+     */
+    private long getRedisExpireSeconds() {
+        long jitter = multiLevelCacheConfig.getRedisExpireJitterSeconds();
+        long base = multiLevelCacheConfig.getRedisExpireSeconds();
+        return jitter > 0 ? base + RandomUtil.randomLong(jitter + 1) : base;
+    }
+
+    /**
+     * 处理失效通知
+     */
+    private void evictLocal(String message) {
+        if (message.endsWith(PREFIX_EVICT_SUFFIX)) {
+            evictLocalByPrefix(message.substring(0, message.length() - PREFIX_EVICT_SUFFIX.length()));
+        } else {
+            localCache.invalidate(message);
+        }
+    }
+
+    private void evictLocalByPrefix(String keyPrefix) {
+        localCache.asMap().keySet().removeIf(key -> key.startsWith(keyPrefix));
+    }
+
+    private Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // 回源失败时把原始异常（比如 BusinessException）抛给等待的线程
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
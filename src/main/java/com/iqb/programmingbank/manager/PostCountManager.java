@@ -0,0 +1,179 @@
+package com.iqb.programmingbank.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
+import com.iqb.programmingbank.constant.RedisConstant;
+import com.iqb.programmingbank.mapper.PostMapper;
+import com.iqb.programmingbank.model.entity.Post;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 帖子计数（点赞数、收藏数）存储
+ * <p>
+ * 点赞、收藏后把数据库中的最新计数写入 Redis（每个帖子一个 hash），搜索时一次 pipeline 批量读取并覆盖 ES 中的旧值，
+ * 不再回查数据库。Redis 中没有的帖子（冷数据或已过期）直接使用 ES 中的值，ES 中的计数由发件箱同步最终更新。
+ * <p>
+ * 计数在事务内（更新计数之后、持有行锁时）读取并领取递增的版本号，提交后只有版本号更大的写入才生效，
+ * 多个事务的提交回调乱序执行时不会用旧值覆盖新值。
+ */
+@Slf4j
+@Component
+public class PostCountManager {
+
+    private static final String THUMB_NUM_FIELD = "thumbNum";
+
+    private static final String FAVOUR_NUM_FIELD = "favourNum";
+
+    /**
+     * 已领取的版本号
+     */
+    private static final String SEQ_FIELD = "seq";
+
+    /**
+     * 当前计数对应的版本号
+     */
+    private static final String VERSION_FIELD = "version";
+
+    /**
+     * 领取版本号：KEYS[1] 计数 key，ARGV[1] 过期时间（毫秒）
+     */
+    private static final String NEXT_VERSION_LUA_SCRIPT =
+            "local version = redis.call('hincrby', KEYS[1], '" + SEQ_FIELD + "', 1)\n" +
+            "redis.call('pexpire', KEYS[1], ARGV[1])\n" +
+            "return version";
+
+    /**
+     * 按版本号写入计数：KEYS[1] 计数 key，ARGV[1] 版本号，ARGV[2] 点赞数，ARGV[3] 收藏数，ARGV[4] 过期时间（毫秒）
+     */
+    private static final String WRITE_COUNT_LUA_SCRIPT =
+            "local current = tonumber(redis.call('hget', KEYS[1], '" + VERSION_FIELD + "') or '0')\n" +
+            "if tonumber(ARGV[1]) <= current then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "redis.call('hset', KEYS[1], '" + VERSION_FIELD + "', ARGV[1], '" + THUMB_NUM_FIELD + "', ARGV[2], '"
+            + FAVOUR_NUM_FIELD + "', ARGV[3])\n" +
+            "redis.call('pexpire', KEYS[1], ARGV[4])\n" +
+            "return 1";
+
+    /**
+     * 计数过期时间（天），只保留最近有变化的帖子
+     */
+    private static final long EXPIRE_DAYS = 7;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private PostMapper postMapper;
+
+    /**
+     * Lua 脚本 => sha
+     */
+    private final Map<String, String> scriptShaMap = new ConcurrentHashMap<>();
+
+    /**
+     * 帖子计数变化后调用（在更新计数的事务内），有事务时在提交后写入
+     *
+     * @param postId
+     */
+    public void refresh(long postId) {
+        String countKey = RedisConstant.getPostCountKey(postId);
+        long expireMillis = TimeUnit.DAYS.toMillis(EXPIRE_DAYS);
+        Post post;
+        Long version;
+        try {
+            post = postMapper.selectById(postId);
+            version = evalSha(NEXT_VERSION_LUA_SCRIPT, countKey, expireMillis);
+        } catch (Exception e) {
+            log.error("refresh post count failed, postId: {}", postId, e);
+            return;
+        }
+        if (post == null) {
+            return;
+        }
+        Runnable write = () -> {
+            try {
+                evalSha(WRITE_COUNT_LUA_SCRIPT, countKey, version, post.getThumbNum(), post.getFavourNum(), expireMillis);
+            } catch (Exception e) {
+                log.error("refresh post count failed, postId: {}", postId, e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    write.run();
+                }
+            });
+            return;
+        }
+        write.run();
+    }
+
+    /**
+     * 用 Redis 中的最新计数覆盖帖子的点赞数、收藏数（就地修改）
+     *
+     * @param postList
+     */
+    @SuppressWarnings("unchecked")
+    public void fillCounts(List<Post> postList) {
+        if (CollUtil.isEmpty(postList)) {
+            return;
+        }
+        List<?> countMapList;
+        try {
+            RBatch batch = redissonClient.createBatch();
+            for (Post post : postList) {
+                batch.<String, String>getMap(RedisConstant.getPostCountKey(post.getId()), StringCodec.INSTANCE).readAllMapAsync();
+            }
+            BatchResult<?> batchResult = batch.execute();
+            countMapList = batchResult.getResponses();
+        } catch (Exception e) {
+            // 降级为 ES 中的计数
+            log.error("read post counts failed, size: {}", postList.size(), e);
+            return;
+        }
+        for (int i = 0; i < postList.size(); i++) {
+            Map<String, String> countMap = (Map<String, String>) countMapList.get(i);
+            if (CollUtil.isEmpty(countMap)) {
+                continue;
+            }
+            Post post = postList.get(i);
+            post.setThumbNum(Convert.toInt(countMap.get(THUMB_NUM_FIELD), post.getThumbNum()));
+            post.setFavourNum(Convert.toInt(countMap.get(FAVOUR_NUM_FIELD), post.getFavourNum()));
+        }
+    }
+
+    private Long evalSha(String luaScript, String key, Object... values) {
+        RScript script = redissonClient.getScript(StringCodec.INSTANCE);
+        String sha = scriptShaMap.computeIfAbsent(luaScript, script::scriptLoad);
+        try {
+            return script.evalSha(RScript.Mode.READ_WRITE, sha, RScript.ReturnType.INTEGER,
+                    Collections.singletonList(key), values);
+        } catch (RuntimeException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("NOSCRIPT")) {
+                throw e;
+            }
+            // Redis 重启或脚本被清空，重新加载
+            sha = script.scriptLoad(luaScript);
+            scriptShaMap.put(luaScript, sha);
+            return script.evalSha(RScript.Mode.READ_WRITE, sha, RScript.ReturnType.INTEGER,
+                    Collections.singletonList(key), values);
+        }
+    }
+}
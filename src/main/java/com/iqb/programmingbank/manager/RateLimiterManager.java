@@ -0,0 +1,208 @@
+package com.iqb.programmingbank.manager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iqb.programmingbank.config.RateLimitConfig;
+import com.iqb.programmingbank.model.enums.RateLimitAlgorithmEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流器（滑动窗口计数 / GCRA），在 Redis 中通过 Lua 原子执行，每个 key 只占常数空间
+ * <p>
+ * Redis 不可用或配置为 localOnly 时使用本地限流（算法相同，限额按节点计算）。
+ */
+@Slf4j
+@Service
+public class RateLimiterManager {
+
+    /**
+     * 滑动窗口计数：KEYS[1] 限流 key，ARGV[1] 限额，ARGV[2] 窗口（毫秒），ARGV[3] 当前时间（毫秒），ARGV[4] 本次请求数
+     * <p>
+     * hash 中只保存当前窗口编号 w、当前窗口计数 c、上一窗口计数 p，估算值 = p * 上一窗口剩余比例 + c
+     */
+    static final String SLIDING_WINDOW_LUA_SCRIPT =
+            "local limit = tonumber(ARGV[1]); " +
+                    "local window = tonumber(ARGV[2]); " +
+                    "local now = tonumber(ARGV[3]); " +
+                    "local permits = tonumber(ARGV[4]); " +
+                    "local current = math.floor(now / window); " +
+                    "local data = redis.call('hmget', KEYS[1], 'w', 'c', 'p'); " +
+                    "local w = tonumber(data[1]); " +
+                    "local c = tonumber(data[2]) or 0; " +
+                    "local p = tonumber(data[3]) or 0; " +
+                    "if w ~= current then " +
+                    "  if w == current - 1 then p = c else p = 0 end " +
+                    "  c = 0 " +
+                    "end " +
+                    "local weight = 1 - (now - current * window) / window; " +
+                    "if p * weight + c + permits > limit then " +
+                    "  return 0 " +
+                    "end " +
+                    "redis.call('hmset', KEYS[1], 'w', current, 'c', c + permits, 'p', p); " +
+                    "redis.call('pexpire', KEYS[1], window * 2); " +
+                    "return 1";
+
+    /**
+     * GCRA：KEYS[1] 限流 key，ARGV[1] 放行间隔（微秒），ARGV[2] 突发数，ARGV[3] 当前时间（微秒），ARGV[4] 本次请求数
+     * <p>
+     * 只保存理论到达时间 tat，新的 tat 超出当前时间 burst 个间隔以上则拒绝
+     */
+    static final String GCRA_LUA_SCRIPT =
+            "local emission = tonumber(ARGV[1]); " +
+                    "local burst = tonumber(ARGV[2]); " +
+                    "local now = tonumber(ARGV[3]); " +
+                    "local permits = tonumber(ARGV[4]); " +
+                    "local tat = tonumber(redis.call('get', KEYS[1])); " +
+                    "if tat == nil or tat < now then tat = now end " +
+                    "local newTat = tat + emission * permits; " +
+                    "if newTat - now > emission * burst then " +
+                    "  return 0 " +
+                    "end " +
+                    "redis.call('set', KEYS[1], string.format('%.0f', newTat), 'px', math.ceil((newTat - now) / 1000) + 1); " +
+                    "return 1";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private RateLimitConfig rateLimitConfig;
+
+    /**
+     * 脚本 -> SHA
+     */
+    private final Map<String, String> scriptShaMap = new ConcurrentHashMap<>();
+
+    /**
+     * 本地限流状态
+     */
+    private Cache<String, LocalLimiter> localLimiterCache;
+
+    @PostConstruct
+    public void init() {
+        localLimiterCache = Caffeine.newBuilder()
+                .maximumSize(rateLimitConfig.getLocalMaximumKeys())
+                .expireAfterAccess(rateLimitConfig.getLocalExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 尝试获取 1 个许可
+     *
+     * @param key          限流 key
+     * @param algorithm    限流算法
+     * @param rate         每个周期允许的请求数
+     * @param periodMillis 周期（毫秒）
+     * @param burst        允许的突发请求数（仅 GCRA）
+     * @return 是否放行
+     */
+    public boolean tryAcquire(String key, RateLimitAlgorithmEnum algorithm, long rate, long periodMillis, long burst) {
+        if (rate <= 0 || periodMillis <= 0) {
+            throw new IllegalArgumentException("rate and period must be positive");
+        }
+        if (rateLimitConfig.isLocalOnly()) {
+            return tryAcquireLocal(key, algorithm, rate, periodMillis, burst);
+        }
+        try {
+            return tryAcquireRedis(key, algorithm, rate, periodMillis, burst);
+        } catch (Exception e) {
+            log.error("rate limiter redis failed, key: {}", key, e);
+            // 降级：本地限流或直接放行
+            return !rateLimitConfig.isLocalFallback() || tryAcquireLocal(key, algorithm, rate, periodMillis, burst);
+        }
+    }
+
+    private boolean tryAcquireRedis(String key, RateLimitAlgorithmEnum algorithm, long rate, long periodMillis, long burst) {
+        long nowMillis = System.currentTimeMillis();
+        Long allowed;
+        if (RateLimitAlgorithmEnum.GCRA.equals(algorithm)) {
+            allowed = evalSha(GCRA_LUA_SCRIPT, key,
+                    getEmissionMicros(rate, periodMillis), Math.max(1, burst), nowMillis * 1000, 1);
+        } else {
+            allowed = evalSha(SLIDING_WINDOW_LUA_SCRIPT, key, rate, periodMillis, nowMillis, 1);
+        }
+        return allowed != null && allowed == 1;
+    }
+
+    private boolean tryAcquireLocal(String key, RateLimitAlgorithmEnum algorithm, long rate, long periodMillis, long burst) {
+        LocalLimiter localLimiter = localLimiterCache.get(key, k -> new LocalLimiter());
+        long nowMillis = System.currentTimeMillis();
+        if (RateLimitAlgorithmEnum.GCRA.equals(algorithm)) {
+            return localLimiter.tryAcquireGcra(getEmissionMicros(rate, periodMillis), Math.max(1, burst), nowMillis * 1000);
+        }
+        return localLimiter.tryAcquireSlidingWindow(rate, periodMillis, nowMillis);
+    }
+
+    /**
+     * 放行间隔（微秒）
+     */
+    private long getEmissionMicros(long rate, long periodMillis) {
+        return Math.max(1, periodMillis * 1000 / rate);
+    }
+
+    private Long evalSha(String luaScript, String key, Object... values) {
+        RScript script = redissonClient.getScript(StringCodec.INSTANCE);
+        String sha = scriptShaMap.computeIfAbsent(luaScript, script::scriptLoad);
+        try {
+            return script.evalSha(RScript.Mode.READ_WRITE, sha, RScript.ReturnType.INTEGER,
+                    Collections.singletonList(key), values);
+        } catch (RuntimeException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("NOSCRIPT")) {
+                throw e;
+            }
+            // Redis 重启或脚本被清空，重新加载
+            sha = script.scriptLoad(luaScript);
+            scriptShaMap.put(luaScript, sha);
+            return script.evalSha(RScript.Mode.READ_WRITE, sha, RScript.ReturnType.INTEGER,
+                    Collections.singletonList(key), values);
+        }
+    }
+
+    /**
+     * 本地限流状态，与 Lua 脚本的算法一致
+     */
+    private static class LocalLimiter {
+
+        private long window = -1;
+
+        private double currentCount;
+
+        private double previousCount;
+
+        private long tat;
+
+        private synchronized boolean tryAcquireSlidingWindow(long limit, long windowMillis, long nowMillis) {
+            long current = nowMillis / windowMillis;
+            if (window != current) {
+                previousCount = window == current - 1 ? currentCount : 0;
+                currentCount = 0;
+                window = current;
+            }
+            double weight = 1 - (double) (nowMillis - current * windowMillis) / windowMillis;
+            if (previousCount * weight + currentCount + 1 > limit) {
+                return false;
+            }
+            currentCount++;
+            return true;
+        }
+
+        private synchronized boolean tryAcquireGcra(long emissionMicros, long burst, long nowMicros) {
+            long newTat = Math.max(tat, nowMicros) + emissionMicros;
+            if (newTat - nowMicros > emissionMicros * burst) {
+                return false;
+            }
+            tat = newTat;
+            return true;
+        }
+    }
+}
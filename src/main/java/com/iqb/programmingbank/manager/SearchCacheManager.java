@@ -0,0 +1,177 @@
+package com.iqb.programmingbank.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iqb.programmingbank.config.SearchCacheConfig;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * ES 搜索结果缓存（本地 Caffeine）
+ * <p>
+ * 缓存键为 实体类型 + 代数 + 规范化后的查询条件。索引有写入时把该实体类型的代数加一，旧代数的缓存不再命中，
+ * 由 LRU 和过期时间自然淘汰，不需要逐个删除；代数变化通过 topic 同步给所有节点。
+ * 索引写入后的一个刷新间隔内搜索结果可能还不包含新数据，这段时间内不缓存。
+ */
+@Slf4j
+@Component
+public class SearchCacheManager {
+
+    private static final String KEY_SEPARATOR = ":";
+
+    @Resource
+    private SearchCacheConfig searchCacheConfig;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    private Cache<String, Object> searchCache;
+
+    /**
+     * 实体类型 => 代数
+     */
+    private final Map<EsSyncEntityTypeEnum, AtomicLong> generationMap = new EnumMap<>(EsSyncEntityTypeEnum.class);
+
+    /**
+     * 实体类型 => 最近一次代数变化的时间
+     */
+    private final Map<EsSyncEntityTypeEnum, AtomicLong> changeTimeMap = new EnumMap<>(EsSyncEntityTypeEnum.class);
+
+    private RTopic generationTopic;
+
+    private int generationListenerId;
+
+    @PostConstruct
+    public void init() {
+        for (EsSyncEntityTypeEnum entityType : EsSyncEntityTypeEnum.values()) {
+            generationMap.put(entityType, new AtomicLong());
+            changeTimeMap.put(entityType, new AtomicLong());
+        }
+        searchCache = Caffeine.newBuilder()
+                .maximumSize(searchCacheConfig.getMaximumSize())
+                .expireAfterWrite(searchCacheConfig.getExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+        // 监听其他节点的索引写入通知
+        generationTopic = redissonClient.getTopic(searchCacheConfig.getGenerationTopic(), StringCodec.INSTANCE);
+        generationListenerId = generationTopic.addListener(String.class, (channel, message) -> {
+            EsSyncEntityTypeEnum entityType = EsSyncEntityTypeEnum.getEnumByValue(message);
+            if (entityType != null) {
+                nextGeneration(entityType);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        generationTopic.removeListener(generationListenerId);
+    }
+
+    /**
+     * 读取搜索结果，未命中时执行搜索并缓存（同一个查询同时只有一个线程执行）
+     * <p>
+     * 返回的是缓存中的共享对象，调用方需要复制后再修改
+     *
+     * @param entityType 实体类型
+     * @param queryKey   规范化后的查询条件
+     * @param loader     执行搜索
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(EsSyncEntityTypeEnum entityType, String queryKey, Supplier<T> loader) {
+        if (!searchCacheConfig.isEnabled()) {
+            return loader.get();
+        }
+        // 先取代数再搜索，搜索期间索引有写入时结果落在旧代数下，不会被读到
+        long generation = generationMap.get(entityType).get();
+        long sinceChangeMillis = System.currentTimeMillis() - changeTimeMap.get(entityType).get();
+        if (sinceChangeMillis < searchCacheConfig.getIndexRefreshMillis()) {
+            return loader.get();
+        }
+        String key = entityType.getValue() + KEY_SEPARATOR + generation + KEY_SEPARATOR + queryKey;
+        return (T) searchCache.get(key, k -> loader.get());
+    }
+
+    /**
+     * 索引有写入后调用，失效该实体类型的所有搜索结果（包括其他节点）
+     *
+     * @param entityType
+     */
+    public void invalidate(EsSyncEntityTypeEnum entityType) {
+        nextGeneration(entityType);
+        try {
+            generationTopic.publish(entityType.getValue());
+        } catch (Exception e) {
+            log.error("search cache invalidate publish failed, entityType: {}", entityType.getValue(), e);
+        }
+    }
+
+    /**
+     * 规范化搜索文本：去掉首尾空白、合并连续空白、转小写（分词器本身不区分大小写）
+     *
+     * @param text
+     * @return
+     */
+    public static String normalizeText(String text) {
+        if (StrUtil.isBlank(text)) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 规范化标签：去掉首尾空白、去重并排序（标签是精确匹配，不转小写）
+     *
+     * @param tags
+     * @return
+     */
+    public static String normalizeTags(Collection<String> tags) {
+        if (CollUtil.isEmpty(tags)) {
+            return "";
+        }
+        return tags.stream()
+                .filter(StrUtil::isNotBlank)
+                .map(String::trim)
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * 拼接查询条件为缓存键，null 与空串等价
+     *
+     * @param parts
+     * @return
+     */
+    public static String buildQueryKey(Object... parts) {
+        StringBuilder queryKey = new StringBuilder();
+        for (Object part : parts) {
+            // 各部分用不可见字符分隔，避免与搜索文本中的字符混淆
+            queryKey.append(Objects.toString(part, "")).append('\u0001');
+        }
+        return queryKey.toString();
+    }
+
+    private void nextGeneration(EsSyncEntityTypeEnum entityType) {
+        generationMap.get(entityType).incrementAndGet();
+        changeTimeMap.get(entityType).set(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,90 @@
+package com.iqb.programmingbank.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.iqb.programmingbank.model.entity.AiGenerateJob;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * AI 生成题目任务数据库操作（状态：0-等待中 1-运行中 2-成功 3-失败）
+ */
+public interface AiGenerateJobMapper extends BaseMapper<AiGenerateJob> {
+
+    /**
+     * 按提交顺序读取等待中的任务
+     */
+    @Select("select * from ai_generate_job where status = 0 order by id limit #{limit}")
+    List<AiGenerateJob> listWaiting(@Param("limit") int limit);
+
+    /**
+     * 某个状态的任务数
+     */
+    @Select("select count(*) from ai_generate_job where status = #{status}")
+    int countByStatus(@Param("status") int status);
+
+    /**
+     * 用户某个状态的任务数
+     */
+    @Select("select count(*) from ai_generate_job where userId = #{userId} and status = #{status}")
+    int countByUserAndStatus(@Param("userId") long userId, @Param("status") int status);
+
+    /**
+     * 锁定认领锁行（不存在时创建），持有到事务结束，使所有节点的认领串行执行
+     */
+    @Insert("insert into ai_generate_job_lock (name) values ('claim') on duplicate key update name = name")
+    int lockClaim();
+
+    /**
+     * 认领任务（只有一个节点能认领成功）
+     */
+    @Update("update ai_generate_job set status = 1, workerId = #{workerId}, heartbeatTime = now(), " +
+            "totalCount = 0, finishedCount = 0 where id = #{id} and status = 0")
+    int claim(@Param("id") long id, @Param("workerId") String workerId);
+
+    /**
+     * 刷新节点上所有运行中任务的心跳
+     */
+    @Update("update ai_generate_job set heartbeatTime = now() where workerId = #{workerId} and status = 1")
+    int heartbeat(@Param("workerId") String workerId);
+
+    /**
+     * 更新任务进度（同时刷新心跳）
+     */
+    @Update("update ai_generate_job set finishedCount = greatest(finishedCount, #{finishedCount}), " +
+            "totalCount = #{totalCount}, heartbeatTime = now() where id = #{id} and workerId = #{workerId} and status = 1")
+    int updateProgress(@Param("id") long id, @Param("workerId") String workerId,
+                       @Param("finishedCount") int finishedCount, @Param("totalCount") int totalCount);
+
+    /**
+     * 结束任务
+     */
+    @Update("update ai_generate_job set status = #{status}, questionIds = #{questionIds}, " +
+            "errorMessage = #{errorMessage} where id = #{id} and workerId = #{workerId} and status = 1")
+    int finish(@Param("id") long id, @Param("workerId") String workerId, @Param("status") int status,
+               @Param("questionIds") String questionIds, @Param("errorMessage") String errorMessage);
+
+    /**
+     * 执行节点停机时把未完成的任务放回队列（不计入重新排队次数）
+     */
+    @Update("update ai_generate_job set status = 0, workerId = null where id = #{id} and workerId = #{workerId} and status = 1")
+    int release(@Param("id") long id, @Param("workerId") String workerId);
+
+    /**
+     * 执行节点失联（重启、宕机）的任务重新排队
+     */
+    @Update("update ai_generate_job set status = 0, workerId = null, retryCount = retryCount + 1 " +
+            "where status = 1 and heartbeatTime < #{beforeTime} and retryCount < #{maxRetries}")
+    int requeueStale(@Param("beforeTime") Date beforeTime, @Param("maxRetries") int maxRetries);
+
+    /**
+     * 重新排队次数用完的失联任务置为失败
+     */
+    @Update("update ai_generate_job set status = 3, errorMessage = '执行节点失联' " +
+            "where status = 1 and heartbeatTime < #{beforeTime} and retryCount >= #{maxRetries}")
+    int failStale(@Param("beforeTime") Date beforeTime, @Param("maxRetries") int maxRetries);
+}
@@ -0,0 +1,48 @@
+package com.iqb.programmingbank.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.iqb.programmingbank.model.entity.EsSyncOutbox;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * ES 同步发件箱数据库操作
+ */
+public interface EsSyncOutboxMapper extends BaseMapper<EsSyncOutbox> {
+
+    /**
+     * 按 id 顺序读取位点之后的变更
+     */
+    @Select("select * from es_sync_outbox where id > #{lastId} order by id limit #{limit}")
+    List<EsSyncOutbox> listAfter(@Param("lastId") long lastId, @Param("limit") int limit);
+
+    /**
+     * 指定时间之前的最大变更 id
+     */
+    @Select("select max(id) from es_sync_outbox where createTime < #{beforeTime}")
+    Long getMaxIdBefore(@Param("beforeTime") Date beforeTime);
+
+    /**
+     * 读取同步位点
+     */
+    @Select("select lastId from es_sync_checkpoint where name = #{name}")
+    Long getCheckpoint(@Param("name") String name);
+
+    /**
+     * 保存同步位点
+     */
+    @Insert("insert into es_sync_checkpoint (name, lastId) values (#{name}, #{lastId}) " +
+            "on duplicate key update lastId = greatest(lastId, #{lastId})")
+    int saveCheckpoint(@Param("name") String name, @Param("lastId") long lastId);
+
+    /**
+     * 清理已同步且超过保留时间的变更
+     */
+    @Delete("delete from es_sync_outbox where id <= #{maxId} and createTime < #{beforeTime} limit #{limit}")
+    int deleteSynced(@Param("maxId") long maxId, @Param("beforeTime") Date beforeTime, @Param("limit") int limit);
+}
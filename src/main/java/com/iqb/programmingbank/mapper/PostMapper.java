@@ -2,8 +2,10 @@ package com.iqb.programmingbank.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.iqb.programmingbank.model.entity.Post;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import org.apache.ibatis.annotations.Param;
 
 /**
  * 帖子数据库操作
@@ -17,6 +19,11 @@ public interface PostMapper extends BaseMapper<Post> {
      */
     List<Post> listPostWithDelete(Date minUpdateTime);
 
+    /**
+     * 根据 id 批量查询帖子（包括已被删除的数据）
+     */
+    List<Post> listPostWithDeleteByIds(@Param("ids") Collection<Long> ids);
+
 }
 
 
@@ -2,8 +2,10 @@ package com.iqb.programmingbank.mapper;
 
 import com.iqb.programmingbank.model.entity.Question;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -15,10 +17,41 @@ import java.util.List;
 */
 public interface QuestionMapper extends BaseMapper<Question> {
 
+    /**
+     * 限定题库内题目的半连接条件（走 question_bank_question 的 (questionBankId, questionId) 唯一索引），
+     * 配合 QueryWrapper.apply 使用，参数为题库 id
+     */
+    String IN_QUESTION_BANK_SQL = "id in (select questionId from question_bank_question where questionBankId = {0})";
+
+    /**
+     * 包含指定标签的条件（走 question_tag 的 (tag, questionId) 主键），参数为标签
+     */
+    String HAS_TAG_SQL = "id in (select questionId from question_tag where tag = {0})";
+
+    /**
+     * 全文检索条件（boolean 模式，走 ngram 全文索引），参数为检索表达式
+     */
+    String MATCH_TITLE_CONTENT_SQL = "match(title, content) against({0} in boolean mode)";
+
+    String MATCH_TITLE_SQL = "match(title) against({0} in boolean mode)";
+
+    String MATCH_CONTENT_SQL = "match(content) against({0} in boolean mode)";
+
+    String MATCH_ANSWER_SQL = "match(answer) against({0} in boolean mode)";
+
     /**
      * 查询题目列表（包括已被删除的数据）
      */
     @Select("select * from question where updateTime >= #{minUpdateTime}")
     List<Question> listQuestionWithDelete(Date minUpdateTime);
 
+    /**
+     * 根据 id 批量查询题目（包括已被删除的数据）
+     */
+    @Select({"<script>",
+            "select * from question where id in",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    List<Question> listQuestionWithDeleteByIds(@Param("ids") Collection<Long> ids);
+
 }
@@ -1,19 +1,27 @@
 package com.iqb.programmingbank.model.dto.comment;
 
+import com.iqb.programmingbank.common.PageRequest;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 import java.io.Serializable;
 
 /**
  * 查询评论请求
  */
+@EqualsAndHashCode(callSuper = true)
 @Data
-public class CommentQueryRequest implements Serializable {
+public class CommentQueryRequest extends PageRequest implements Serializable {
 
     /**
      * 题目id
      */
     private Integer questionId;
 
+    /**
+     * 父评论id，为空或 0 时分页查询顶级评论，否则分页查询该评论下的回复
+     */
+    private Integer rid;
+
     private static final long serialVersionUID = 1L;
 } 
\ No newline at end of file
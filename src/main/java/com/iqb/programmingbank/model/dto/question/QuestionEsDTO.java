@@ -52,6 +52,11 @@ public class QuestionEsDTO implements Serializable {
      */
     private Long userId;
 
+    /**
+     * 所属题库 id 列表（按题库过滤用）
+     */
+    private List<Long> questionBankIds;
+
     /**
      * 创建时间
      */
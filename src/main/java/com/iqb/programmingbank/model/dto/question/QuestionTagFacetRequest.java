@@ -0,0 +1,39 @@
+package com.iqb.programmingbank.model.dto.question;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.iqb.programmingbank.config.TagsDeserializer;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 题目标签分面计数请求
+ */
+@Data
+public class QuestionTagFacetRequest implements Serializable {
+
+    /**
+     * 必须包含全部标签
+     */
+    @JsonDeserialize(using = TagsDeserializer.class)
+    private List<String> tags;
+
+    /**
+     * 包含任意一个标签
+     */
+    @JsonDeserialize(using = TagsDeserializer.class)
+    private List<String> anyTags;
+
+    /**
+     * 题库 id
+     */
+    private Long questionBankId;
+
+    /**
+     * 返回的标签数
+     */
+    private int size = 20;
+
+    private static final long serialVersionUID = 1L;
+}
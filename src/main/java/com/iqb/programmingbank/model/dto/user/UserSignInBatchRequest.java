@@ -0,0 +1,19 @@
+package com.iqb.programmingbank.model.dto.user;
+
+import java.io.Serializable;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * 批量签到请求（离线练习后同步）
+ */
+@Data
+public class UserSignInBatchRequest implements Serializable {
+
+    /**
+     * 练习记录
+     */
+    private List<UserSignInRecordRequest> recordList;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,23 @@
+package com.iqb.programmingbank.model.dto.user;
+
+import java.io.Serializable;
+import lombok.Data;
+
+/**
+ * 用户签到记录（一次练习）
+ */
+@Data
+public class UserSignInRecordRequest implements Serializable {
+
+    /**
+     * 练习的题目 id
+     */
+    private Long questionId;
+
+    /**
+     * 练习日期（yyyy-MM-dd，为空表示今天）
+     */
+    private String date;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,91 @@
+package com.iqb.programmingbank.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * AI 生成题目任务
+ * @TableName ai_generate_job
+ */
+@TableName(value = "ai_generate_job")
+@Data
+public class AiGenerateJob implements Serializable {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 创建用户 id
+     */
+    private Long userId;
+
+    /**
+     * 题目方向
+     */
+    private String questionType;
+
+    /**
+     * 题目数量
+     */
+    private Integer number;
+
+    /**
+     * 状态：0-等待中 1-运行中 2-成功 3-失败
+     */
+    private Integer status;
+
+    /**
+     * 需要生成题解的题目数
+     */
+    private Integer totalCount;
+
+    /**
+     * 已完成（含失败）的题解数
+     */
+    private Integer finishedCount;
+
+    /**
+     * 生成的题目 id 列表（json 数组）
+     */
+    private String questionIds;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 执行节点
+     */
+    private String workerId;
+
+    /**
+     * 执行节点失联后重新排队的次数
+     */
+    private Integer retryCount;
+
+    /**
+     * 执行节点心跳时间
+     */
+    private Date heartbeatTime;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,41 @@
+package com.iqb.programmingbank.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * ES 同步发件箱（由数据库触发器在业务事务中写入）
+ * @TableName es_sync_outbox
+ */
+@TableName(value = "es_sync_outbox")
+@Data
+public class EsSyncOutbox implements Serializable {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 实体类型：question/post
+     */
+    private String entityType;
+
+    /**
+     * 实体 id
+     */
+    private Long entityId;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,29 @@
+package com.iqb.programmingbank.model.enums;
+
+/**
+ * AI 生成题目任务状态枚举
+ */
+public enum AiGenerateJobStatusEnum {
+
+    WAITING("等待中", 0),
+    RUNNING("运行中", 1),
+    SUCCEED("成功", 2),
+    FAILED("失败", 3);
+
+    private final String text;
+
+    private final int value;
+
+    AiGenerateJobStatusEnum(String text, int value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,34 @@
+package com.iqb.programmingbank.model.enums;
+
+/**
+ * 限流算法枚举
+ */
+public enum RateLimitAlgorithmEnum {
+
+    /**
+     * 滑动窗口计数：当前窗口计数 + 上一窗口计数按剩余比例折算，避免固定窗口边界的 2 倍突发
+     */
+    SLIDING_WINDOW("滑动窗口", "sliding_window"),
+
+    /**
+     * GCRA（通用信元速率算法，等价于令牌桶）：请求匀速放行，允许 burst 个突发
+     */
+    GCRA("令牌桶", "gcra");
+
+    private final String text;
+
+    private final String value;
+
+    RateLimitAlgorithmEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,36 @@
+package com.iqb.programmingbank.model.enums;
+
+/**
+ * 限流维度枚举
+ */
+public enum RateLimitTypeEnum {
+
+    /**
+     * 按登录用户限流，未登录时按 IP
+     */
+    USER("用户", "user"),
+
+    IP("IP", "ip"),
+
+    /**
+     * 所有请求共享一个限额
+     */
+    GLOBAL("全局", "global");
+
+    private final String text;
+
+    private final String value;
+
+    RateLimitTypeEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,88 @@
+package com.iqb.programmingbank.model.vo;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.iqb.programmingbank.model.entity.AiGenerateJob;
+import lombok.Data;
+import org.springframework.beans.BeanUtils;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * AI 生成题目任务视图
+ */
+@Data
+public class AiGenerateJobVO implements Serializable {
+
+    /**
+     * id
+     */
+    private Long id;
+
+    /**
+     * 题目方向
+     */
+    private String questionType;
+
+    /**
+     * 题目数量
+     */
+    private Integer number;
+
+    /**
+     * 状态：0-等待中 1-运行中 2-成功 3-失败
+     */
+    private Integer status;
+
+    /**
+     * 需要生成题解的题目数（开始运行后才有值）
+     */
+    private Integer totalCount;
+
+    /**
+     * 已完成（含失败）的题解数
+     */
+    private Integer finishedCount;
+
+    /**
+     * 生成的题目 id 列表
+     */
+    private List<Long> questionIdList;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 对象转封装类
+     *
+     * @param aiGenerateJob
+     * @return
+     */
+    public static AiGenerateJobVO objToVo(AiGenerateJob aiGenerateJob) {
+        if (aiGenerateJob == null) {
+            return null;
+        }
+        AiGenerateJobVO aiGenerateJobVO = new AiGenerateJobVO();
+        BeanUtils.copyProperties(aiGenerateJob, aiGenerateJobVO);
+        if (StrUtil.isNotBlank(aiGenerateJob.getQuestionIds())) {
+            aiGenerateJobVO.setQuestionIdList(JSONUtil.toList(aiGenerateJob.getQuestionIds(), Long.class));
+        }
+        return aiGenerateJobVO;
+    }
+}
@@ -59,6 +59,11 @@ public class CommentVO implements Serializable {
      */
     private List<CommentVO> children;
 
+    /**
+     * 回复总数（分页查询时 children 只包含部分回复）
+     */
+    private Integer replyCount;
+
     /**
      * 被回复的用户信息（如果是回复某条评论）
      */
@@ -0,0 +1,44 @@
+package com.iqb.programmingbank.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * ES 写后同步队列状态
+ */
+@Data
+public class EsSyncStatusVO implements Serializable {
+
+    /**
+     * 待同步的变更数
+     */
+    private Integer pendingCount;
+
+    /**
+     * 最早的待同步变更已等待的时间（毫秒）
+     */
+    private Long oldestPendingAgeMillis;
+
+    /**
+     * 最近一次刷新的同步延迟（毫秒）
+     */
+    private Long lastLagMillis;
+
+    /**
+     * 已写入 ES 的变更数
+     */
+    private Long flushedCount;
+
+    /**
+     * 因队列已满被丢弃的变更数
+     */
+    private Long droppedCount;
+
+    /**
+     * 写入 ES 失败的变更数
+     */
+    private Long failedCount;
+
+    private static final long serialVersionUID = 1L;
+}
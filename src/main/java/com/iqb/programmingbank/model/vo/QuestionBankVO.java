@@ -2,11 +2,13 @@ package com.iqb.programmingbank.model.vo;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.iqb.programmingbank.model.entity.QuestionBank;
+import com.iqb.programmingbank.utils.CursorPageUtils;
 import lombok.Data;
 import org.springframework.beans.BeanUtils;
 
 import java.io.Serializable;
 import java.util.Date;
+import java.util.stream.Collectors;
 
 /**
  * 题库视图
@@ -91,4 +93,28 @@ public class QuestionBankVO implements Serializable {
         BeanUtils.copyProperties(questionBank, questionBankVO);
         return questionBankVO;
     }
+
+    /**
+     * 复制封装类，连同题目分页一起复制（本地缓存中的对象被所有请求共享，返回前复制一份）
+     *
+     * @param questionBankVO
+     * @return
+     */
+    public static QuestionBankVO copy(QuestionBankVO questionBankVO) {
+        if (questionBankVO == null) {
+            return null;
+        }
+        QuestionBankVO copiedQuestionBankVO = new QuestionBankVO();
+        BeanUtils.copyProperties(questionBankVO, copiedQuestionBankVO);
+        copiedQuestionBankVO.setUser(UserVO.copy(questionBankVO.getUser()));
+        Page<QuestionVO> questionPage = questionBankVO.getQuestionPage();
+        if (questionPage != null) {
+            Page<QuestionVO> copiedQuestionPage = CursorPageUtils.newPage(questionPage);
+            copiedQuestionPage.setRecords(questionPage.getRecords().stream()
+                    .map(QuestionVO::copy)
+                    .collect(Collectors.toList()));
+            copiedQuestionBankVO.setQuestionPage(copiedQuestionPage);
+        }
+        return copiedQuestionBankVO;
+    }
 }
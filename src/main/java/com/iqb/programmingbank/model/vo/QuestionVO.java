@@ -6,6 +6,7 @@ import lombok.Data;
 import org.springframework.beans.BeanUtils;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -95,4 +96,23 @@ public class QuestionVO implements Serializable {
         questionVO.setTagList(JSONUtil.toList(JSONUtil.parseArray(question.getTags()), String.class));
         return questionVO;
     }
+
+    /**
+     * 复制封装类（本地缓存中的对象被所有请求共享，返回或写入前复制一份）
+     *
+     * @param questionVO
+     * @return
+     */
+    public static QuestionVO copy(QuestionVO questionVO) {
+        if (questionVO == null) {
+            return null;
+        }
+        QuestionVO copiedQuestionVO = new QuestionVO();
+        BeanUtils.copyProperties(questionVO, copiedQuestionVO);
+        if (questionVO.getTagList() != null) {
+            copiedQuestionVO.setTagList(new ArrayList<>(questionVO.getTagList()));
+        }
+        copiedQuestionVO.setUser(UserVO.copy(questionVO.getUser()));
+        return copiedQuestionVO;
+    }
 }
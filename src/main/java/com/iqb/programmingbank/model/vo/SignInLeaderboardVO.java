@@ -0,0 +1,30 @@
+package com.iqb.programmingbank.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 签到排行榜（定期生成的快照）
+ */
+@Data
+public class SignInLeaderboardVO implements Serializable {
+
+    /**
+     * 年份
+     */
+    private Integer year;
+
+    /**
+     * 排行
+     */
+    private List<SignInRankVO> rankList;
+
+    /**
+     * 当前用户的排名，不在快照中时为空
+     */
+    private SignInRankVO myRank;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,34 @@
+package com.iqb.programmingbank.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 签到排行榜中的一项
+ */
+@Data
+public class SignInRankVO implements Serializable {
+
+    /**
+     * 名次（从 1 开始）
+     */
+    private Integer rank;
+
+    /**
+     * 签到天数
+     */
+    private Integer days;
+
+    /**
+     * 用户 id
+     */
+    private Long userId;
+
+    /**
+     * 用户信息
+     */
+    private UserVO user;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,40 @@
+package com.iqb.programmingbank.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 用户签到统计
+ */
+@Data
+public class SignInStatsVO implements Serializable {
+
+    /**
+     * 年份
+     */
+    private Integer year;
+
+    /**
+     * 全年签到天数
+     */
+    private Integer totalDays;
+
+    /**
+     * 当前连续签到天数（只统计当年，往年为 0）
+     */
+    private Integer currentStreak;
+
+    /**
+     * 最长连续签到天数
+     */
+    private Integer longestStreak;
+
+    /**
+     * 每月签到天数（1 ~ 12 月）
+     */
+    private List<Integer> monthlyCounts;
+
+    private static final long serialVersionUID = 1L;
+}
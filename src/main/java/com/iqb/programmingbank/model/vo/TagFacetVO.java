@@ -0,0 +1,24 @@
+package com.iqb.programmingbank.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 标签分面计数
+ */
+@Data
+public class TagFacetVO implements Serializable {
+
+    /**
+     * 标签
+     */
+    private String tag;
+
+    /**
+     * 满足条件且包含该标签的题目数
+     */
+    private Integer count;
+
+    private static final long serialVersionUID = 1L;
+}
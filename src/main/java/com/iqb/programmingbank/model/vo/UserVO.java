@@ -3,6 +3,7 @@ package com.iqb.programmingbank.model.vo;
 import java.io.Serializable;
 import java.util.Date;
 import lombok.Data;
+import org.springframework.beans.BeanUtils;
 
 /**
  * 用户视图（脱敏）
@@ -43,4 +44,19 @@ public class UserVO implements Serializable {
     private Date createTime;
 
     private static final long serialVersionUID = 1L;
+
+    /**
+     * 复制封装类
+     *
+     * @param userVO
+     * @return
+     */
+    public static UserVO copy(UserVO userVO) {
+        if (userVO == null) {
+            return null;
+        }
+        UserVO copiedUserVO = new UserVO();
+        BeanUtils.copyProperties(userVO, copiedUserVO);
+        return copiedUserVO;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.iqb.programmingbank.practice;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * 有序 id 列表的紧凑编码
+ * <p>
+ * id 升序去重后，第一个 id 原样、之后每个 id 存与前一个的差值，每个数用变长整数（每字节 7 位，最高位表示后面还有字节）编码。
+ * 同一天练习的题目 id 通常比较接近，平均每个 id 只占 1 ~ 3 个字节。
+ */
+public final class IdListCodec {
+
+    private static final long[] EMPTY = new long[0];
+
+    private IdListCodec() {
+    }
+
+    /**
+     * 编码
+     *
+     * @param ids 非负 id（无需有序）
+     * @return
+     */
+    public static byte[] encode(long[] ids) {
+        long[] sortedIds = Arrays.stream(ids).sorted().distinct().toArray();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sortedIds.length * 2);
+        long previous = 0;
+        for (long id : sortedIds) {
+            if (id < 0) {
+                throw new IllegalArgumentException("id must be non-negative: " + id);
+            }
+            writeVarLong(out, id - previous);
+            previous = id;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码
+     *
+     * @param bytes 编码结果，为 null 时返回空数组
+     * @return 升序的 id
+     */
+    public static long[] decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return EMPTY;
+        }
+        long[] ids = new long[bytes.length];
+        int count = 0;
+        long previous = 0;
+        int position = 0;
+        while (position < bytes.length) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position >= bytes.length || shift > 63) {
+                    throw new IllegalArgumentException("malformed id list");
+                }
+                b = bytes[position++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            previous += delta;
+            ids[count++] = previous;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * 加入一个 id
+     *
+     * @param bytes 原编码结果，可为 null
+     * @param id
+     * @return 新的编码结果，id 已存在时返回 null
+     */
+    public static byte[] add(byte[] bytes, long id) {
+        long[] ids = decode(bytes);
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return null;
+        }
+        long[] newIds = Arrays.copyOf(ids, ids.length + 1);
+        newIds[ids.length] = id;
+        return encode(newIds);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
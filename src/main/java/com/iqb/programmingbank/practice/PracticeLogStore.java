@@ -0,0 +1,241 @@
+package com.iqb.programmingbank.practice;
+
+import com.iqb.programmingbank.config.PracticeLogConfig;
+import com.iqb.programmingbank.constant.RedisConstant;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMap;
+import org.redisson.api.RScript;
+import org.redisson.api.RScriptAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.IntegerCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.CompositeCodec;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户刷题记录存储
+ * <p>
+ * 每个用户每月一个 Redis hash，field 为日期（几号），value 为当天练习的题目 id 列表（{@link IdListCodec} 编码），
+ * 小 hash 使用紧凑编码，每个题目只占几个字节。整月的 key 在保留期过后自动过期。
+ * 写入由一个 Lua 脚本完成：合并题目 id、刷新过期时间、设置当年签到位图的对应位并返回当天题目数，一次往返且原子执行；
+ * 批量写入时每天一次脚本调用，通过 pipeline 一次提交。
+ */
+@Component
+public class PracticeLogStore {
+
+    /**
+     * 记录 Lua 脚本：KEYS[1] 刷题记录 hash，KEYS[2] 签到位图；ARGV[1] hash field（几号），ARGV[2] 签到位图偏移量，
+     * ARGV[3] 刷题记录过期时间（毫秒），ARGV[4...] 题目 id。解码、合并、编码方式与 {@link IdListCodec} 一致，
+     * 没有新题目时不改写 hash。返回当天的题目数。两个 key 在同一个 slot（见 {@link RedisConstant#getPracticeLogKey}），支持 Redis 集群
+     */
+    static final String RECORD_LUA_SCRIPT =
+            "local ids = {} " +
+                    "local seen = {} " +
+                    "local old = redis.call('hget', KEYS[1], ARGV[1]) " +
+                    "if old then " +
+                    "  local previous = 0 " +
+                    "  local i = 1 " +
+                    "  while i <= #old do " +
+                    "    local delta = 0 " +
+                    "    local mul = 1 " +
+                    "    local b " +
+                    "    repeat " +
+                    "      b = string.byte(old, i) " +
+                    "      if not b then return redis.error_reply('malformed id list') end " +
+                    "      i = i + 1 " +
+                    "      delta = delta + (b % 128) * mul " +
+                    "      mul = mul * 128 " +
+                    "    until b < 128 " +
+                    "    previous = previous + delta " +
+                    "    ids[#ids + 1] = previous " +
+                    "    seen[previous] = true " +
+                    "  end " +
+                    "end " +
+                    "local added = false " +
+                    "for j = 4, #ARGV do " +
+                    "  local id = tonumber(ARGV[j]) " +
+                    "  if not seen[id] then " +
+                    "    seen[id] = true " +
+                    "    ids[#ids + 1] = id " +
+                    "    added = true " +
+                    "  end " +
+                    "end " +
+                    "if added then " +
+                    "  table.sort(ids) " +
+                    "  local out = {} " +
+                    "  local previous = 0 " +
+                    "  for _, id in ipairs(ids) do " +
+                    "    local delta = id - previous " +
+                    "    previous = id " +
+                    "    while delta >= 128 do " +
+                    "      out[#out + 1] = string.char(delta % 128 + 128) " +
+                    "      delta = math.floor(delta / 128) " +
+                    "    end " +
+                    "    out[#out + 1] = string.char(delta) " +
+                    "  end " +
+                    "  redis.call('hset', KEYS[1], ARGV[1], table.concat(out)) " +
+                    "  redis.call('pexpire', KEYS[1], ARGV[3]) " +
+                    "end " +
+                    "redis.call('setbit', KEYS[2], ARGV[2], 1) " +
+                    "return #ids";
+
+    /**
+     * Lua 数字为双精度浮点数，题目 id 不能超过 2^53
+     */
+    private static final long MAX_QUESTION_ID = 1L << 53;
+
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final CompositeCodec CODEC = new CompositeCodec(StringCodec.INSTANCE, ByteArrayCodec.INSTANCE);
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private PracticeLogConfig practiceLogConfig;
+
+    /**
+     * 脚本 SHA，Redis 重启或 SCRIPT FLUSH 后会重新加载
+     */
+    private volatile String scriptSha;
+
+    /**
+     * 记录用户在某天练习了题目并签到（幂等）
+     *
+     * @param userId
+     * @param questionId
+     * @param date
+     * @return 当天练习的题目数
+     */
+    public int record(long userId, long questionId, LocalDate date) {
+        return record(userId, Collections.singletonMap(date, Collections.singletonList(questionId))).get(date);
+    }
+
+    /**
+     * 批量记录用户的练习并签到（幂等），所有日期一次 pipeline 提交
+     *
+     * @param userId
+     * @param practices 日期 => 当天练习的题目 id
+     * @return 日期 => 当天练习的题目数
+     */
+    public Map<LocalDate, Integer> record(long userId, Map<LocalDate, ? extends Collection<Long>> practices) {
+        List<LocalDate> dates = new ArrayList<>(practices.size());
+        for (Map.Entry<LocalDate, ? extends Collection<Long>> entry : practices.entrySet()) {
+            for (Long questionId : entry.getValue()) {
+                if (questionId == null || questionId <= 0 || questionId >= MAX_QUESTION_ID) {
+                    throw new IllegalArgumentException("invalid question id: " + questionId);
+                }
+            }
+            dates.add(entry.getKey());
+        }
+        Map<LocalDate, Integer> counts = new LinkedHashMap<>(dates.size() * 2);
+        if (dates.isEmpty()) {
+            return counts;
+        }
+        List<?> responses = executeBatch(userId, practices);
+        for (int i = 0; i < dates.size(); i++) {
+            counts.put(dates.get(i), ((Number) responses.get(i)).intValue());
+        }
+        return counts;
+    }
+
+    /**
+     * 用户某天练习的题目 id
+     *
+     * @param userId
+     * @param date
+     * @return 升序的题目 id
+     */
+    public long[] getQuestionIds(long userId, LocalDate date) {
+        byte[] value = getPracticeLogMap(userId, date).get(String.valueOf(date.getDayOfMonth()));
+        return IdListCodec.decode(value);
+    }
+
+    private RMap<String, byte[]> getPracticeLogMap(long userId, LocalDate date) {
+        return redissonClient.getMap(getPracticeLogKey(userId, date), CODEC);
+    }
+
+    private static String getPracticeLogKey(long userId, LocalDate date) {
+        return RedisConstant.getPracticeLogKey(date.getYear(), userId, date.format(MONTH_FORMATTER));
+    }
+
+    private List<?> executeBatch(long userId, Map<LocalDate, ? extends Collection<Long>> practices) {
+        try {
+            return executeBatch(userId, practices, getScriptSha());
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            return executeBatch(userId, practices, reloadScriptSha());
+        }
+    }
+
+    private List<?> executeBatch(long userId, Map<LocalDate, ? extends Collection<Long>> practices, String sha) {
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        RScriptAsync script = batch.getScript(IntegerCodec.INSTANCE);
+        for (Map.Entry<LocalDate, ? extends Collection<Long>> entry : practices.entrySet()) {
+            LocalDate date = entry.getKey();
+            List<Object> args = new ArrayList<>(entry.getValue().size() + 3);
+            args.add(date.getDayOfMonth());
+            // 当前日期是一年中的第几天，作为签到位图的偏移量（从 1 开始计数）
+            args.add(date.getDayOfYear());
+            args.add(getExpireMillis(date));
+            args.addAll(entry.getValue());
+            script.evalShaAsync(RScript.Mode.READ_WRITE, sha, RScript.ReturnType.INTEGER,
+                    Arrays.asList(getPracticeLogKey(userId, date),
+                            RedisConstant.getUserSignInRedisKey(date.getYear(), userId)),
+                    args.toArray());
+        }
+        return batch.execute().getResponses();
+    }
+
+    private String getScriptSha() {
+        String sha = scriptSha;
+        if (sha == null) {
+            sha = reloadScriptSha();
+        }
+        return sha;
+    }
+
+    private String reloadScriptSha() {
+        String sha = redissonClient.getScript(IntegerCodec.INSTANCE).scriptLoad(RECORD_LUA_SCRIPT);
+        scriptSha = sha;
+        return sha;
+    }
+
+    private boolean isNoScript(Throwable e) {
+        while (e != null) {
+            if (e.getMessage() != null && e.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+            e = e.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * 保留到记录所在月之后 retentionMonths 个月的月底
+     */
+    private long getExpireMillis(LocalDate date) {
+        long expireTime = date.withDayOfMonth(1)
+                .plusMonths(practiceLogConfig.getRetentionMonths() + 1L)
+                .atStartOfDay(ZoneId.systemDefault())
+                .toInstant()
+                .toEpochMilli();
+        return Math.max(1, expireTime - System.currentTimeMillis());
+    }
+}
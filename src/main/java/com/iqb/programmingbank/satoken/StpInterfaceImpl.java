@@ -1,22 +1,26 @@
 package com.iqb.programmingbank.satoken;
 
 import cn.dev33.satoken.stp.StpInterface;
-import cn.dev33.satoken.stp.StpUtil;
 import com.iqb.programmingbank.model.entity.User;
+import com.iqb.programmingbank.service.UserService;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import static com.iqb.programmingbank.constant.UserConstant.USER_LOGIN_STATE;
-
 /**
  * 自定义权限加载接口实现类
  */
 @Component // 保证此类被 SpringBoot 扫描，完成 Sa-Token 的自定义权限验证扩展
 public class StpInterfaceImpl implements StpInterface {
 
+    @Resource
+    @Lazy
+    private UserService userService;
+
     /**
      * 返回一个账号所拥有的权限码集合（目前没用）
      */
@@ -30,8 +34,11 @@ public class StpInterfaceImpl implements StpInterface {
      */
     @Override
     public List<String> getRoleList(Object loginId, String loginType) {
-        // 从当前登录用户信息中获取角色
-        User user = (User) StpUtil.getSessionByLoginId(loginId).get(USER_LOGIN_STATE);
+        // 从登录用户缓存中获取角色（角色变更、封号时缓存会失效，不读 Session 中登录时的快照）
+        User user = userService.getCachedUserById(Long.parseLong(loginId.toString()));
+        if (user == null) {
+            return new ArrayList<>();
+        }
         return Collections.singletonList(user.getUserRole());
     }
 
@@ -0,0 +1,62 @@
+package com.iqb.programmingbank.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.iqb.programmingbank.model.entity.AiGenerateJob;
+import com.iqb.programmingbank.model.entity.Question;
+import com.iqb.programmingbank.model.entity.User;
+import com.iqb.programmingbank.model.vo.AiGenerateJobVO;
+
+import java.util.List;
+
+/**
+ * AI 生成题目任务服务
+ */
+public interface AiGenerateJobService extends IService<AiGenerateJob> {
+
+    /**
+     * 提交 AI 生成题目任务（异步执行）
+     *
+     * @param questionType 题目类型，比如 Java
+     * @param number       题目数量，比如 10
+     * @param loginUser    创建人
+     * @return 任务 id
+     */
+    long submitJob(String questionType, int number, User loginUser);
+
+    /**
+     * 获取任务状态（仅创建人和管理员可见）
+     *
+     * @param id
+     * @param loginUser
+     * @return
+     */
+    AiGenerateJobVO getJobVO(long id, User loginUser);
+
+    /**
+     * 获取用户最近的任务
+     *
+     * @param loginUser
+     * @param size      返回的任务数
+     * @return
+     */
+    List<AiGenerateJobVO> listMyJobVO(User loginUser, int size);
+
+    /**
+     * 认领等待中的任务（所有节点串行执行，并发上限检查与认领在同一事务内）
+     *
+     * @param aiGenerateJob 等待中的任务
+     * @param workerId      执行节点
+     * @return 是否认领成功，已达上限或已被其他节点认领时返回 false
+     */
+    boolean claimJob(AiGenerateJob aiGenerateJob, String workerId);
+
+    /**
+     * 保存生成的题目并结束任务（同一事务内，任务已不属于该执行节点时回滚，不会重复保存）
+     *
+     * @param jobId        任务 id
+     * @param workerId     执行节点
+     * @param questionList 生成的题目
+     * @return 保存的题目 id，任务已被其他节点接管时返回 null
+     */
+    List<Long> completeJob(long jobId, String workerId, List<Question> questionList);
+}
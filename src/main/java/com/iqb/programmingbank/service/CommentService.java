@@ -1,6 +1,8 @@
 package com.iqb.programmingbank.service;
 
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.iqb.programmingbank.model.dto.comment.CommentQueryRequest;
 import com.iqb.programmingbank.model.entity.Comment;
 import com.iqb.programmingbank.model.vo.CommentVO;
 
@@ -37,4 +39,20 @@ public interface CommentService extends IService<Comment> {
      * @return
      */
     List<CommentVO> listCommentByQuestionId(Integer questionId, HttpServletRequest request);
+
+    /**
+     * 分页获取评论（rid 为空时分页查询顶级评论并附带部分回复，否则分页查询该评论下的回复）
+     *
+     * @param commentQueryRequest
+     * @param request
+     * @return
+     */
+    Page<CommentVO> listCommentVOByPage(CommentQueryRequest commentQueryRequest, HttpServletRequest request);
+
+    /**
+     * 失效题目的评论树缓存（评论新增、删除后调用）
+     *
+     * @param questionId
+     */
+    void invalidateCommentTreeCache(Integer questionId);
 } 
\ No newline at end of file
@@ -7,9 +7,11 @@ import com.iqb.programmingbank.model.dto.questionBankQuestion.QuestionBankQuesti
 import com.iqb.programmingbank.model.entity.QuestionBankQuestion;
 import com.iqb.programmingbank.model.entity.User;
 import com.iqb.programmingbank.model.vo.QuestionBankQuestionVO;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -76,6 +78,22 @@ public interface QuestionBankQuestionService extends IService<QuestionBankQuesti
      */
     @Transactional(rollbackFor = Exception.class)
     void batchAddQuestionsToBankInner(List<QuestionBankQuestion> questionBankQuestions);
+
+    /**
+     * 获取题库内所有题目 id 的位图（多级缓存，热门题库在本地缓存，题库成员变化时失效）
+     *
+     * @param questionBankId
+     * @return 只读位图，题目 id 超出 int 范围时返回 null
+     */
+    RoaringBitmap getQuestionIdBitmap(long questionBankId);
+
+    /**
+     * 题库成员变化后处理：失效题库详情缓存，并把题目的所属题库同步到 ES（有事务时在提交后执行）
+     *
+     * @param questionBankId
+     * @param questionIdList 加入或移出题库的题目
+     */
+    void onBankQuestionsChanged(long questionBankId, Collection<Long> questionIdList);
 }
 
 
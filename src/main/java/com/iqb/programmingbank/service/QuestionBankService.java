@@ -50,4 +50,11 @@ public interface QuestionBankService extends IService<QuestionBank> {
      * @return
      */
     Page<QuestionBankVO> getQuestionBankVOPage(Page<QuestionBank> questionBankPage, HttpServletRequest request);
+
+    /**
+     * 失效题库详情缓存（有事务时在提交后执行）
+     *
+     * @param questionBankId
+     */
+    void invalidateQuestionBankDetailCache(long questionBankId);
 }
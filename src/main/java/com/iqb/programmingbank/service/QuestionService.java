@@ -4,12 +4,15 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.iqb.programmingbank.model.dto.question.QuestionQueryRequest;
+import com.iqb.programmingbank.model.dto.question.QuestionTagFacetRequest;
 import com.iqb.programmingbank.model.entity.Question;
 import com.iqb.programmingbank.model.entity.User;
 import com.iqb.programmingbank.model.vo.QuestionVO;
+import com.iqb.programmingbank.model.vo.TagFacetVO;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 /**
  * 题目服务
@@ -77,6 +80,22 @@ public interface QuestionService extends IService<Question> {
      */
     Page<Question> searchFromEs(QuestionQueryRequest questionQueryRequest);
 
+    /**
+     * 从本地索引查询题目（ES 或数据库不可用时降级）
+     *
+     * @param questionQueryRequest
+     * @return 本地索引不可用时返回 null
+     */
+    Page<Question> searchFromLocalIndex(QuestionQueryRequest questionQueryRequest);
+
+    /**
+     * 题目标签分面计数
+     *
+     * @param questionTagFacetRequest
+     * @return 按题目数从多到少排列
+     */
+    List<TagFacetVO> listQuestionTagFacets(QuestionTagFacetRequest questionTagFacetRequest);
+
     /**
      * 批量删除题目
      *
@@ -90,7 +109,9 @@ public interface QuestionService extends IService<Question> {
      * @param questionType 题目类型，比如 Java
      * @param number 题目数量，比如 10
      * @param user 创建人
-     * @return ture / false
+     * @param progressListener 进度回调（已完成的题解数，题解总数），可为 null
+     * @return 生成的题目（未保存，由调用方一次批量保存）
      */
-    boolean aiGenerateQuestions(String questionType, int number, User user);
+    List<Question> aiGenerateQuestions(String questionType, int number, User user,
+                                       BiConsumer<Integer, Integer> progressListener);
 }
@@ -3,12 +3,17 @@ package com.iqb.programmingbank.service;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.iqb.programmingbank.model.dto.user.UserQueryRequest;
+import com.iqb.programmingbank.model.dto.user.UserSignInBatchRequest;
 import com.iqb.programmingbank.model.entity.User;
 import com.iqb.programmingbank.model.vo.LoginUserVO;
 import com.iqb.programmingbank.model.vo.PracticeRecordVO;
+import com.iqb.programmingbank.model.vo.SignInLeaderboardVO;
+import com.iqb.programmingbank.model.vo.SignInStatsVO;
 import com.iqb.programmingbank.model.vo.UserVO;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import me.chanjar.weixin.common.bean.WxOAuth2UserInfo;
 
@@ -111,6 +116,37 @@ public interface UserService extends IService<User> {
      */
     List<UserVO> getUserVO(List<User> userList);
 
+    /**
+     * 根据 id 获取脱敏的用户信息（带缓存）
+     *
+     * @param userId
+     * @return
+     */
+    UserVO getUserVOById(Long userId);
+
+    /**
+     * 批量获取脱敏的用户信息（带缓存，未命中的 id 合并为一次查询）
+     *
+     * @param userIds
+     * @return 用户 id => 用户信息，不存在的用户不在结果中
+     */
+    Map<Long, UserVO> getUserVOMap(Collection<Long> userIds);
+
+    /**
+     * 根据 id 获取用户（带本地缓存，用于登录态校验，返回缓存对象的副本）
+     *
+     * @param userId
+     * @return
+     */
+    User getCachedUserById(long userId);
+
+    /**
+     * 用户信息变更后清除缓存（所有节点）
+     *
+     * @param userId
+     */
+    void invalidateUserCache(long userId);
+
     /**
      * 获取查询条件
      *
@@ -122,9 +158,19 @@ public interface UserService extends IService<User> {
     /**
      * 添加用户签到记录
      * @param userId 用户 id
-     * @return 当前用户是否已签到成功
+     * @param questionId 练习的题目 id（为空时按题目标题查找）
+     * @param questionTitle 练习的题目标题
+     * @return 当天练习的题目数
      */
-    boolean addUserSignIn(long userId,String questionTitle);
+    int addUserSignIn(long userId, Long questionId, String questionTitle);
+
+    /**
+     * 批量添加用户签到记录（离线练习后同步）
+     * @param userId 用户 id
+     * @param userSignInBatchRequest 练习记录
+     * @return 日期 => 当天练习的题目数
+     */
+    Map<String, Integer> addUserSignInBatch(long userId, UserSignInBatchRequest userSignInBatchRequest);
 
     /**
      * 获取用户某个年份的签到记录
@@ -136,4 +182,23 @@ public interface UserService extends IService<User> {
     List<Integer> getUserSignInRecord(long userId, Integer year);
 
     PracticeRecordVO getUserSignInInfo(Long userId, String selectedDate);
+
+    /**
+     * 获取用户某个年份的签到统计（连续签到、每月天数）
+     *
+     * @param userId 用户 id
+     * @param year   年份（为空表示当前年份）
+     * @return
+     */
+    SignInStatsVO getUserSignInStats(long userId, Integer year);
+
+    /**
+     * 获取签到排行榜
+     *
+     * @param year   年份（为空表示当前年份）
+     * @param size   返回的名次数
+     * @param userId 当前用户 id（可为空）
+     * @return
+     */
+    SignInLeaderboardVO getSignInLeaderboard(Integer year, int size, Long userId);
 }
@@ -0,0 +1,155 @@
+package com.iqb.programmingbank.service.impl;
+
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.config.AiJobConfig;
+import com.iqb.programmingbank.exception.ThrowUtils;
+import com.iqb.programmingbank.mapper.AiGenerateJobMapper;
+import com.iqb.programmingbank.model.entity.AiGenerateJob;
+import com.iqb.programmingbank.model.entity.Question;
+import com.iqb.programmingbank.model.entity.User;
+import com.iqb.programmingbank.model.enums.AiGenerateJobStatusEnum;
+import com.iqb.programmingbank.model.vo.AiGenerateJobVO;
+import com.iqb.programmingbank.service.AiGenerateJobService;
+import com.iqb.programmingbank.service.QuestionService;
+import com.iqb.programmingbank.service.UserService;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * AI 生成题目任务服务实现
+ */
+@Service
+public class AiGenerateJobServiceImpl extends ServiceImpl<AiGenerateJobMapper, AiGenerateJob>
+        implements AiGenerateJobService {
+
+    /**
+     * 最近任务列表的最大条数
+     */
+    private static final int MAX_LIST_SIZE = 50;
+
+    @Resource
+    private AiJobConfig aiJobConfig;
+
+    @Resource
+    private UserService userService;
+
+    @Resource
+    private QuestionService questionService;
+
+    /**
+     * 提交 AI 生成题目任务（异步执行）
+     *
+     * @param questionType 题目类型，比如 Java
+     * @param number       题目数量，比如 10
+     * @param loginUser    创建人
+     * @return 任务 id
+     */
+    @Override
+    public long submitJob(String questionType, int number, User loginUser) {
+        ThrowUtils.throwIf(StringUtils.isBlank(questionType) || questionType.length() > 128, ErrorCode.PARAMS_ERROR,
+                "question type is invalid");
+        ThrowUtils.throwIf(number <= 0 || number > aiJobConfig.getMaxQuestionNumber(), ErrorCode.PARAMS_ERROR,
+                "question number is out of range");
+        int waiting = AiGenerateJobStatusEnum.WAITING.getValue();
+        ThrowUtils.throwIf(baseMapper.countByUserAndStatus(loginUser.getId(), waiting) >= aiJobConfig.getMaxUserWaitingJobs(),
+                ErrorCode.TOO_MANY_REQUEST, "排队中的任务过多，请等待已提交的任务完成");
+        ThrowUtils.throwIf(baseMapper.countByStatus(waiting) >= aiJobConfig.getMaxWaitingJobs(),
+                ErrorCode.TOO_MANY_REQUEST, "系统繁忙，请稍后再试");
+        AiGenerateJob aiGenerateJob = new AiGenerateJob();
+        aiGenerateJob.setUserId(loginUser.getId());
+        aiGenerateJob.setQuestionType(questionType);
+        aiGenerateJob.setNumber(number);
+        aiGenerateJob.setStatus(waiting);
+        boolean result = this.save(aiGenerateJob);
+        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "提交任务失败");
+        return aiGenerateJob.getId();
+    }
+
+    /**
+     * 获取任务状态（仅创建人和管理员可见）
+     *
+     * @param id
+     * @param loginUser
+     * @return
+     */
+    @Override
+    public AiGenerateJobVO getJobVO(long id, User loginUser) {
+        AiGenerateJob aiGenerateJob = this.getById(id);
+        ThrowUtils.throwIf(aiGenerateJob == null, ErrorCode.NOT_FOUND_ERROR);
+        ThrowUtils.throwIf(!aiGenerateJob.getUserId().equals(loginUser.getId()) && !userService.isAdmin(loginUser),
+                ErrorCode.NO_AUTH_ERROR);
+        return AiGenerateJobVO.objToVo(aiGenerateJob);
+    }
+
+    /**
+     * 获取用户最近的任务
+     *
+     * @param loginUser
+     * @param size      返回的任务数
+     * @return
+     */
+    @Override
+    public List<AiGenerateJobVO> listMyJobVO(User loginUser, int size) {
+        size = Math.max(1, Math.min(size, MAX_LIST_SIZE));
+        List<AiGenerateJob> jobList = this.list(Wrappers.lambdaQuery(AiGenerateJob.class)
+                .eq(AiGenerateJob::getUserId, loginUser.getId())
+                .orderByDesc(AiGenerateJob::getId)
+                .last("limit " + size));
+        return jobList.stream().map(AiGenerateJobVO::objToVo).collect(Collectors.toList());
+    }
+
+    /**
+     * 认领等待中的任务（所有节点串行执行，并发上限检查与认领在同一事务内）
+     *
+     * @param aiGenerateJob 等待中的任务
+     * @param workerId      执行节点
+     * @return 是否认领成功，已达上限或已被其他节点认领时返回 false
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean claimJob(AiGenerateJob aiGenerateJob, String workerId) {
+        // 先锁定认领锁行，之后的计数能看到之前所有认领的结果
+        baseMapper.lockClaim();
+        int running = AiGenerateJobStatusEnum.RUNNING.getValue();
+        if (baseMapper.countByStatus(running) >= aiJobConfig.getMaxRunningJobs()) {
+            return false;
+        }
+        if (baseMapper.countByUserAndStatus(aiGenerateJob.getUserId(), running) >= aiJobConfig.getMaxUserRunningJobs()) {
+            return false;
+        }
+        return baseMapper.claim(aiGenerateJob.getId(), workerId) > 0;
+    }
+
+    /**
+     * 保存生成的题目并结束任务（同一事务内，任务已不属于该执行节点时回滚，不会重复保存）
+     *
+     * @param jobId        任务 id
+     * @param workerId     执行节点
+     * @param questionList 生成的题目
+     * @return 保存的题目 id，任务已被其他节点接管时返回 null
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public List<Long> completeJob(long jobId, String workerId, List<Question> questionList) {
+        boolean result = questionService.saveBatch(questionList);
+        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "保存题目失败");
+        List<Long> questionIdList = questionList.stream().map(Question::getId).collect(Collectors.toList());
+        // 条件更新锁定任务行：先于重新排队执行时，重新排队会等到本事务提交后不再命中；晚于重新排队时回滚已保存的题目
+        int updated = baseMapper.finish(jobId, workerId, AiGenerateJobStatusEnum.SUCCEED.getValue(),
+                JSONUtil.toJsonStr(questionIdList), null);
+        if (updated == 0) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return null;
+        }
+        return questionIdList;
+    }
+}
@@ -1,26 +1,36 @@
 package com.iqb.programmingbank.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.iqb.programmingbank.config.CommentConfig;
+import com.iqb.programmingbank.constant.RedisConstant;
 import com.iqb.programmingbank.exception.BusinessException;
 import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.manager.MultiLevelCacheManager;
 import com.iqb.programmingbank.mapper.CommentMapper;
+import com.iqb.programmingbank.model.dto.comment.CommentQueryRequest;
 import com.iqb.programmingbank.model.entity.Comment;
-import com.iqb.programmingbank.model.entity.User;
 import com.iqb.programmingbank.model.vo.CommentVO;
 import com.iqb.programmingbank.model.vo.UserVO;
 import com.iqb.programmingbank.service.CommentService;
 import com.iqb.programmingbank.service.UserService;
+import lombok.Data;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import java.io.Serializable;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * 评论服务实现
+ * <p>
+ * 一个题目的评论一次查出，在内存中构建评论树（可缓存），用户信息批量获取，不再逐条查询。
  */
 @Service
 public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> implements CommentService {
@@ -28,6 +38,12 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
     @Resource
     private UserService userService;
 
+    @Resource
+    private CommentConfig commentConfig;
+
+    @Resource
+    private MultiLevelCacheManager multiLevelCacheManager;
+
     /**
      * 校验评论信息
      *
@@ -72,36 +88,14 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
         CommentVO commentVO = CommentVO.objToVo(comment);
         
         // 1. 关联查询用户信息
-        Long userId = comment.getUserId();
-        if (userId != null && userId > 0) {
-            User user = userService.getById(userId);
-            if (user != null) {
-                UserVO userVO = new UserVO();
-                userVO.setId(user.getId());
-                userVO.setUserName(user.getUserName());
-                userVO.setUserAvatar(user.getUserAvatar());
-                userVO.setUserRole(user.getUserRole());
-                commentVO.setUser(userVO);
-            }
-        }
+        commentVO.setUser(userService.getUserVOById(comment.getUserId()));
         
         // 2. 如果是回复评论，查询被回复的用户信息
         Integer bid = comment.getBid();
         if (bid != null && bid > 0) {
             Comment replyComment = this.getById(bid);
             if (replyComment != null) {
-                Long replyUserId = replyComment.getUserId();
-                if (replyUserId != null && replyUserId > 0) {
-                    User replyUser = userService.getById(replyUserId);
-                    if (replyUser != null) {
-                        UserVO replyUserVO = new UserVO();
-                        replyUserVO.setId(replyUser.getId());
-                        replyUserVO.setUserName(replyUser.getUserName());
-                        replyUserVO.setUserAvatar(replyUser.getUserAvatar());
-                        replyUserVO.setUserRole(replyUser.getUserRole());
-                        commentVO.setReplyUser(replyUserVO);
-                    }
-                }
+                commentVO.setReplyUser(userService.getUserVOById(replyComment.getUserId()));
             }
         }
         
@@ -121,46 +115,223 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
         if (questionId == null || questionId <= 0) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
-        // 查询所有与该题目相关的评论
+        CommentTree commentTree = getCommentTree(questionId);
+        // 如果没有评论，直接返回空列表
+        if (commentTree.getTopCommentList().isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 一次批量获取所有评论人、被回复人的信息
+        List<Comment> commentList = new ArrayList<>(commentTree.getTopCommentList());
+        commentTree.getReplyMap().values().forEach(commentList::addAll);
+        Map<Long, UserVO> userIdUserVOMap = userService.getUserVOMap(collectUserIds(commentList, commentTree));
+        // 将回复逐层放入父评论的children字段中
+        return commentTree.getTopCommentList().stream()
+                .map(topComment -> toCommentVOTree(topComment, commentTree, userIdUserVOMap))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 分页获取评论
+     *
+     * @param commentQueryRequest
+     * @param request
+     * @return
+     */
+    @Override
+    public Page<CommentVO> listCommentVOByPage(CommentQueryRequest commentQueryRequest, HttpServletRequest request) {
+        if (commentQueryRequest == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        Integer questionId = commentQueryRequest.getQuestionId();
+        if (questionId == null || questionId <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        long current = Math.max(1, commentQueryRequest.getCurrent());
+        long size = commentQueryRequest.getPageSize();
+        CommentTree commentTree = getCommentTree(questionId);
+        Integer rid = commentQueryRequest.getRid();
+        boolean queryReply = rid != null && rid > 0;
+        // 1. 从评论树中截取当前页
+        List<Comment> allCommentList = queryReply ? commentTree.getReplyList(rid) : commentTree.getTopCommentList();
+        List<Comment> pageCommentList = subPage(allCommentList, current, size);
+        // 2. 顶级评论附带前几条回复，其余回复按需加载
+        Map<Integer, List<Comment>> previewReplyMap = new HashMap<>();
+        List<Comment> commentList = new ArrayList<>(pageCommentList);
+        if (!queryReply) {
+            for (Comment topComment : pageCommentList) {
+                List<Comment> previewReplyList = subPage(commentTree.getReplyList(topComment.getId()),
+                        1, commentConfig.getPreviewReplySize());
+                previewReplyMap.put(topComment.getId(), previewReplyList);
+                commentList.addAll(previewReplyList);
+            }
+        }
+        // 3. 批量获取用户信息并组装
+        Map<Long, UserVO> userIdUserVOMap = userService.getUserVOMap(collectUserIds(commentList, commentTree));
+        List<CommentVO> commentVOList = pageCommentList.stream().map(comment -> {
+            CommentVO commentVO = toCommentVO(comment, commentTree, userIdUserVOMap);
+            if (!queryReply) {
+                commentVO.setChildren(previewReplyMap.get(comment.getId()).stream()
+                        .map(reply -> toCommentVO(reply, commentTree, userIdUserVOMap))
+                        .collect(Collectors.toList()));
+            }
+            return commentVO;
+        }).collect(Collectors.toList());
+        Page<CommentVO> commentVOPage = new Page<>(current, size, allCommentList.size());
+        commentVOPage.setRecords(commentVOList);
+        return commentVOPage;
+    }
+
+    /**
+     * 失效题目的评论树缓存（有事务时在提交后执行）
+     *
+     * @param questionId
+     */
+    @Override
+    public void invalidateCommentTreeCache(Integer questionId) {
+        if (questionId == null || !commentConfig.isTreeCacheEnabled()) {
+            return;
+        }
+        String key = RedisConstant.getCommentTreeKey(questionId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    multiLevelCacheManager.evict(key);
+                }
+            });
+            return;
+        }
+        multiLevelCacheManager.evict(key);
+    }
+
+    /**
+     * 获取题目的评论树（开启缓存时走多级缓存）
+     */
+    private CommentTree getCommentTree(Integer questionId) {
+        if (!commentConfig.isTreeCacheEnabled()) {
+            return buildCommentTree(questionId);
+        }
+        return multiLevelCacheManager.get(RedisConstant.getCommentTreeKey(questionId), () -> buildCommentTree(questionId));
+    }
+
+    /**
+     * 一次查询题目的所有评论，在内存中构建评论树
+     */
+    private CommentTree buildCommentTree(Integer questionId) {
         QueryWrapper<Comment> queryWrapper = new QueryWrapper<>();
         // 使用驼峰风格的字段名，与数据库表字段保持一致
         queryWrapper.eq("questionId", questionId).eq("isDelete", 0);
         queryWrapper.orderByDesc("createTime");
-        List<Comment> commentList = this.list(queryWrapper);
-        
-        // 如果没有评论，直接返回空列表
-        if (commentList == null || commentList.isEmpty()) {
+        return CommentTree.build(this.list(queryWrapper));
+    }
+
+    /**
+     * 收集评论人和被回复人的 id
+     */
+    private Set<Long> collectUserIds(List<Comment> commentList, CommentTree commentTree) {
+        Set<Long> userIdSet = new HashSet<>();
+        for (Comment comment : commentList) {
+            userIdSet.add(comment.getUserId());
+            Long replyUserId = commentTree.getReplyUserId(comment);
+            if (replyUserId != null) {
+                userIdSet.add(replyUserId);
+            }
+        }
+        return userIdSet;
+    }
+
+    /**
+     * 组装评论及其所有层级的回复
+     */
+    private CommentVO toCommentVOTree(Comment comment, CommentTree commentTree, Map<Long, UserVO> userIdUserVOMap) {
+        CommentVO commentVO = toCommentVO(comment, commentTree, userIdUserVOMap);
+        List<Comment> replyList = commentTree.getReplyList(comment.getId());
+        if (!replyList.isEmpty()) {
+            commentVO.setChildren(replyList.stream()
+                    .map(reply -> toCommentVOTree(reply, commentTree, userIdUserVOMap))
+                    .collect(Collectors.toList()));
+        }
+        return commentVO;
+    }
+
+    private CommentVO toCommentVO(Comment comment, CommentTree commentTree, Map<Long, UserVO> userIdUserVOMap) {
+        CommentVO commentVO = CommentVO.objToVo(comment);
+        commentVO.setReplyCount(commentTree.getReplyList(comment.getId()).size());
+        commentVO.setUser(userIdUserVOMap.get(comment.getUserId()));
+        Long replyUserId = commentTree.getReplyUserId(comment);
+        if (replyUserId != null) {
+            commentVO.setReplyUser(userIdUserVOMap.get(replyUserId));
+        }
+        return commentVO;
+    }
+
+    private static <T> List<T> subPage(List<T> list, long current, long size) {
+        long fromIndex = (current - 1) * size;
+        if (size <= 0 || fromIndex >= list.size()) {
             return new ArrayList<>();
         }
-        
-        // 将评论列表转为VO列表
-        List<CommentVO> commentVOList = commentList.stream()
-                .map(comment -> getCommentVO(comment, request))
-                .collect(Collectors.toList());
-        
-        // 构建评论树，将子评论放入父评论的children字段中
-        // 1. 先找出所有顶级评论（rid = 0 或 null）
-        List<CommentVO> topComments = commentVOList.stream()
-                .filter(commentVO -> commentVO.getRid() == null || commentVO.getRid() == 0)
-                .collect(Collectors.toList());
-        
-        // 2. 创建ID到评论的映射，方便查找
-        Map<Integer, CommentVO> idToCommentMap = new HashMap<>();
-        commentVOList.forEach(commentVO -> idToCommentMap.put(commentVO.getId(), commentVO));
-        
-        // 3. 将回复评论添加到对应父评论的children列表中
-        commentVOList.stream()
-                .filter(commentVO -> commentVO.getRid() != null && commentVO.getRid() > 0)
-                .forEach(commentVO -> {
-                    CommentVO parentComment = idToCommentMap.get(commentVO.getRid());
-                    if (parentComment != null) {
-                        if (parentComment.getChildren() == null) {
-                            parentComment.setChildren(new ArrayList<>());
-                        }
-                        parentComment.getChildren().add(commentVO);
-                    }
-                });
-        
-        return topComments;
+        return new ArrayList<>(list.subList((int) fromIndex, (int) Math.min(list.size(), fromIndex + size)));
+    }
+
+    /**
+     * 题目的评论树（按创建时间倒序），只包含评论实体，用户信息在组装时批量获取，保证用户资料修改后及时生效
+     */
+    @Data
+    static class CommentTree implements Serializable {
+
+        /**
+         * 顶级评论
+         */
+        private ArrayList<Comment> topCommentList = new ArrayList<>();
+
+        /**
+         * 父评论 id => 回复列表
+         */
+        private HashMap<Integer, List<Comment>> replyMap = new HashMap<>();
+
+        /**
+         * 评论 id => 评论用户 id（用于查找被回复人）
+         */
+        private HashMap<Integer, Long> commentUserIdMap = new HashMap<>();
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 构建评论树：rid 为空或 0 的是顶级评论，其余挂到父评论下（任意层级），父评论已删除的回复不再展示
+         *
+         * @param commentList 题目的所有评论
+         * @return
+         */
+        static CommentTree build(List<Comment> commentList) {
+            CommentTree commentTree = new CommentTree();
+            for (Comment comment : commentList) {
+                commentTree.getCommentUserIdMap().put(comment.getId(), comment.getUserId());
+                if (comment.getRid() == null || comment.getRid() == 0) {
+                    commentTree.getTopCommentList().add(comment);
+                }
+            }
+            for (Comment comment : commentList) {
+                Integer rid = comment.getRid();
+                if (rid != null && rid > 0 && commentTree.getCommentUserIdMap().containsKey(rid)) {
+                    commentTree.getReplyMap().computeIfAbsent(rid, key -> new ArrayList<>()).add(comment);
+                }
+            }
+            return commentTree;
+        }
+
+        List<Comment> getReplyList(Integer rid) {
+            return replyMap.getOrDefault(rid, Collections.emptyList());
+        }
+
+        /**
+         * 被回复人 id，被回复的评论不存在时返回 null
+         */
+        Long getReplyUserId(Comment comment) {
+            Integer bid = comment.getBid();
+            if (bid == null || bid <= 0) {
+                return null;
+            }
+            return commentUserIdMap.get(bid);
+        }
     }
 } 
\ No newline at end of file
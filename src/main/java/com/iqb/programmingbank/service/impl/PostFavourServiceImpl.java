@@ -7,6 +7,7 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.iqb.programmingbank.common.ErrorCode;
 import com.iqb.programmingbank.exception.BusinessException;
+import com.iqb.programmingbank.manager.PostCountManager;
 import com.iqb.programmingbank.mapper.PostFavourMapper;
 import com.iqb.programmingbank.model.entity.Post;
 import com.iqb.programmingbank.model.entity.PostFavour;
@@ -30,6 +31,9 @@ public class PostFavourServiceImpl extends ServiceImpl<PostFavourMapper, PostFav
     @Resource
     private PostService postService;
 
+    @Resource
+    private PostCountManager postCountManager;
+
     /**
      * 帖子收藏
      *
@@ -88,6 +92,9 @@ public class PostFavourServiceImpl extends ServiceImpl<PostFavourMapper, PostFav
                         .gt("favourNum", 0)
                         .setSql("favourNum = favourNum - 1")
                         .update();
+                if (result) {
+                    postCountManager.refresh(postId);
+                }
                 return result ? -1 : 0;
             } else {
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR);
@@ -101,6 +108,9 @@ public class PostFavourServiceImpl extends ServiceImpl<PostFavourMapper, PostFav
                         .eq("id", postId)
                         .setSql("favourNum = favourNum + 1")
                         .update();
+                if (result) {
+                    postCountManager.refresh(postId);
+                }
                 return result ? 1 : 0;
             } else {
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR);
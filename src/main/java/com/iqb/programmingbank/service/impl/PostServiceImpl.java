@@ -5,8 +5,13 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.iqb.programmingbank.common.ErrorCode;
 import com.iqb.programmingbank.constant.CommonConstant;
+import com.iqb.programmingbank.essync.EsOrphanReconciler;
+import com.iqb.programmingbank.essync.EsWriteBehindQueue;
 import com.iqb.programmingbank.exception.BusinessException;
 import com.iqb.programmingbank.exception.ThrowUtils;
+import com.iqb.programmingbank.manager.EsSearchManager;
+import com.iqb.programmingbank.manager.PostCountManager;
+import com.iqb.programmingbank.manager.SearchCacheManager;
 import com.iqb.programmingbank.mapper.PostFavourMapper;
 import com.iqb.programmingbank.mapper.PostMapper;
 import com.iqb.programmingbank.mapper.PostThumbMapper;
@@ -16,12 +21,16 @@ import com.iqb.programmingbank.model.entity.Post;
 import com.iqb.programmingbank.model.entity.PostFavour;
 import com.iqb.programmingbank.model.entity.PostThumb;
 import com.iqb.programmingbank.model.entity.User;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
 import com.iqb.programmingbank.model.vo.PostVO;
 import com.iqb.programmingbank.model.vo.UserVO;
 import com.iqb.programmingbank.service.PostService;
 import com.iqb.programmingbank.service.UserService;
+import com.iqb.programmingbank.utils.CursorPageUtils;
 import com.iqb.programmingbank.utils.SqlUtils;
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +39,7 @@ import java.util.stream.Collectors;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -38,13 +48,9 @@ import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.sort.SortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
 import org.springframework.data.elasticsearch.core.SearchHit;
-import org.springframework.data.elasticsearch.core.SearchHits;
-import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
-import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * 帖子服务实现
@@ -65,7 +71,19 @@ public class PostServiceImpl extends ServiceImpl<PostMapper, Post> implements Po
     private PostFavourMapper postFavourMapper;
 
     @Resource
-    private ElasticsearchRestTemplate elasticsearchRestTemplate;
+    private EsWriteBehindQueue esWriteBehindQueue;
+
+    @Resource
+    private SearchCacheManager searchCacheManager;
+
+    @Resource
+    private EsSearchManager esSearchManager;
+
+    @Resource
+    private PostCountManager postCountManager;
+
+    @Resource
+    private EsOrphanReconciler esOrphanReconciler;
 
     @Override
     public void validPost(Post post, boolean add) {
@@ -88,6 +106,48 @@ public class PostServiceImpl extends ServiceImpl<PostMapper, Post> implements Po
         }
     }
 
+    /**
+     * 以下写操作在成功后把变更的帖子放入 ES 写后同步队列（事务提交后生效）
+     */
+    @Override
+    public boolean save(Post entity) {
+        boolean result = super.save(entity);
+        if (result) {
+            esWriteBehindQueue.enqueue(EsSyncEntityTypeEnum.POST, Collections.singletonList(entity.getId()));
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean saveBatch(Collection<Post> entityList, int batchSize) {
+        boolean result = super.saveBatch(entityList, batchSize);
+        if (result) {
+            esWriteBehindQueue.enqueue(EsSyncEntityTypeEnum.POST, entityList.stream()
+                    .map(Post::getId)
+                    .collect(Collectors.toList()));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean updateById(Post entity) {
+        boolean result = super.updateById(entity);
+        if (result) {
+            esWriteBehindQueue.enqueue(EsSyncEntityTypeEnum.POST, Collections.singletonList(entity.getId()));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean result = super.removeById(id);
+        if (result) {
+            esWriteBehindQueue.enqueue(EsSyncEntityTypeEnum.POST, Collections.singletonList(Long.valueOf(id.toString())));
+        }
+        return result;
+    }
+
     /**
      * 获取查询包装类
      *
@@ -130,6 +190,36 @@ public class PostServiceImpl extends ServiceImpl<PostMapper, Post> implements Po
 
     @Override
     public Page<Post> searchFromEs(PostQueryRequest postQueryRequest) {
+        // 热门搜索直接走本地缓存，索引有写入时整体失效
+        String queryKey = SearchCacheManager.buildQueryKey(
+                postQueryRequest.getId(),
+                postQueryRequest.getNotId(),
+                SearchCacheManager.normalizeText(postQueryRequest.getSearchText()),
+                SearchCacheManager.normalizeText(postQueryRequest.getTitle()),
+                SearchCacheManager.normalizeText(postQueryRequest.getContent()),
+                SearchCacheManager.normalizeTags(postQueryRequest.getTags()),
+                SearchCacheManager.normalizeTags(postQueryRequest.getOrTags()),
+                postQueryRequest.getUserId(),
+                postQueryRequest.getCurrent(),
+                postQueryRequest.getPageSize(),
+                postQueryRequest.getSortField(),
+                postQueryRequest.getSortOrder(),
+                postQueryRequest.getCursor(),
+                postQueryRequest.getSearchCount());
+        Page<Post> cachedPage = searchCacheManager.get(EsSyncEntityTypeEnum.POST, queryKey, () -> doSearchFromEs(postQueryRequest));
+        // 复制一份再合并最新的点赞数、收藏数（不修改缓存中的对象），不再回查数据库
+        Page<Post> page = CursorPageUtils.newPage(cachedPage);
+        List<Post> postList = cachedPage.getRecords().stream()
+                .map(post -> BeanUtil.copyProperties(post, Post.class))
+                .collect(Collectors.toList());
+        postCountManager.fillCounts(postList);
+        page.setRecords(postList);
+        // 数据库中已删除的帖子由后台异步从 ES 清理（抽样核对，不随搜索量增加数据库查询）
+        esOrphanReconciler.submitPostIds(postList.stream().map(Post::getId).collect(Collectors.toList()));
+        return page;
+    }
+
+    private Page<Post> doSearchFromEs(PostQueryRequest postQueryRequest) {
         Long id = postQueryRequest.getId();
         Long notId = postQueryRequest.getNotId();
         String searchText = postQueryRequest.getSearchText();
@@ -138,9 +228,6 @@ public class PostServiceImpl extends ServiceImpl<PostMapper, Post> implements Po
         List<String> tagList = postQueryRequest.getTags();
         List<String> orTagList = postQueryRequest.getOrTags();
         Long userId = postQueryRequest.getUserId();
-        // es 起始页为 0
-        long current = postQueryRequest.getCurrent() - 1;
-        long pageSize = postQueryRequest.getPageSize();
         String sortField = postQueryRequest.getSortField();
         String sortOrder = postQueryRequest.getSortOrder();
         BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
@@ -193,35 +280,13 @@ public class PostServiceImpl extends ServiceImpl<PostMapper, Post> implements Po
             sortBuilder = SortBuilders.fieldSort(sortField);
             sortBuilder.order(CommonConstant.SORT_ORDER_ASC.equals(sortOrder) ? SortOrder.ASC : SortOrder.DESC);
         }
-        // 分页
-        PageRequest pageRequest = PageRequest.of((int) current, (int) pageSize);
-        // 构造查询
-        NativeSearchQuery searchQuery = new NativeSearchQueryBuilder().withQuery(boolQueryBuilder)
-                .withPageable(pageRequest).withSorts(sortBuilder).build();
-        SearchHits<PostEsDTO> searchHits = elasticsearchRestTemplate.search(searchQuery, PostEsDTO.class);
-        Page<Post> page = new Page<>();
-        page.setTotal(searchHits.getTotalHits());
-        List<Post> resourceList = new ArrayList<>();
-        // 查出结果后，从 db 获取最新动态数据（比如点赞数）
-        if (searchHits.hasSearchHits()) {
-            List<SearchHit<PostEsDTO>> searchHitList = searchHits.getSearchHits();
-            List<Long> postIdList = searchHitList.stream().map(searchHit -> searchHit.getContent().getId())
-                    .collect(Collectors.toList());
-            List<Post> postList = baseMapper.selectBatchIds(postIdList);
-            if (postList != null) {
-                Map<Long, List<Post>> idPostMap = postList.stream().collect(Collectors.groupingBy(Post::getId));
-                postIdList.forEach(postId -> {
-                    if (idPostMap.containsKey(postId)) {
-                        resourceList.add(idPostMap.get(postId).get(0));
-                    } else {
-                        // 从 es 清空 db 已物理删除的数据
-                        String delete = elasticsearchRestTemplate.delete(String.valueOf(postId), PostEsDTO.class);
-                        log.info("delete post {}", delete);
-                    }
-                });
-            }
-        }
-        page.setRecords(resourceList);
+        // 分页查询（普通分页或 search_after 游标分页）
+        Page<SearchHit<PostEsDTO>> searchHitPage = esSearchManager.search(boolQueryBuilder, sortBuilder,
+                postQueryRequest, PostEsDTO.class);
+        Page<Post> page = CursorPageUtils.newPage(searchHitPage);
+        page.setRecords(searchHitPage.getRecords().stream()
+                .map(searchHit -> PostEsDTO.dtoToObj(searchHit.getContent()))
+                .collect(Collectors.toList()));
         return page;
     }
 
@@ -231,11 +296,7 @@ public class PostServiceImpl extends ServiceImpl<PostMapper, Post> implements Po
         long postId = post.getId();
         // 1. 关联查询用户信息
         Long userId = post.getUserId();
-        User user = null;
-        if (userId != null && userId > 0) {
-            user = userService.getById(userId);
-        }
-        UserVO userVO = userService.getUserVO(user);
+        UserVO userVO = userService.getUserVOById(userId);
         postVO.setUser(userVO);
         // 2. 已登录，获取用户点赞、收藏状态
         User loginUser = userService.getLoginUserPermitNull(request);
@@ -259,14 +320,13 @@ public class PostServiceImpl extends ServiceImpl<PostMapper, Post> implements Po
     @Override
     public Page<PostVO> getPostVOPage(Page<Post> postPage, HttpServletRequest request) {
         List<Post> postList = postPage.getRecords();
-        Page<PostVO> postVOPage = new Page<>(postPage.getCurrent(), postPage.getSize(), postPage.getTotal());
+        Page<PostVO> postVOPage = CursorPageUtils.newPage(postPage);
         if (CollUtil.isEmpty(postList)) {
             return postVOPage;
         }
         // 1. 关联查询用户信息
         Set<Long> userIdSet = postList.stream().map(Post::getUserId).collect(Collectors.toSet());
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
+        Map<Long, UserVO> userIdUserVOMap = userService.getUserVOMap(userIdSet);
         // 2. 已登录，获取用户点赞、收藏状态
         Map<Long, Boolean> postIdHasThumbMap = new HashMap<>();
         Map<Long, Boolean> postIdHasFavourMap = new HashMap<>();
@@ -290,12 +350,7 @@ public class PostServiceImpl extends ServiceImpl<PostMapper, Post> implements Po
         // 填充信息
         List<PostVO> postVOList = postList.stream().map(post -> {
             PostVO postVO = PostVO.objToVo(post);
-            Long userId = post.getUserId();
-            User user = null;
-            if (userIdUserListMap.containsKey(userId)) {
-                user = userIdUserListMap.get(userId).get(0);
-            }
-            postVO.setUser(userService.getUserVO(user));
+            postVO.setUser(userIdUserVOMap.get(post.getUserId()));
             postVO.setHasThumb(postIdHasThumbMap.getOrDefault(post.getId(), false));
             postVO.setHasFavour(postIdHasFavourMap.getOrDefault(post.getId(), false));
             return postVO;
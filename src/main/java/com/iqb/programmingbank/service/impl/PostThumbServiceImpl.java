@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.iqb.programmingbank.common.ErrorCode;
 import com.iqb.programmingbank.exception.BusinessException;
+import com.iqb.programmingbank.manager.PostCountManager;
 import com.iqb.programmingbank.mapper.PostThumbMapper;
 import com.iqb.programmingbank.model.entity.Post;
 import com.iqb.programmingbank.model.entity.PostThumb;
@@ -27,6 +28,9 @@ public class PostThumbServiceImpl extends ServiceImpl<PostThumbMapper, PostThumb
     @Resource
     private PostService postService;
 
+    @Resource
+    private PostCountManager postCountManager;
+
     /**
      * 点赞
      *
@@ -77,6 +81,9 @@ public class PostThumbServiceImpl extends ServiceImpl<PostThumbMapper, PostThumb
                         .gt("thumbNum", 0)
                         .setSql("thumbNum = thumbNum - 1")
                         .update();
+                if (result) {
+                    postCountManager.refresh(postId);
+                }
                 return result ? -1 : 0;
             } else {
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR);
@@ -90,6 +97,9 @@ public class PostThumbServiceImpl extends ServiceImpl<PostThumbMapper, PostThumb
                         .eq("id", postId)
                         .setSql("thumbNum = thumbNum + 1")
                         .update();
+                if (result) {
+                    postCountManager.refresh(postId);
+                }
                 return result ? 1 : 0;
             } else {
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR);
@@ -8,14 +8,19 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.iqb.programmingbank.common.ErrorCode;
 import com.iqb.programmingbank.constant.CommonConstant;
+import com.iqb.programmingbank.constant.RedisConstant;
+import com.iqb.programmingbank.essync.EsWriteBehindQueue;
 import com.iqb.programmingbank.exception.BusinessException;
 import com.iqb.programmingbank.exception.ThrowUtils;
+import com.iqb.programmingbank.manager.MultiLevelCacheManager;
+import com.iqb.programmingbank.manager.SearchCacheManager;
 import com.iqb.programmingbank.mapper.QuestionBankQuestionMapper;
 import com.iqb.programmingbank.model.dto.questionBankQuestion.QuestionBankQuestionQueryRequest;
 import com.iqb.programmingbank.model.entity.Question;
 import com.iqb.programmingbank.model.entity.QuestionBank;
 import com.iqb.programmingbank.model.entity.QuestionBankQuestion;
 import com.iqb.programmingbank.model.entity.User;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
 import com.iqb.programmingbank.model.vo.QuestionBankQuestionVO;
 import com.iqb.programmingbank.model.vo.UserVO;
 import com.iqb.programmingbank.service.QuestionBankQuestionService;
@@ -25,16 +30,20 @@ import com.iqb.programmingbank.service.UserService;
 import com.iqb.programmingbank.utils.SqlUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ObjectUtils;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.aop.framework.AopContext;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -64,6 +73,15 @@ public class QuestionBankQuestionServiceImpl extends ServiceImpl<QuestionBankQue
     @Resource
     private QuestionBankService questionBankService;
 
+    @Resource
+    private MultiLevelCacheManager multiLevelCacheManager;
+
+    @Resource
+    private EsWriteBehindQueue esWriteBehindQueue;
+
+    @Resource
+    private SearchCacheManager searchCacheManager;
+
     /**
      * 校验数据
      *
@@ -150,11 +168,7 @@ public class QuestionBankQuestionServiceImpl extends ServiceImpl<QuestionBankQue
         // region 可选
         // 1. 关联查询用户信息
         Long userId = questionBankQuestion.getUserId();
-        User user = null;
-        if (userId != null && userId > 0) {
-            user = userService.getById(userId);
-        }
-        UserVO userVO = userService.getUserVO(user);
+        UserVO userVO = userService.getUserVOById(userId);
         questionBankQuestionVO.setUser(userVO);
         // endregion
 
@@ -184,17 +198,9 @@ public class QuestionBankQuestionServiceImpl extends ServiceImpl<QuestionBankQue
         // region 可选
         // 1. 关联查询用户信息
         Set<Long> userIdSet = questionBankQuestionList.stream().map(QuestionBankQuestion::getUserId).collect(Collectors.toSet());
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
+        Map<Long, UserVO> userIdUserVOMap = userService.getUserVOMap(userIdSet);
         // 填充信息
-        questionBankQuestionVOList.forEach(questionBankQuestionVO -> {
-            Long userId = questionBankQuestionVO.getUserId();
-            User user = null;
-            if (userIdUserListMap.containsKey(userId)) {
-                user = userIdUserListMap.get(userId).get(0);
-            }
-            questionBankQuestionVO.setUser(userService.getUserVO(user));
-        });
+        questionBankQuestionVOList.forEach(questionBankQuestionVO -> questionBankQuestionVO.setUser(userIdUserVOMap.get(questionBankQuestionVO.getUserId())));
         // endregion
 
         questionBankQuestionVOPage.setRecords(questionBankQuestionVOList);
@@ -275,10 +281,15 @@ public class QuestionBankQuestionServiceImpl extends ServiceImpl<QuestionBankQue
             }, customExecutor);
             futures.add(future);
         }
-        // 等待所有批次完成操作
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-        // 关闭线程池
-        customExecutor.shutdown();
+        try {
+            // 等待所有批次完成操作
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            // 关闭线程池
+            customExecutor.shutdown();
+            // 题库成员变化（部分批次失败时也可能已写入）
+            onBankQuestionsChanged(questionBankId, validQuestionIdList);
+        }
     }
 
     /**
@@ -326,7 +337,59 @@ public class QuestionBankQuestionServiceImpl extends ServiceImpl<QuestionBankQue
             boolean result = this.remove(lambdaQueryWrapper);
             ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "failed to remove questions from the question bank");
         }
+        // 题库成员变化，事务提交后处理
+        onBankQuestionsChanged(questionBankId, questionIdList);
     }
 
+    /**
+     * 获取题库内所有题目 id 的位图
+     *
+     * @param questionBankId
+     * @return
+     */
+    @Override
+    public RoaringBitmap getQuestionIdBitmap(long questionBankId) {
+        // 与题库详情共用 key 前缀，题库成员变化时随 invalidateQuestionBankDetailCache 一起失效
+        return multiLevelCacheManager.get(RedisConstant.getBankQuestionIdsKey(questionBankId), () -> {
+            LambdaQueryWrapper<QuestionBankQuestion> lambdaQueryWrapper = Wrappers.lambdaQuery(QuestionBankQuestion.class)
+                    .select(QuestionBankQuestion::getQuestionId)
+                    .eq(QuestionBankQuestion::getQuestionBankId, questionBankId);
+            RoaringBitmap questionIdBitmap = new RoaringBitmap();
+            for (Object questionId : this.listObjs(lambdaQueryWrapper)) {
+                long id = ((Number) questionId).longValue();
+                if (id > Integer.MAX_VALUE) {
+                    // 题目 id 为自增主键，正常不会超出 int 范围
+                    log.warn("question id out of bitmap range, questionBankId: {}, questionId: {}", questionBankId, id);
+                    return null;
+                }
+                questionIdBitmap.add((int) id);
+            }
+            questionIdBitmap.runOptimize();
+            return questionIdBitmap;
+        });
+    }
 
+    /**
+     * 题库成员变化后处理
+     *
+     * @param questionBankId
+     * @param questionIdList
+     */
+    @Override
+    public void onBankQuestionsChanged(long questionBankId, Collection<Long> questionIdList) {
+        questionBankService.invalidateQuestionBankDetailCache(questionBankId);
+        // ES 文档中冗余了所属题库 id，需要重新写入
+        esWriteBehindQueue.enqueue(EsSyncEntityTypeEnum.QUESTION, questionIdList);
+        // 本地索引按题库过滤时直接读数据库中的题库关系，提交后马上失效题目搜索缓存
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    searchCacheManager.invalidate(EsSyncEntityTypeEnum.QUESTION);
+                }
+            });
+            return;
+        }
+        searchCacheManager.invalidate(EsSyncEntityTypeEnum.QUESTION);
+    }
 }
@@ -6,20 +6,24 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.iqb.programmingbank.common.ErrorCode;
 import com.iqb.programmingbank.constant.CommonConstant;
+import com.iqb.programmingbank.constant.RedisConstant;
 import com.iqb.programmingbank.exception.ThrowUtils;
+import com.iqb.programmingbank.manager.MultiLevelCacheManager;
 import com.iqb.programmingbank.mapper.QuestionBankMapper;
 import com.iqb.programmingbank.model.dto.questionBank.QuestionBankQueryRequest;
 import com.iqb.programmingbank.model.entity.QuestionBank;
-import com.iqb.programmingbank.model.entity.User;
 import com.iqb.programmingbank.model.vo.QuestionBankVO;
 import com.iqb.programmingbank.model.vo.UserVO;
 import com.iqb.programmingbank.service.QuestionBankService;
 import com.iqb.programmingbank.service.UserService;
+import com.iqb.programmingbank.utils.CursorPageUtils;
 import com.iqb.programmingbank.utils.SqlUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -41,6 +45,9 @@ public class QuestionBankServiceImpl extends ServiceImpl<QuestionBankMapper, Que
     @Resource
     private UserService userService;
 
+    @Resource
+    private MultiLevelCacheManager multiLevelCacheManager;
+
     /**
      * 校验数据
      *
@@ -126,11 +133,7 @@ public class QuestionBankServiceImpl extends ServiceImpl<QuestionBankMapper, Que
         // region 可选
         // 1. 关联查询用户信息
         Long userId = questionBank.getUserId();
-        User user = null;
-        if (userId != null && userId > 0) {
-            user = userService.getById(userId);
-        }
-        UserVO userVO = userService.getUserVO(user);
+        UserVO userVO = userService.getUserVOById(userId);
         questionBankVO.setUser(userVO);
         // endregion
 
@@ -147,7 +150,7 @@ public class QuestionBankServiceImpl extends ServiceImpl<QuestionBankMapper, Que
     @Override
     public Page<QuestionBankVO> getQuestionBankVOPage(Page<QuestionBank> questionBankPage, HttpServletRequest request) {
         List<QuestionBank> questionBankList = questionBankPage.getRecords();
-        Page<QuestionBankVO> questionBankVOPage = new Page<>(questionBankPage.getCurrent(), questionBankPage.getSize(), questionBankPage.getTotal());
+        Page<QuestionBankVO> questionBankVOPage = CursorPageUtils.newPage(questionBankPage);
         if (CollUtil.isEmpty(questionBankList)) {
             return questionBankVOPage;
         }
@@ -160,21 +163,33 @@ public class QuestionBankServiceImpl extends ServiceImpl<QuestionBankMapper, Que
         // region 可选
         // 1. 关联查询用户信息
         Set<Long> userIdSet = questionBankList.stream().map(QuestionBank::getUserId).collect(Collectors.toSet());
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
+        Map<Long, UserVO> userIdUserVOMap = userService.getUserVOMap(userIdSet);
         // 填充信息
-        questionBankVOList.forEach(questionBankVO -> {
-            Long userId = questionBankVO.getUserId();
-            User user = null;
-            if (userIdUserListMap.containsKey(userId)) {
-                user = userIdUserListMap.get(userId).get(0);
-            }
-            questionBankVO.setUser(userService.getUserVO(user));
-        });
+        questionBankVOList.forEach(questionBankVO -> questionBankVO.setUser(userIdUserVOMap.get(questionBankVO.getUserId())));
         // endregion
 
         questionBankVOPage.setRecords(questionBankVOList);
         return questionBankVOPage;
     }
 
+    /**
+     * 失效题库详情缓存（有事务时在提交后执行，避免提交前被并发请求用旧数据回填）
+     *
+     * @param questionBankId
+     */
+    @Override
+    public void invalidateQuestionBankDetailCache(long questionBankId) {
+        String keyPrefix = RedisConstant.getBankDetailKeyPrefix(questionBankId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    multiLevelCacheManager.evictByPrefix(keyPrefix);
+                }
+            });
+            return;
+        }
+        multiLevelCacheManager.evictByPrefix(keyPrefix);
+    }
+
 }
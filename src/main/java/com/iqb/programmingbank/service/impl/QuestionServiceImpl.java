@@ -1,5 +1,6 @@
 package com.iqb.programmingbank.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
@@ -9,21 +10,38 @@ import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.config.AiConfig;
+import com.iqb.programmingbank.config.LocalSearchConfig;
+import com.iqb.programmingbank.config.MysqlSearchConfig;
+import com.iqb.programmingbank.config.TagIndexConfig;
 import com.iqb.programmingbank.constant.CommonConstant;
+import com.iqb.programmingbank.constant.HotKeyConstant;
+import com.iqb.programmingbank.essync.EsWriteBehindQueue;
 import com.iqb.programmingbank.exception.BusinessException;
 import com.iqb.programmingbank.exception.ThrowUtils;
+import com.iqb.programmingbank.hotkey.LocalHotKeyStore;
+import com.iqb.programmingbank.localsearch.LocalQuestionIndex;
 import com.iqb.programmingbank.manager.AiManager;
+import com.iqb.programmingbank.manager.EsSearchManager;
+import com.iqb.programmingbank.manager.SearchCacheManager;
 import com.iqb.programmingbank.mapper.QuestionMapper;
 import com.iqb.programmingbank.model.dto.question.QuestionEsDTO;
 import com.iqb.programmingbank.model.dto.question.QuestionQueryRequest;
+import com.iqb.programmingbank.model.dto.question.QuestionTagFacetRequest;
 import com.iqb.programmingbank.model.entity.Question;
 import com.iqb.programmingbank.model.entity.QuestionBankQuestion;
 import com.iqb.programmingbank.model.entity.User;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
 import com.iqb.programmingbank.model.vo.QuestionVO;
+import com.iqb.programmingbank.model.vo.TagFacetVO;
 import com.iqb.programmingbank.model.vo.UserVO;
 import com.iqb.programmingbank.service.QuestionBankQuestionService;
+import com.iqb.programmingbank.service.QuestionBankService;
 import com.iqb.programmingbank.service.QuestionService;
 import com.iqb.programmingbank.service.UserService;
+import com.iqb.programmingbank.suggest.QuestionSuggester;
+import com.iqb.programmingbank.tag.QuestionTagIndex;
+import com.iqb.programmingbank.utils.CursorPageUtils;
 import com.iqb.programmingbank.utils.SqlUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ObjectUtils;
@@ -33,18 +51,22 @@ import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.sort.SortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.elasticsearch.core.SearchHit;
-import org.springframework.data.elasticsearch.core.SearchHits;
-import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
-import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -64,11 +86,45 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
     private QuestionBankQuestionService questionBankQuestionService;
 
     @Resource
-    private ElasticsearchRestTemplate elasticsearchRestTemplate;
+    private LocalHotKeyStore localHotKeyStore;
+
+    @Resource
+    @Lazy
+    private QuestionBankService questionBankService;
+
+    @Resource
+    private EsWriteBehindQueue esWriteBehindQueue;
+
+    @Resource
+    private SearchCacheManager searchCacheManager;
+
+    @Resource
+    private EsSearchManager esSearchManager;
+
+    @Resource
+    private QuestionSuggester questionSuggester;
+
+    @Resource
+    private LocalQuestionIndex localQuestionIndex;
+
+    @Resource
+    private LocalSearchConfig localSearchConfig;
+
+    @Resource
+    private MysqlSearchConfig mysqlSearchConfig;
+
+    @Resource
+    private QuestionTagIndex questionTagIndex;
+
+    @Resource
+    private TagIndexConfig tagIndexConfig;
 
     @Resource
     private AiManager aiManager;
 
+    @Resource
+    private AiConfig aiConfig;
+
     /**
      * 校验数据
      *
@@ -96,6 +152,73 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         }
     }
 
+    /**
+     * 以下写操作在成功后通知题目变更（事务提交后生效）
+     */
+    @Override
+    public boolean save(Question entity) {
+        boolean result = super.save(entity);
+        if (result) {
+            onQuestionsChanged(Collections.singletonList(entity.getId()));
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean saveBatch(Collection<Question> entityList, int batchSize) {
+        boolean result = super.saveBatch(entityList, batchSize);
+        if (result) {
+            onQuestionsChanged(entityList.stream()
+                    .map(Question::getId)
+                    .collect(Collectors.toList()));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean updateById(Question entity) {
+        boolean result = super.updateById(entity);
+        if (result) {
+            onQuestionsChanged(Collections.singletonList(entity.getId()));
+            invalidateQuestionBankDetailCache(Collections.singletonList(entity.getId()));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean result = super.removeById(id);
+        if (result) {
+            List<Long> questionIdList = Collections.singletonList(Long.valueOf(id.toString()));
+            onQuestionsChanged(questionIdList);
+            invalidateQuestionBankDetailCache(questionIdList);
+        }
+        return result;
+    }
+
+    /**
+     * 题目变更后同步到 ES、搜索补全和标签索引
+     */
+    private void onQuestionsChanged(List<Long> questionIdList) {
+        esWriteBehindQueue.enqueue(EsSyncEntityTypeEnum.QUESTION, questionIdList);
+        questionSuggester.refresh(questionIdList);
+        questionTagIndex.refresh(questionIdList);
+    }
+
+    /**
+     * 题目修改或删除后，失效所属题库的详情缓存（详情中带有题目列表）
+     */
+    private void invalidateQuestionBankDetailCache(List<Long> questionIdList) {
+        LambdaQueryWrapper<QuestionBankQuestion> bankQueryWrapper = Wrappers.lambdaQuery(QuestionBankQuestion.class)
+                .select(QuestionBankQuestion::getQuestionBankId)
+                .in(QuestionBankQuestion::getQuestionId, questionIdList);
+        questionBankQuestionService.list(bankQueryWrapper).stream()
+                .map(QuestionBankQuestion::getQuestionBankId)
+                .distinct()
+                .forEach(questionBankService::invalidateQuestionBankDetailCache);
+    }
+
     /**
      * 获取查询条件
      *
@@ -122,17 +245,35 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         // todo 补充需要的查询条件
         // 从多字段中搜索
         if (StringUtils.isNotBlank(searchText)) {
-            // 需要拼接查询条件
-            queryWrapper.and(qw -> qw.like("title", searchText).or().like("content", searchText));
+            if (canUseFulltext(searchText)) {
+                queryWrapper.apply(QuestionMapper.MATCH_TITLE_CONTENT_SQL, toFulltextPhrase(searchText));
+            } else {
+                // 需要拼接查询条件
+                queryWrapper.and(qw -> qw.like("title", searchText).or().like("content", searchText));
+            }
         }
         // 模糊查询
-        queryWrapper.like(StringUtils.isNotBlank(title), "title", title);
-        queryWrapper.like(StringUtils.isNotBlank(content), "content", content);
-        queryWrapper.like(StringUtils.isNotBlank(answer), "answer", answer);
-        // JSON 数组查询
-        if (CollUtil.isNotEmpty(tagList)) {
+        applyTextMatch(queryWrapper, "title", QuestionMapper.MATCH_TITLE_SQL, title);
+        applyTextMatch(queryWrapper, "content", QuestionMapper.MATCH_CONTENT_SQL, content);
+        applyTextMatch(queryWrapper, "answer", QuestionMapper.MATCH_ANSWER_SQL, answer);
+        // 标签查询：命中的题目不多时直接按位图中的 id 过滤
+        RoaringBitmap tagQuestionIdBitmap = getTagQuestionIdBitmap(tagList);
+        if (tagQuestionIdBitmap != null) {
+            if (tagQuestionIdBitmap.isEmpty()) {
+                queryWrapper.apply("1 = 0");
+            } else {
+                List<Long> questionIdList = new ArrayList<>(tagQuestionIdBitmap.getCardinality());
+                tagQuestionIdBitmap.forEach((int questionId) -> questionIdList.add((long) questionId));
+                queryWrapper.in("id", questionIdList);
+            }
+        } else if (CollUtil.isNotEmpty(tagList)) {
             for (String tag : tagList) {
-                queryWrapper.like("tags", "\"" + tag + "\"");
+                if (mysqlSearchConfig.isTagTableEnabled()) {
+                    queryWrapper.apply(QuestionMapper.HAS_TAG_SQL, tag);
+                } else {
+                    // JSON 数组查询
+                    queryWrapper.like("tags", "\"" + tag + "\"");
+                }
             }
         }
         // 精确查询
@@ -146,6 +287,48 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         return queryWrapper;
     }
 
+    /**
+     * 从标签位图索引计算包含全部标签的题目
+     *
+     * @return 标签为空、索引不可用或命中的题目太多时返回 null（按标签条件查询）
+     */
+    private RoaringBitmap getTagQuestionIdBitmap(List<String> tagList) {
+        if (CollUtil.isEmpty(tagList) || !questionTagIndex.isReady()) {
+            return null;
+        }
+        RoaringBitmap tagQuestionIdBitmap = questionTagIndex.and(tagList);
+        return tagQuestionIdBitmap.getCardinality() > tagIndexConfig.getMaxFilterIds() ? null : tagQuestionIdBitmap;
+    }
+
+    /**
+     * 单字段关键词匹配，能走全文索引时使用 match，否则使用 like
+     */
+    private void applyTextMatch(QueryWrapper<Question> queryWrapper, String column, String matchSql, String text) {
+        if (StringUtils.isBlank(text)) {
+            return;
+        }
+        if (canUseFulltext(text)) {
+            queryWrapper.apply(matchSql, toFulltextPhrase(text));
+        } else {
+            queryWrapper.like(column, text);
+        }
+    }
+
+    /**
+     * 关键词短于 ngram 词元长度时全文索引查不到，只能 like
+     */
+    private boolean canUseFulltext(String text) {
+        return mysqlSearchConfig.isFulltextEnabled()
+                && text.trim().length() >= mysqlSearchConfig.getNgramTokenSize();
+    }
+
+    /**
+     * 转为短语检索（ngram 词元必须连续出现，结果与 like 基本一致）
+     */
+    private static String toFulltextPhrase(String text) {
+        return "\"" + text.trim().replace('"', ' ') + "\"";
+    }
+
     /**
      * 获取题目封装
      *
@@ -162,11 +345,7 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         // region 可选
         // 1. 关联查询用户信息
         Long userId = question.getUserId();
-        User user = null;
-        if (userId != null && userId > 0) {
-            user = userService.getById(userId);
-        }
-        UserVO userVO = userService.getUserVO(user);
+        UserVO userVO = userService.getUserVOById(userId);
         questionVO.setUser(userVO);
         // endregion
         return questionVO;
@@ -182,7 +361,7 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
     @Override
     public Page<QuestionVO> getQuestionVOPage(Page<Question> questionPage, HttpServletRequest request) {
         List<Question> questionList = questionPage.getRecords();
-        Page<QuestionVO> questionVOPage = new Page<>(questionPage.getCurrent(), questionPage.getSize(), questionPage.getTotal());
+        Page<QuestionVO> questionVOPage = CursorPageUtils.newPage(questionPage);
         if (CollUtil.isEmpty(questionList)) {
             return questionVOPage;
         }
@@ -195,17 +374,9 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         // region 可选
         // 1. 关联查询用户信息
         Set<Long> userIdSet = questionList.stream().map(Question::getUserId).collect(Collectors.toSet());
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
+        Map<Long, UserVO> userIdUserVOMap = userService.getUserVOMap(userIdSet);
         // 填充信息
-        questionVOList.forEach(questionVO -> {
-            Long userId = questionVO.getUserId();
-            User user = null;
-            if (userIdUserListMap.containsKey(userId)) {
-                user = userIdUserListMap.get(userId).get(0);
-            }
-            questionVO.setUser(userService.getUserVO(user));
-        });
+        questionVOList.forEach(questionVO -> questionVO.setUser(userIdUserVOMap.get(questionVO.getUserId())));
         // endregion
 
         questionVOPage.setRecords(questionVOList);
@@ -222,32 +393,16 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
 
         questionQueryRequest.setUserId(userId);
 
-        long current = questionQueryRequest.getCurrent();
-        long size = questionQueryRequest.getPageSize();
         // 题目表的查询条件
         QueryWrapper<Question> queryWrapper = this.getQueryWrapper(questionQueryRequest);
         // 根据题库查询题目列表接口
         Long questionBankId = questionQueryRequest.getQuestionBankId();
         if (questionBankId != null) {
-            // 查询题库内的题目 id
-            LambdaQueryWrapper<QuestionBankQuestion> lambdaQueryWrapper = Wrappers.lambdaQuery(QuestionBankQuestion.class)
-                    .select(QuestionBankQuestion::getQuestionId)
-                    .eq(QuestionBankQuestion::getQuestionBankId, questionBankId);
-            List<QuestionBankQuestion> questionList = questionBankQuestionService.list(lambdaQueryWrapper);
-            if (CollUtil.isNotEmpty(questionList)) {
-                // 取出题目 id 集合
-                Set<Long> questionIdSet = questionList.stream()
-                        .map(QuestionBankQuestion::getQuestionId)
-                        .collect(Collectors.toSet());
-                // 复用原有题目表的查询条件
-                queryWrapper.in("id", questionIdSet);
-            } else {
-                // 题库为空，则返回空列表
-                return new Page<>(current, size, 0);
-            }
+            // 半连接题库题目关联表，不再把题库内的题目 id 全部查出来拼成 in 条件
+            queryWrapper.apply(QuestionMapper.IN_QUESTION_BANK_SQL, questionBankId);
         }
         // 查询数据库
-        Page<Question> questionPage = this.page(new Page<>(current, size), queryWrapper);
+        Page<Question> questionPage = CursorPageUtils.page(this, queryWrapper, questionQueryRequest);
         return questionPage;
     }
 
@@ -260,32 +415,16 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
     public Page<Question> listQuestionByPage(QuestionQueryRequest questionQueryRequest) {
 
 
-        long current = questionQueryRequest.getCurrent();
-        long size = questionQueryRequest.getPageSize();
         // 题目表的查询条件
         QueryWrapper<Question> queryWrapper = this.getQueryWrapper(questionQueryRequest);
         // 根据题库查询题目列表接口
         Long questionBankId = questionQueryRequest.getQuestionBankId();
         if (questionBankId != null) {
-            // 查询题库内的题目 id
-            LambdaQueryWrapper<QuestionBankQuestion> lambdaQueryWrapper = Wrappers.lambdaQuery(QuestionBankQuestion.class)
-                    .select(QuestionBankQuestion::getQuestionId)
-                    .eq(QuestionBankQuestion::getQuestionBankId, questionBankId);
-            List<QuestionBankQuestion> questionList = questionBankQuestionService.list(lambdaQueryWrapper);
-            if (CollUtil.isNotEmpty(questionList)) {
-                // 取出题目 id 集合
-                Set<Long> questionIdSet = questionList.stream()
-                        .map(QuestionBankQuestion::getQuestionId)
-                        .collect(Collectors.toSet());
-                // 复用原有题目表的查询条件
-                queryWrapper.in("id", questionIdSet);
-            } else {
-                // 题库为空，则返回空列表
-                return new Page<>(current, size, 0);
-            }
+            // 半连接题库题目关联表，不再把题库内的题目 id 全部查出来拼成 in 条件
+            queryWrapper.apply(QuestionMapper.IN_QUESTION_BANK_SQL, questionBankId);
         }
         // 查询数据库
-        Page<Question> questionPage = this.page(new Page<>(current, size), queryWrapper);
+        Page<Question> questionPage = CursorPageUtils.page(this, queryWrapper, questionQueryRequest);
         return questionPage;
     }
 
@@ -297,16 +436,126 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
      */
     @Override
     public Page<Question> searchFromEs(QuestionQueryRequest questionQueryRequest) {
+        // 热门搜索直接走本地缓存，索引有写入时整体失效
+        String queryKey = SearchCacheManager.buildQueryKey(
+                questionQueryRequest.getId(),
+                questionQueryRequest.getNotId(),
+                SearchCacheManager.normalizeText(questionQueryRequest.getSearchText()),
+                SearchCacheManager.normalizeTags(questionQueryRequest.getTags()),
+                questionQueryRequest.getQuestionBankId(),
+                questionQueryRequest.getUserId(),
+                questionQueryRequest.getCurrent(),
+                questionQueryRequest.getPageSize(),
+                questionQueryRequest.getSortField(),
+                questionQueryRequest.getSortOrder(),
+                questionQueryRequest.getCursor(),
+                questionQueryRequest.getSearchCount());
+        Page<Question> cachedPage;
+        try {
+            cachedPage = searchCacheManager.get(EsSyncEntityTypeEnum.QUESTION, queryKey, () -> doSearchFromEs(questionQueryRequest));
+        } catch (BusinessException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // ES 不可用时降级到本地索引，降级结果不进入搜索缓存（ES 恢复后立即使用 ES 结果）
+            if (!localQuestionIndex.isReady()) {
+                throw e;
+            }
+            log.warn("search question from es failed, fallback to local index", e);
+            return searchFromLocalIndexByBitmap(questionQueryRequest);
+        }
+        // 复制一份返回，调用方修改分页或题目时不影响缓存中的对象
+        Page<Question> page = CursorPageUtils.newPage(cachedPage);
+        page.setRecords(cachedPage.getRecords().stream()
+                .map(question -> BeanUtil.copyProperties(question, Question.class))
+                .collect(Collectors.toList()));
+        return page;
+    }
+
+    /**
+     * 从本地索引查询题目
+     *
+     * @param questionQueryRequest
+     * @return
+     */
+    @Override
+    public Page<Question> searchFromLocalIndex(QuestionQueryRequest questionQueryRequest) {
+        if (!localQuestionIndex.isReady()) {
+            return null;
+        }
+        RoaringBitmap questionIdBitmap = null;
+        if (questionQueryRequest.getQuestionBankId() != null) {
+            questionIdBitmap = questionBankQuestionService.getQuestionIdBitmap(questionQueryRequest.getQuestionBankId());
+            if (questionIdBitmap == null) {
+                return null;
+            }
+        }
+        return localQuestionIndex.search(questionQueryRequest, questionIdBitmap);
+    }
+
+    /**
+     * 题目标签分面计数
+     *
+     * @param questionTagFacetRequest
+     * @return
+     */
+    @Override
+    public List<TagFacetVO> listQuestionTagFacets(QuestionTagFacetRequest questionTagFacetRequest) {
+        ThrowUtils.throwIf(!questionTagIndex.isReady(), ErrorCode.OPERATION_ERROR, "tag index not ready");
+        ThrowUtils.throwIf(questionTagFacetRequest.getSize() <= 0, ErrorCode.PARAMS_ERROR);
+        // 参与计数的题目 = 全部标签 ∩ 任意标签 ∩ 题库
+        RoaringBitmap filter = questionTagIndex.and(questionTagFacetRequest.getTags());
+        RoaringBitmap anyTagBitmap = questionTagIndex.or(questionTagFacetRequest.getAnyTags());
+        if (anyTagBitmap != null) {
+            filter = filter == null ? anyTagBitmap : RoaringBitmap.and(filter, anyTagBitmap);
+        }
+        if (questionTagFacetRequest.getQuestionBankId() != null) {
+            RoaringBitmap bankBitmap = questionBankQuestionService.getQuestionIdBitmap(questionTagFacetRequest.getQuestionBankId());
+            ThrowUtils.throwIf(bankBitmap == null, ErrorCode.OPERATION_ERROR, "question bank filter unavailable");
+            filter = filter == null ? bankBitmap : RoaringBitmap.and(filter, bankBitmap);
+        }
+        Map<String, Integer> facetMap = questionTagIndex.facets(filter, questionTagFacetRequest.getSize());
+        return facetMap.entrySet().stream().map(entry -> {
+            TagFacetVO tagFacetVO = new TagFacetVO();
+            tagFacetVO.setTag(entry.getKey());
+            tagFacetVO.setCount(entry.getValue());
+            return tagFacetVO;
+        }).collect(Collectors.toList());
+    }
+
+    private Page<Question> doSearchFromEs(QuestionQueryRequest questionQueryRequest) {
+        // 配置为优先本地搜索时不访问 ES
+        if (localSearchConfig.isEnabled() && localSearchConfig.isPrimary()) {
+            return searchFromLocalIndexByBitmap(questionQueryRequest);
+        }
+        return searchFromEsIndex(questionQueryRequest);
+    }
+
+    /**
+     * 本地索引中没有题库信息，用题库的题目 id 位图过滤，标签条件用位图索引求交集
+     */
+    private Page<Question> searchFromLocalIndexByBitmap(QuestionQueryRequest questionQueryRequest) {
+        RoaringBitmap questionIdBitmap = null;
+        if (questionQueryRequest.getQuestionBankId() != null) {
+            questionIdBitmap = questionBankQuestionService.getQuestionIdBitmap(questionQueryRequest.getQuestionBankId());
+            ThrowUtils.throwIf(questionIdBitmap == null, ErrorCode.OPERATION_ERROR, "question bank filter unavailable");
+        }
+        RoaringBitmap tagQuestionIdBitmap = getTagQuestionIdBitmap(questionQueryRequest.getTags());
+        if (tagQuestionIdBitmap != null) {
+            questionIdBitmap = questionIdBitmap == null
+                    ? tagQuestionIdBitmap
+                    : RoaringBitmap.and(questionIdBitmap, tagQuestionIdBitmap);
+        }
+        return localQuestionIndex.search(questionQueryRequest, questionIdBitmap);
+    }
+
+    private Page<Question> searchFromEsIndex(QuestionQueryRequest questionQueryRequest) {
         // 获取参数
         Long id = questionQueryRequest.getId();
         Long notId = questionQueryRequest.getNotId();
         String searchText = questionQueryRequest.getSearchText();
         List<String> tags = questionQueryRequest.getTags();
-        Long questionBankId = questionQueryRequest.getQuestionBankId();
         Long userId = questionQueryRequest.getUserId();
-        // 注意，ES 的起始页为 0
-        int current = questionQueryRequest.getCurrent() - 1;
-        int pageSize = questionQueryRequest.getPageSize();
+        Long questionBankId = questionQueryRequest.getQuestionBankId();
         String sortField = questionQueryRequest.getSortField();
         String sortOrder = questionQueryRequest.getSortOrder();
 
@@ -323,8 +572,9 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         if (userId != null) {
             boolQueryBuilder.filter(QueryBuilders.termQuery("userId", userId));
         }
+        // 文档中冗余了所属题库 id，单个 term 过滤即可
         if (questionBankId != null) {
-            boolQueryBuilder.filter(QueryBuilders.termQuery("questionBankId", questionBankId));
+            boolQueryBuilder.filter(QueryBuilders.termQuery("questionBankIds", questionBankId));
         }
         // 必须包含所有标签
         if (CollUtil.isNotEmpty(tags)) {
@@ -346,26 +596,14 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
             sortBuilder = SortBuilders.fieldSort(sortField);
             sortBuilder.order(CommonConstant.SORT_ORDER_ASC.equals(sortOrder) ? SortOrder.ASC : SortOrder.DESC);
         }
-        // 分页
-        PageRequest pageRequest = PageRequest.of(current, pageSize);
-        // 构造查询
-        NativeSearchQuery searchQuery = new NativeSearchQueryBuilder()
-                .withQuery(boolQueryBuilder)
-                .withPageable(pageRequest)
-                .withSorts(sortBuilder)
-                .build();
-        SearchHits<QuestionEsDTO> searchHits = elasticsearchRestTemplate.search(searchQuery, QuestionEsDTO.class);
+        // 分页查询（普通分页或 search_after 游标分页）
+        Page<SearchHit<QuestionEsDTO>> searchHitPage = esSearchManager.search(boolQueryBuilder, sortBuilder,
+                questionQueryRequest, QuestionEsDTO.class);
         // 复用 MySQL / MyBatis Plus 的分页对象，封装返回结果
-        Page<Question> page = new Page<>();
-        page.setTotal(searchHits.getTotalHits());
-        List<Question> resourceList = new ArrayList<>();
-        if (searchHits.hasSearchHits()) {
-            List<SearchHit<QuestionEsDTO>> searchHitList = searchHits.getSearchHits();
-            for (SearchHit<QuestionEsDTO> questionEsDTOSearchHit : searchHitList) {
-                resourceList.add(QuestionEsDTO.dtoToObj(questionEsDTOSearchHit.getContent()));
-            }
-        }
-        page.setRecords(resourceList);
+        Page<Question> page = CursorPageUtils.newPage(searchHitPage);
+        page.setRecords(searchHitPage.getRecords().stream()
+                .map(searchHit -> QuestionEsDTO.dtoToObj(searchHit.getContent()))
+                .collect(Collectors.toList()));
         return page;
     }
 
@@ -378,6 +616,7 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
     @Transactional(rollbackFor = Exception.class)
     public void batchDeleteQuestions(List<Long> questionIdList) {
         ThrowUtils.throwIf(CollUtil.isEmpty(questionIdList), ErrorCode.PARAMS_ERROR, "question list to delete cannot be empty");
+        // removeById 中会失效所属题库的详情缓存
         for (Long questionId : questionIdList) {
             boolean result = this.removeById(questionId);
             ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "failed to delete question");
@@ -388,6 +627,7 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
             result = questionBankQuestionService.remove(lambdaQueryWrapper);
             //ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "failed to delete question bank question association");
         }
+        questionIdList.forEach(questionId -> localHotKeyStore.remove(HotKeyConstant.getQuestionDetailKey(questionId)));
     }
 
     /**
@@ -396,10 +636,12 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
      * @param questionType 题目类型，比如 Java
      * @param number       题目数量，比如 10
      * @param user         创建人
-     * @return ture / false
+     * @param progressListener 进度回调（已完成的题解数，题解总数），可为 null
+     * @return 生成的题目（未保存，由调用方一次批量保存）
      */
     @Override
-    public boolean aiGenerateQuestions(String questionType, int number, User user) {
+    public List<Question> aiGenerateQuestions(String questionType, int number, User user,
+                                              BiConsumer<Integer, Integer> progressListener) {
         if (ObjectUtil.hasEmpty(questionType, number, user)) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
         }
@@ -424,31 +666,71 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         List<String> titleList = lines.stream()
                 .map(line -> StrUtil.removePrefix(line, StrUtil.subBefore(line, " ", false))) // 移除序号
                 .map(line -> line.replace("`", "")) // 移除 `
+                .map(String::trim)
+                .filter(StrUtil::isNotBlank)
                 .collect(Collectors.toList());
-        // 5. 保存题目到数据库中
-        List<Question> questionList = titleList.stream().map(title -> {
+        // 5. 并发生成题解（受 AI 调用全局并发上限限制），整体超时或失败的题目跳过
+        List<CompletableFuture<String>> answerFutures = new ArrayList<>(titleList.size());
+        int total = titleList.size();
+        AtomicInteger finished = new AtomicInteger();
+        if (progressListener != null) {
+            progressListener.accept(0, total);
+        }
+        try {
+            for (String title : titleList) {
+                CompletableFuture<String> answerFuture = aiGenerateQuestionAnswerAsync(title);
+                if (progressListener != null) {
+                    answerFuture.whenComplete((answer, e) -> progressListener.accept(finished.incrementAndGet(), total));
+                }
+                answerFutures.add(answerFuture);
+            }
+        } catch (BusinessException e) {
+            // 排队已满，取消已提交的任务
+            answerFutures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+        long deadline = System.currentTimeMillis() + aiConfig.getGenerateTimeoutMillis();
+        List<Question> questionList = new ArrayList<>(titleList.size());
+        for (int i = 0; i < titleList.size(); i++) {
+            String title = titleList.get(i);
+            CompletableFuture<String> answerFuture = answerFutures.get(i);
+            String questionAnswer;
+            try {
+                questionAnswer = answerFuture.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                answerFutures.forEach(future -> future.cancel(true));
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "AI 生成题目被中断");
+            } catch (TimeoutException | ExecutionException e) {
+                answerFuture.cancel(true);
+                log.warn("ai generate question answer failed, title: {}", title, e);
+                continue;
+            }
+            if (StrUtil.isBlank(questionAnswer)) {
+                continue;
+            }
             Question question = new Question();
             question.setTitle(title);
             question.setUserId(user.getId());
             question.setTags("[\"待审核\"]");
-            // 优化点：可以并发生成
-            question.setAnswer(aiGenerateQuestionAnswer(title));
-            return question;
-        }).collect(Collectors.toList());
-        boolean result = this.saveBatch(questionList);
-        if (!result) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "保存题目失败");
+            question.setAnswer(questionAnswer);
+            questionList.add(question);
+        }
+        ThrowUtils.throwIf(questionList.isEmpty(), ErrorCode.OPERATION_ERROR, "AI 生成题解失败");
+        if (questionList.size() < titleList.size()) {
+            log.warn("ai generate questions partially failed, expected: {}, generated: {}",
+                    titleList.size(), questionList.size());
         }
-        return true;
+        return questionList;
     }
 
     /**
-     * AI 生成题解
+     * AI 生成题解（异步）
      *
      * @param questionTitle
      * @return
      */
-    private String aiGenerateQuestionAnswer(String questionTitle) {
+    private CompletableFuture<String> aiGenerateQuestionAnswerAsync(String questionTitle) {
         // 1. 定义系统 Prompt
         String systemPrompt = "你是一位专业的程序员面试官，我会给你一道面试题，请帮我生成详细的题解。要求如下：\n" +
                 "\n" +
@@ -462,13 +744,7 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         // 2. 拼接用户 Prompt
         String userPrompt = String.format("面试题：%s", questionTitle);
         // 3. 调用 AI 生成题解
-        return aiManager.doChat(systemPrompt, userPrompt);
+        return aiManager.doChatAsync(systemPrompt, userPrompt);
     }
 
 }
-
-
-
-
-
-
@@ -5,40 +5,60 @@ import static com.iqb.programmingbank.constant.UserConstant.USER_LOGIN_STATE;
 import cn.dev33.satoken.stp.StpUtil;
 import cn.hutool.core.collection.CollUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.config.PracticeLogConfig;
 import com.iqb.programmingbank.constant.CommonConstant;
 import com.iqb.programmingbank.constant.RedisConstant;
 import com.iqb.programmingbank.exception.BusinessException;
+import com.iqb.programmingbank.exception.ThrowUtils;
 import com.iqb.programmingbank.mapper.UserMapper;
 import com.iqb.programmingbank.model.dto.user.UserQueryRequest;
+import com.iqb.programmingbank.model.dto.user.UserSignInBatchRequest;
+import com.iqb.programmingbank.model.dto.user.UserSignInRecordRequest;
 import com.iqb.programmingbank.model.entity.Question;
 import com.iqb.programmingbank.model.entity.User;
 import com.iqb.programmingbank.model.enums.UserRoleEnum;
 import com.iqb.programmingbank.model.vo.LoginUserVO;
 import com.iqb.programmingbank.model.vo.PracticeRecordVO;
+import com.iqb.programmingbank.model.vo.SignInLeaderboardVO;
+import com.iqb.programmingbank.model.vo.SignInRankVO;
+import com.iqb.programmingbank.model.vo.SignInStatsVO;
 import com.iqb.programmingbank.model.vo.UserVO;
+import com.iqb.programmingbank.practice.PracticeLogStore;
 import com.iqb.programmingbank.satoken.DeviceUtils;
+import com.iqb.programmingbank.signin.SignInAnalytics;
 import com.iqb.programmingbank.service.QuestionService;
 import com.iqb.programmingbank.service.UserService;
 import com.iqb.programmingbank.utils.SqlUtils;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import me.chanjar.weixin.common.bean.WxOAuth2UserInfo;
 import org.apache.commons.lang3.StringUtils;
 import org.redisson.api.RBitSet;
+import org.redisson.api.RTopic;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 /**
  * 用户服务实现
@@ -52,6 +72,15 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Resource
     private RedissonClient redissonClient;
 
+    @Resource
+    private PracticeLogStore practiceLogStore;
+
+    @Resource
+    private PracticeLogConfig practiceLogConfig;
+
+    @Resource
+    private SignInAnalytics signInAnalytics;
+
     @Autowired
     private StringRedisTemplate redisTemplate;
 
@@ -64,6 +93,53 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
      */
     public static final String SALT = "zeden";
 
+    /**
+     * 请求内用户信息缓存的 request attribute 名
+     */
+    private static final String REQUEST_USER_VO_CACHE = "requestUserVOCache";
+
+    /**
+     * 跨节点清除用户缓存的 topic
+     */
+    private static final String USER_CACHE_EVICT_TOPIC = "cache:user:evict";
+
+    /**
+     * 脱敏用户信息本地缓存（进程内共享）
+     */
+    private final Cache<Long, UserVO> userVOCache = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * 登录用户本地缓存（请求鉴权时使用，避免每次请求都查库）
+     */
+    private final Cache<Long, User> loginUserCache = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * 用户缓存版本号，每次失效时递增，防止加载期间的旧数据写回缓存
+     */
+    private final AtomicLong userCacheVersion = new AtomicLong();
+
+    private RTopic userCacheEvictTopic;
+
+    private int userCacheEvictListenerId;
+
+    @PostConstruct
+    public void init() {
+        // 监听其他节点的用户缓存失效通知
+        userCacheEvictTopic = redissonClient.getTopic(USER_CACHE_EVICT_TOPIC, LongCodec.INSTANCE);
+        userCacheEvictListenerId = userCacheEvictTopic.addListener(Long.class, (channel, userId) -> evictLocalUserCache(userId));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        userCacheEvictTopic.removeListener(userCacheEvictListenerId);
+    }
+
     @Override
     public long userRegister(String userAccount, String userPassword, String checkPassword,String email) {
         // 1. 校验
@@ -134,6 +210,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         // 使用 Sa-Token 登录，并指定设备，同端登录互斥
         StpUtil.login(user.getId(), DeviceUtils.getRequestDevice(request));
         StpUtil.getSession().set(USER_LOGIN_STATE, user);
+        loginUserCache.put(user.getId(), user);
         return this.getLoginUserVO(user);
     }
 
@@ -187,9 +264,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
 //        if (currentUser == null || currentUser.getId() == null) {
 //            throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
 //        }
-        // 从数据库查询（追求性能的话可以注释，直接走缓存）
+        // 优先走本地缓存，用户信息变更时失效
 //        long userId = currentUser.getId();
-        User currentUser = this.getById((String) loginUserId);
+        User currentUser = this.getCachedUserById(Long.parseLong(loginUserId.toString()));
         if (currentUser == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
@@ -215,9 +292,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
 //        if (currentUser == null || currentUser.getId() == null) {
 //            return null;
 //        }
-        // 从数据库查询（追求性能的话可以注释，直接走缓存）
+        // 优先走本地缓存，用户信息变更时失效
 //        long userId = currentUser.getId();
-        return this.getById((String) loginUserId);
+        return this.getCachedUserById(Long.parseLong(loginUserId.toString()));
     }
 
     /**
@@ -229,10 +306,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Override
     public boolean isAdmin(HttpServletRequest request) {
         // 仅管理员可查询
-        // 基于 Sa-Token 改造
-        Object userObj = StpUtil.getSession().get(USER_LOGIN_STATE);
+        // 基于 Sa-Token 改造，从登录用户缓存中读取，角色变更后立即生效
 //        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
-        User user = (User) userObj;
+        User user = getLoginUserPermitNull(request);
         return isAdmin(user);
     }
 
@@ -287,6 +363,120 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         return userList.stream().map(this::getUserVO).collect(Collectors.toList());
     }
 
+    @Override
+    public UserVO getUserVOById(Long userId) {
+        if (userId == null || userId <= 0) {
+            return null;
+        }
+        return getUserVOMap(Collections.singletonList(userId)).get(userId);
+    }
+
+    @Override
+    public Map<Long, UserVO> getUserVOMap(Collection<Long> userIds) {
+        Map<Long, UserVO> userVOMap = new HashMap<>();
+        if (CollUtil.isEmpty(userIds)) {
+            return userVOMap;
+        }
+        // 1. 请求内缓存（同一个请求多次组装 VO 时不重复查）
+        Map<Long, UserVO> requestUserVOCache = getRequestUserVOCache();
+        Set<Long> missUserIdSet = new HashSet<>();
+        for (Long userId : userIds) {
+            if (userId == null || userId <= 0) {
+                continue;
+            }
+            UserVO userVO = requestUserVOCache == null ? null : requestUserVOCache.get(userId);
+            if (userVO != null) {
+                userVOMap.put(userId, userVO);
+            } else {
+                missUserIdSet.add(userId);
+            }
+        }
+        if (missUserIdSet.isEmpty()) {
+            return userVOMap;
+        }
+        // 2. 进程内缓存，未命中的 id 合并为一次查询
+        Map<Long, UserVO> loadedUserVOMap = userVOCache.getAll(missUserIdSet, this::loadUserVOMap);
+        userVOMap.putAll(loadedUserVOMap);
+        if (requestUserVOCache != null) {
+            requestUserVOCache.putAll(loadedUserVOMap);
+        }
+        return userVOMap;
+    }
+
+    @Override
+    public User getCachedUserById(long userId) {
+        User user = loginUserCache.getIfPresent(userId);
+        if (user != null) {
+            return copyUser(user);
+        }
+        long version = userCacheVersion.get();
+        user = this.getById(userId);
+        if (user != null) {
+            loginUserCache.put(userId, user);
+            // 加载期间缓存被失效过，丢弃可能过期的数据
+            if (userCacheVersion.get() != version) {
+                loginUserCache.invalidate(userId);
+            }
+            return copyUser(user);
+        }
+        return null;
+    }
+
+    /**
+     * 缓存中的对象在多个请求间共享，调用方拿到的是副本，修改不会影响缓存
+     */
+    private static User copyUser(User user) {
+        User copy = new User();
+        BeanUtils.copyProperties(user, copy);
+        return copy;
+    }
+
+    @Override
+    public void invalidateUserCache(long userId) {
+        evictLocalUserCache(userId);
+        try {
+            userCacheEvictTopic.publish(userId);
+        } catch (Exception e) {
+            log.error("user cache evict publish failed, userId: {}", userId, e);
+        }
+    }
+
+    /**
+     * 批量查询用户并脱敏
+     */
+    private Map<Long, UserVO> loadUserVOMap(Iterable<? extends Long> userIds) {
+        List<Long> userIdList = CollUtil.newArrayList(userIds);
+        return this.listByIds(userIdList).stream()
+                .collect(Collectors.toMap(User::getId, this::getUserVO, (a, b) -> a));
+    }
+
+    private void evictLocalUserCache(Long userId) {
+        userCacheVersion.incrementAndGet();
+        loginUserCache.invalidate(userId);
+        userVOCache.invalidate(userId);
+        Map<Long, UserVO> requestUserVOCache = getRequestUserVOCache();
+        if (requestUserVOCache != null) {
+            requestUserVOCache.remove(userId);
+        }
+    }
+
+    /**
+     * 获取请求内的用户信息缓存，不在请求线程中时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, UserVO> getRequestUserVOCache() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return null;
+        }
+        Map<Long, UserVO> requestUserVOCache = (Map<Long, UserVO>) requestAttributes.getAttribute(REQUEST_USER_VO_CACHE, RequestAttributes.SCOPE_REQUEST);
+        if (requestUserVOCache == null) {
+            requestUserVOCache = new HashMap<>();
+            requestAttributes.setAttribute(REQUEST_USER_VO_CACHE, requestUserVOCache, RequestAttributes.SCOPE_REQUEST);
+        }
+        return requestUserVOCache;
+    }
+
     @Override
     public QueryWrapper<User> getQueryWrapper(UserQueryRequest userQueryRequest) {
         if (userQueryRequest == null) {
@@ -315,31 +505,72 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     /**
      * 添加用户签到记录 - 使用redis的list
      * @param userId 用户 id
-     * @return 当前用户是否已签到成功
+     * @return 当天练习的题目数
      */
     @Override
-    public boolean addUserSignIn(long userId,String questionTitle) {
-        //todo 步骤： 根据日期和当前用户id拼接key ，然后直接rpush，即可
+    public int addUserSignIn(long userId, Long questionId, String questionTitle) {
         LocalDate date = LocalDate.now();
-        //拼接key
-        String recordKey = userId + ":question:" + date.toString();
-
-        //存储详细的题目内容用
-        redisTemplate.opsForSet().add(recordKey,questionTitle);
+        // 记录练习的题目 id（旧版客户端只传标题，按标题索引查出 id）
+        if (questionId == null) {
+            ThrowUtils.throwIf(StringUtils.isBlank(questionTitle), ErrorCode.PARAMS_ERROR);
+            Question question = questionService.getOne(Wrappers.lambdaQuery(Question.class)
+                    .select(Question::getId)
+                    .eq(Question::getTitle, questionTitle)
+                    .last("limit 1"));
+            ThrowUtils.throwIf(question == null, ErrorCode.NOT_FOUND_ERROR, "题目不存在");
+            questionId = question.getId();
+        } else {
+            // 先校验题目存在，避免为不存在的题目写入练习记录
+            ThrowUtils.throwIf(questionId <= 0, ErrorCode.PARAMS_ERROR, "题目 id 非法");
+            long existCount = questionService.count(Wrappers.lambdaQuery(Question.class).eq(Question::getId, questionId));
+            ThrowUtils.throwIf(existCount == 0, ErrorCode.NOT_FOUND_ERROR, "题目不存在");
+        }
+        // 记录题目并设置当天的签到位，一次往返，返回当天练习的题目数
+        return practiceLogStore.record(userId, questionId, date);
+    }
 
-        //显示次数用
-        String key = RedisConstant.getUserSignInRedisKey(date.getYear(), userId);
-        // 获取 Redis 的 BitMap
-        RBitSet signInBitSet = redissonClient.getBitSet(key);
-        // 获取当前日期是一年中的第几天，作为偏移量（从 1 开始计数）
-        int offset = date.getDayOfYear();
-        // 查询当天有没有签到
-        if (!signInBitSet.get(offset)) {
-            // 如果当前未签到，则设置
-            signInBitSet.set(offset, true);
-        }
-        // 当天已签到
-        return true;
+    /**
+     * 批量添加用户签到记录（离线练习后同步）
+     *
+     * @param userId                 用户 id
+     * @param userSignInBatchRequest 练习记录
+     * @return 日期 => 当天练习的题目数
+     */
+    @Override
+    public Map<String, Integer> addUserSignInBatch(long userId, UserSignInBatchRequest userSignInBatchRequest) {
+        ThrowUtils.throwIf(userSignInBatchRequest == null, ErrorCode.PARAMS_ERROR);
+        List<UserSignInRecordRequest> recordList = userSignInBatchRequest.getRecordList();
+        ThrowUtils.throwIf(CollUtil.isEmpty(recordList), ErrorCode.PARAMS_ERROR, "记录为空");
+        ThrowUtils.throwIf(recordList.size() > practiceLogConfig.getMaxBatchRecords(), ErrorCode.PARAMS_ERROR,
+                "记录过多");
+        LocalDate today = LocalDate.now();
+        // 超出保留期的记录写入后马上就会过期
+        LocalDate earliestDate = today.withDayOfMonth(1).minusMonths(practiceLogConfig.getRetentionMonths());
+        Map<LocalDate, Set<Long>> practices = new TreeMap<>();
+        for (UserSignInRecordRequest record : recordList) {
+            ThrowUtils.throwIf(record == null || record.getQuestionId() == null || record.getQuestionId() <= 0,
+                    ErrorCode.PARAMS_ERROR, "题目 id 非法");
+            LocalDate date;
+            if (StringUtils.isBlank(record.getDate())) {
+                date = today;
+            } else {
+                try {
+                    date = LocalDate.parse(record.getDate());
+                } catch (Exception e) {
+                    throw new BusinessException(ErrorCode.PARAMS_ERROR, "invalid date");
+                }
+            }
+            ThrowUtils.throwIf(date.isAfter(today) || date.isBefore(earliestDate), ErrorCode.PARAMS_ERROR,
+                    "日期超出范围");
+            practices.computeIfAbsent(date, key -> new HashSet<>()).add(record.getQuestionId());
+        }
+        // 只记录存在的题目
+        Set<Long> questionIdSet = practices.values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+        long existCount = questionService.count(Wrappers.lambdaQuery(Question.class).in(Question::getId, questionIdSet));
+        ThrowUtils.throwIf(existCount != questionIdSet.size(), ErrorCode.NOT_FOUND_ERROR, "题目不存在");
+        Map<String, Integer> result = new LinkedHashMap<>();
+        practiceLogStore.record(userId, practices).forEach((date, count) -> result.put(date.toString(), count));
+        return result;
     }
 
     /**
@@ -375,24 +606,81 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     //查询每日的题目详情
     @Override
     public PracticeRecordVO getUserSignInInfo(Long userId, String selectedDate) {
-        //todo 步骤： 根据日期和当前用户id拼接key ，然后直接range，即可
-        //拼接key
-        String recordKey = userId + ":question:" + selectedDate;
-
-        Set<String> titles = redisTemplate.opsForSet().members(recordKey);
+        LocalDate date;
+        try {
+            date = LocalDate.parse(selectedDate);
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "invalid date");
+        }
         PracticeRecordVO practiceRecordVO = new PracticeRecordVO();
+        practiceRecordVO.setDate(selectedDate);
+        // 按主键批量查询当天练习的题目
+        long[] questionIds = practiceLogStore.getQuestionIds(userId, date);
+        List<Question> questionList;
+        if (questionIds.length > 0) {
+            questionList = questionService.listByIds(Arrays.stream(questionIds).boxed().collect(Collectors.toList()));
+        } else if (practiceLogConfig.isLegacyFallbackEnabled()) {
+            questionList = getLegacyPracticeQuestions(userId, selectedDate);
+        } else {
+            questionList = Collections.emptyList();
+        }
+        practiceRecordVO.setQuestionList(questionList);
+        practiceRecordVO.setCount(questionList.size());
+        return practiceRecordVO;
+    }
 
-        if(titles != null){
-            //使用MyBatis-Plus从数据库查询题目详情
-            QueryWrapper<Question> queryWrapper = new QueryWrapper<>();
-            queryWrapper.in("title", titles);
-            List<Question> questions = questionService.list(queryWrapper);
-            practiceRecordVO.setQuestionList(questions);
-            practiceRecordVO.setCount(titles.size());
-            practiceRecordVO.setDate(selectedDate);
+    /**
+     * 获取用户某个年份的签到统计
+     *
+     * @param userId 用户 id
+     * @param year   年份（为空表示当前年份）
+     * @return
+     */
+    @Override
+    public SignInStatsVO getUserSignInStats(long userId, Integer year) {
+        if (year == null) {
+            year = LocalDate.now().getYear();
         }
+        return signInAnalytics.getStats(userId, year);
+    }
 
-        return practiceRecordVO;
+    /**
+     * 获取签到排行榜
+     *
+     * @param year   年份（为空表示当前年份）
+     * @param size   返回的名次数
+     * @param userId 当前用户 id（可为空）
+     * @return
+     */
+    @Override
+    public SignInLeaderboardVO getSignInLeaderboard(Integer year, int size, Long userId) {
+        if (year == null) {
+            year = LocalDate.now().getYear();
+        }
+        SignInLeaderboardVO signInLeaderboardVO = signInAnalytics.getLeaderboard(year, size, userId);
+        // 关联查询用户信息
+        List<SignInRankVO> rankVOList = new ArrayList<>(signInLeaderboardVO.getRankList());
+        if (signInLeaderboardVO.getMyRank() != null) {
+            rankVOList.add(signInLeaderboardVO.getMyRank());
+        }
+        Set<Long> userIdSet = rankVOList.stream().map(SignInRankVO::getUserId).collect(Collectors.toSet());
+        Map<Long, UserVO> userIdUserVOMap = this.getUserVOMap(userIdSet);
+        rankVOList.forEach(rankVO -> rankVO.setUser(userIdUserVOMap.get(rankVO.getUserId())));
+        return signInLeaderboardVO;
+    }
+
+    /**
+     * 旧版刷题记录：按日期保存题目标题的 set，按标题查询题目
+     */
+    private List<Question> getLegacyPracticeQuestions(long userId, String selectedDate) {
+        String recordKey = userId + ":question:" + selectedDate;
+        Set<String> titles = redisTemplate.opsForSet().members(recordKey);
+        if (CollUtil.isEmpty(titles)) {
+            return Collections.emptyList();
+        }
+        QueryWrapper<Question> queryWrapper = new QueryWrapper<>();
+        queryWrapper.in("title", titles);
+        return questionService.list(queryWrapper);
     }
 }
 
@@ -0,0 +1,213 @@
+package com.iqb.programmingbank.signin;
+
+import com.iqb.programmingbank.config.SignInAnalyticsConfig;
+import com.iqb.programmingbank.constant.RedisConstant;
+import com.iqb.programmingbank.model.vo.SignInLeaderboardVO;
+import com.iqb.programmingbank.model.vo.SignInRankVO;
+import com.iqb.programmingbank.model.vo.SignInStatsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RLock;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RScoredSortedSetAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.ScoredEntry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 签到统计
+ * <p>
+ * 个人统计：一次 pipeline 读取当年（和上一年）的签到位图原始字节（不到 50 字节），在本地计算连续签到、每月天数。
+ * 排行榜：定时任务用 SCAN 遍历当年所有用户的签到位图，分批 pipeline 执行 BITCOUNT，结果写入临时 zset 后
+ * RENAME 替换快照；查询时一次 pipeline 读取前 N 名和当前用户的名次，与用户数无关。
+ */
+@Slf4j
+@Component
+public class SignInAnalytics {
+
+    private static final String SNAPSHOT_LOCK_KEY = "signin_leaderboard:lock";
+
+    /**
+     * 快照保留时间（天），往年的排行榜保留到下一年
+     */
+    private static final long SNAPSHOT_EXPIRE_DAYS = 400;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private SignInAnalyticsConfig signInAnalyticsConfig;
+
+    /**
+     * 用户某年的签到统计
+     *
+     * @param userId
+     * @param year
+     * @return
+     */
+    public SignInStatsVO getStats(long userId, int year) {
+        LocalDate today = LocalDate.now();
+        boolean currentYear = year == today.getYear();
+        RBatch batch = redissonClient.createBatch();
+        batch.getBucket(RedisConstant.getUserSignInRedisKey(year, userId), ByteArrayCodec.INSTANCE).getAsync();
+        if (currentYear) {
+            batch.getBucket(RedisConstant.getUserSignInRedisKey(year - 1, userId), ByteArrayCodec.INSTANCE).getAsync();
+        }
+        List<?> responses = batch.execute().getResponses();
+        BitSet signIns = SignInStats.fromRedisBitmap((byte[]) responses.get(0));
+
+        SignInStatsVO signInStatsVO = new SignInStatsVO();
+        signInStatsVO.setYear(year);
+        signInStatsVO.setTotalDays(signIns.cardinality());
+        signInStatsVO.setLongestStreak(SignInStats.longestStreak(signIns));
+        if (currentYear) {
+            BitSet lastYearSignIns = SignInStats.fromRedisBitmap((byte[]) responses.get(1));
+            signInStatsVO.setCurrentStreak(SignInStats.currentStreak(signIns, today.getDayOfYear(),
+                    lastYearSignIns, Year.of(year - 1).length()));
+        } else {
+            signInStatsVO.setCurrentStreak(0);
+        }
+        signInStatsVO.setMonthlyCounts(Arrays.stream(SignInStats.monthlyCounts(signIns, year))
+                .boxed()
+                .collect(Collectors.toList()));
+        return signInStatsVO;
+    }
+
+    /**
+     * 读取签到排行榜快照
+     *
+     * @param year
+     * @param size   返回的名次数
+     * @param userId 当前用户 id（可为 null）
+     * @return 不含用户信息
+     */
+    @SuppressWarnings("unchecked")
+    public SignInLeaderboardVO getLeaderboard(int year, int size, Long userId) {
+        size = Math.max(1, Math.min(size, signInAnalyticsConfig.getMaxLeaderboardSize()));
+        RBatch batch = redissonClient.createBatch();
+        RScoredSortedSetAsync<String> leaderboard = batch.getScoredSortedSet(
+                RedisConstant.getSignInLeaderboardKey(year), StringCodec.INSTANCE);
+        leaderboard.entryRangeReversedAsync(0, size - 1);
+        if (userId != null) {
+            leaderboard.revRankAsync(String.valueOf(userId));
+            leaderboard.getScoreAsync(String.valueOf(userId));
+        }
+        BatchResult<?> batchResult = batch.execute();
+        List<?> responses = batchResult.getResponses();
+
+        SignInLeaderboardVO signInLeaderboardVO = new SignInLeaderboardVO();
+        signInLeaderboardVO.setYear(year);
+        List<SignInRankVO> rankList = new ArrayList<>();
+        int rank = 0;
+        for (ScoredEntry<String> entry : (Collection<ScoredEntry<String>>) responses.get(0)) {
+            rankList.add(toRankVO(Long.valueOf(entry.getValue()), ++rank, entry.getScore()));
+        }
+        signInLeaderboardVO.setRankList(rankList);
+        if (userId != null && responses.get(1) != null) {
+            Integer myRank = (Integer) responses.get(1);
+            signInLeaderboardVO.setMyRank(toRankVO(userId, myRank + 1, (Double) responses.get(2)));
+        }
+        return signInLeaderboardVO;
+    }
+
+    /**
+     * 定时生成当年签到排行榜快照（多个节点只有一个执行）
+     */
+    @Scheduled(fixedDelayString = "${sign-in-analytics.snapshot-interval-millis:600000}")
+    public void snapshot() {
+        if (!signInAnalyticsConfig.isLeaderboardEnabled()) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(SNAPSHOT_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            int year = LocalDate.now().getYear();
+            int users = buildSnapshot(year);
+            log.info("sign in leaderboard snapshot built, year: {}, users: {}, cost: {} ms",
+                    year, users, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("sign in leaderboard snapshot failed", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int buildSnapshot(int year) {
+        String leaderboardKey = RedisConstant.getSignInLeaderboardKey(year);
+        RScoredSortedSet<String> building = redissonClient.getScoredSortedSet(
+                RedisConstant.getSignInLeaderboardBuildingKey(year), StringCodec.INSTANCE);
+        building.delete();
+        int users = 0;
+        List<String> keyBatch = new ArrayList<>(signInAnalyticsConfig.getScanBatchSize());
+        Iterable<String> keys = redissonClient.getKeys().getKeysByPattern(
+                RedisConstant.getUserSignInRedisKeyPattern(year), signInAnalyticsConfig.getScanBatchSize());
+        for (String key : keys) {
+            keyBatch.add(key);
+            if (keyBatch.size() >= signInAnalyticsConfig.getScanBatchSize()) {
+                users += countSignIns(keyBatch, building);
+                keyBatch.clear();
+            }
+        }
+        if (!keyBatch.isEmpty()) {
+            users += countSignIns(keyBatch, building);
+        }
+        if (users == 0) {
+            return 0;
+        }
+        building.rename(leaderboardKey);
+        redissonClient.getScoredSortedSet(leaderboardKey, StringCodec.INSTANCE)
+                .expire(SNAPSHOT_EXPIRE_DAYS, TimeUnit.DAYS);
+        return users;
+    }
+
+    /**
+     * 批量 BITCOUNT 后写入快照
+     */
+    private int countSignIns(List<String> keyBatch, RScoredSortedSet<String> building) {
+        RBatch batch = redissonClient.createBatch();
+        for (String key : keyBatch) {
+            batch.getBitSet(key).cardinalityAsync();
+        }
+        List<?> counts = batch.execute().getResponses();
+        Map<String, Double> scoreMap = new HashMap<>(keyBatch.size() * 2);
+        for (int i = 0; i < keyBatch.size(); i++) {
+            long count = (Long) counts.get(i);
+            if (count > 0) {
+                String key = keyBatch.get(i);
+                scoreMap.put(key.substring(key.lastIndexOf(':') + 1), (double) count);
+            }
+        }
+        if (!scoreMap.isEmpty()) {
+            building.addAll(scoreMap);
+        }
+        return scoreMap.size();
+    }
+
+    private static SignInRankVO toRankVO(long userId, int rank, Double days) {
+        SignInRankVO signInRankVO = new SignInRankVO();
+        signInRankVO.setUserId(userId);
+        signInRankVO.setRank(rank);
+        signInRankVO.setDays(days == null ? 0 : days.intValue());
+        return signInRankVO;
+    }
+}
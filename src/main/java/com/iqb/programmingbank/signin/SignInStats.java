@@ -0,0 +1,100 @@
+package com.iqb.programmingbank.signin;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+
+/**
+ * 签到统计（基于年度签到位图，第 n 位表示一年中的第 n 天，从 1 开始）
+ */
+public final class SignInStats {
+
+    private SignInStats() {
+    }
+
+    /**
+     * 截止到某天的当前连续签到天数，当天还没签到时从前一天开始算（连续记录没有中断）
+     *
+     * @param signIns         当年签到位图
+     * @param dayOfYear       截止日期是当年的第几天
+     * @param lastYearSignIns 上一年签到位图（连续签到跨年时使用，可为 null）
+     * @param lastYearDays    上一年的天数
+     * @return
+     */
+    public static int currentStreak(BitSet signIns, int dayOfYear, BitSet lastYearSignIns, int lastYearDays) {
+        int day = signIns.get(dayOfYear) ? dayOfYear : dayOfYear - 1;
+        int streak = countBackward(signIns, day);
+        if (streak == day && lastYearSignIns != null) {
+            // 从 1 月 1 日往前连续
+            streak += countBackward(lastYearSignIns, lastYearDays);
+        }
+        return streak;
+    }
+
+    /**
+     * 最长连续签到天数
+     *
+     * @param signIns 签到位图
+     * @return
+     */
+    public static int longestStreak(BitSet signIns) {
+        int longest = 0;
+        int start = signIns.nextSetBit(1);
+        while (start >= 0) {
+            int end = signIns.nextClearBit(start);
+            longest = Math.max(longest, end - start);
+            start = signIns.nextSetBit(end);
+        }
+        return longest;
+    }
+
+    /**
+     * 每月签到天数
+     *
+     * @param signIns 签到位图
+     * @param year    年份
+     * @return 长度为 12 的数组，下标 0 为 1 月
+     */
+    public static int[] monthlyCounts(BitSet signIns, int year) {
+        int[] counts = new int[12];
+        for (int day = signIns.nextSetBit(1); day >= 0; day = signIns.nextSetBit(day + 1)) {
+            if (day > LocalDate.of(year, 12, 31).getDayOfYear()) {
+                break;
+            }
+            counts[LocalDate.ofYearDay(year, day).getMonthValue() - 1]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Redis 位图的原始字节转为 BitSet（Redis 每个字节的最高位是第 0 位，与 BitSet 相反）
+     *
+     * @param bytes GET 返回的字节，可为 null
+     * @return
+     */
+    public static BitSet fromRedisBitmap(byte[] bytes) {
+        BitSet bitSet = new BitSet();
+        if (bytes == null) {
+            return bitSet;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            for (int j = 0; j < 8; j++) {
+                if ((bytes[i] & (0x80 >>> j)) != 0) {
+                    bitSet.set(i * 8 + j);
+                }
+            }
+        }
+        return bitSet;
+    }
+
+    /**
+     * 从某天往前数连续签到的天数
+     */
+    private static int countBackward(BitSet signIns, int day) {
+        if (day < 1 || !signIns.get(day)) {
+            return 0;
+        }
+        int lastClear = signIns.previousClearBit(day);
+        // 第 0 位不使用，连续到 1 月 1 日时 previousClearBit 为 0 或 -1
+        return day - Math.max(lastClear, 0);
+    }
+}
@@ -0,0 +1,241 @@
+package com.iqb.programmingbank.suggest;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.iqb.programmingbank.config.SuggestConfig;
+import com.iqb.programmingbank.mapper.QuestionMapper;
+import com.iqb.programmingbank.model.entity.Question;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * 题目标题、标签的搜索补全
+ * <p>
+ * 启动时按 id 游标分批从数据库加载所有题目的标题和标签到内存字典树（后台加载，加载完成前返回空），
+ * 题目变更后通过 topic 通知所有节点，各节点重新读取变更的题目，与上次的词条做差量更新；
+ * topic 不保证送达，另外定时与数据库全量对账。
+ * 所有写操作在同一个线程中执行，补全查询不访问 ES 和数据库。
+ */
+@Slf4j
+@Component
+public class QuestionSuggester {
+
+    private static final String ID_SEPARATOR = ",";
+
+    @Resource
+    private SuggestConfig suggestConfig;
+
+    @Resource
+    private QuestionMapper questionMapper;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    private SuggestTrie suggestTrie;
+
+    /**
+     * 题目 id => 已加入字典树的词条（只在更新线程中访问）
+     */
+    private final Map<Long, Set<String>> questionTermsMap = new HashMap<>();
+
+    private ExecutorService updateExecutor;
+
+    private RTopic changeTopic;
+
+    private int changeListenerId;
+
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() {
+        if (!suggestConfig.isEnabled()) {
+            return;
+        }
+        suggestTrie = new SuggestTrie(suggestConfig.getTopK());
+        updateExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "question-suggester");
+            thread.setDaemon(true);
+            return thread;
+        });
+        changeTopic = redissonClient.getTopic(suggestConfig.getChangeTopic(), StringCodec.INSTANCE);
+        changeListenerId = changeTopic.addListener(String.class, (channel, message) -> {
+            List<Long> questionIdList = StrUtil.split(message, ID_SEPARATOR).stream()
+                    .map(Long::valueOf)
+                    .collect(Collectors.toList());
+            updateExecutor.execute(() -> reload(questionIdList));
+        });
+        updateExecutor.execute(this::load);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (updateExecutor == null) {
+            return;
+        }
+        changeTopic.removeListener(changeListenerId);
+        updateExecutor.shutdownNow();
+    }
+
+    /**
+     * 前缀补全
+     *
+     * @param prefix
+     * @param limit
+     * @return 题目标题或标签
+     */
+    public List<String> suggest(String prefix, int limit) {
+        if (!ready) {
+            return Collections.emptyList();
+        }
+        return suggestTrie.suggest(prefix, Math.min(limit, suggestConfig.getTopK()));
+    }
+
+    /**
+     * 题目变更后调用，有事务时在提交后通知所有节点更新
+     *
+     * @param questionIds
+     */
+    public void refresh(Collection<Long> questionIds) {
+        if (updateExecutor == null || CollUtil.isEmpty(questionIds)) {
+            return;
+        }
+        String message = CollUtil.join(questionIds, ID_SEPARATOR);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(message);
+                }
+            });
+            return;
+        }
+        publish(message);
+    }
+
+    /**
+     * 定时全量对账
+     */
+    @Scheduled(initialDelayString = "${suggest.resync-interval-millis:600000}",
+            fixedDelayString = "${suggest.resync-interval-millis:600000}")
+    public void resync() {
+        if (updateExecutor == null) {
+            return;
+        }
+        updateExecutor.execute(this::load);
+    }
+
+    private void publish(String message) {
+        try {
+            changeTopic.publish(message);
+        } catch (Exception e) {
+            log.error("question suggest change publish failed, ids: {}", message, e);
+        }
+    }
+
+    /**
+     * 加载所有题目，并删除数据库中已不存在的题目（首次加载和对账共用）
+     */
+    private void load() {
+        long startTime = System.currentTimeMillis();
+        long lastId = 0;
+        Set<Long> loadedIdSet = new HashSet<>();
+        try {
+            while (true) {
+                LambdaQueryWrapper<Question> queryWrapper = Wrappers.lambdaQuery(Question.class)
+                        .select(Question::getId, Question::getTitle, Question::getTags)
+                        .gt(Question::getId, lastId)
+                        .orderByAsc(Question::getId)
+                        .last("limit " + suggestConfig.getLoadBatchSize());
+                List<Question> questionList = questionMapper.selectList(queryWrapper);
+                if (questionList.isEmpty()) {
+                    break;
+                }
+                for (Question question : questionList) {
+                    apply(question.getId(), getTerms(question));
+                    loadedIdSet.add(question.getId());
+                }
+                lastId = questionList.get(questionList.size() - 1).getId();
+            }
+            // 移除数据库中已删除的题目（加载期间的变更由之后的通知或下次对账补上）
+            new HashSet<>(questionTermsMap.keySet()).stream()
+                    .filter(questionId -> !loadedIdSet.contains(questionId))
+                    .forEach(questionId -> apply(questionId, Collections.emptySet()));
+            ready = true;
+            log.info("question suggester loaded, questions: {}, terms: {}, cost: {} ms",
+                    questionTermsMap.size(), suggestTrie.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("question suggester load failed, last id: {}", lastId, e);
+        }
+    }
+
+    /**
+     * 重新读取变更的题目（包括已删除的）
+     */
+    private void reload(List<Long> questionIdList) {
+        try {
+            Map<Long, Question> questionMap = questionMapper.listQuestionWithDeleteByIds(questionIdList).stream()
+                    .collect(Collectors.toMap(Question::getId, question -> question, (a, b) -> a));
+            for (Long questionId : questionIdList) {
+                Question question = questionMap.get(questionId);
+                boolean deleted = question == null || Integer.valueOf(1).equals(question.getIsDelete());
+                apply(questionId, deleted ? Collections.emptySet() : getTerms(question));
+            }
+        } catch (Exception e) {
+            log.error("question suggester reload failed, ids: {}", questionIdList, e);
+        }
+    }
+
+    /**
+     * 差量更新一个题目的词条（幂等）
+     */
+    private void apply(long questionId, Set<String> newTerms) {
+        Set<String> oldTerms = newTerms.isEmpty()
+                ? questionTermsMap.remove(questionId)
+                : questionTermsMap.put(questionId, newTerms);
+        if (oldTerms != null) {
+            oldTerms.stream().filter(term -> !newTerms.contains(term)).forEach(term -> suggestTrie.add(term, -1));
+        }
+        newTerms.stream()
+                .filter(term -> oldTerms == null || !oldTerms.contains(term))
+                .forEach(term -> suggestTrie.add(term, 1));
+    }
+
+    private static Set<String> getTerms(Question question) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (StrUtil.isNotBlank(question.getTitle())) {
+            terms.add(question.getTitle().trim());
+        }
+        if (JSONUtil.isTypeJSONArray(question.getTags())) {
+            for (String tag : JSONUtil.toList(question.getTags(), String.class)) {
+                if (StrUtil.isNotBlank(tag)) {
+                    terms.add(tag.trim());
+                }
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,216 @@
+package com.iqb.programmingbank.suggest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 前缀补全字典树（线程安全）
+ * <p>
+ * 每个词条带一个权重（出现次数），每个节点预先保存子树中权重最高的 topK 个词条，
+ * 补全时只需沿前缀走到对应节点直接返回，耗时只与前缀长度有关。
+ * 词条增减时只更新路径上的节点：增加时逐个合并，减少时自底向上用 本节点词条 + 子节点的 topK 重新计算。
+ * 匹配不区分大小写，返回第一次加入时的原文。
+ */
+public class SuggestTrie {
+
+    /**
+     * 权重高的在前，权重相同时短的在前，再按字典序
+     */
+    private static final Comparator<Term> TERM_COMPARATOR = Comparator.comparingLong((Term term) -> -term.weight)
+            .thenComparingInt(term -> term.text.length())
+            .thenComparing(term -> term.text);
+
+    private final int topK;
+
+    private final Node root = new Node();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int termCount;
+
+    /**
+     * @param topK 每个节点保存的补全数，即单次补全的最大返回数
+     */
+    public SuggestTrie(int topK) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("topK must be positive");
+        }
+        this.topK = topK;
+    }
+
+    /**
+     * 调整词条权重，权重降到 0 及以下时删除词条
+     *
+     * @param text  词条
+     * @param delta 权重变化
+     */
+    public void add(String text, long delta) {
+        String key = normalize(text);
+        if (key.isEmpty() || delta == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // 1. 找到（或创建）词条所在的节点，记录路径
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    if (delta < 0) {
+                        return;
+                    }
+                    child = new Node();
+                    node.children.put(key.charAt(i), child);
+                }
+                node = child;
+                path.add(node);
+            }
+            Term term = node.term;
+            if (term == null) {
+                if (delta < 0) {
+                    return;
+                }
+                term = new Term(text.trim(), 0);
+                node.term = term;
+                termCount++;
+            }
+            // 2. 更新权重和路径上的 topK
+            term.weight += delta;
+            if (term.weight <= 0) {
+                node.term = null;
+                termCount--;
+            }
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node pathNode = path.get(i);
+                if (delta > 0) {
+                    offer(pathNode, term);
+                } else {
+                    recompute(pathNode);
+                }
+                // 删除不再有词条的分支
+                if (i > 0 && pathNode.term == null && pathNode.children.isEmpty()) {
+                    path.get(i - 1).children.remove(key.charAt(i - 1));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 前缀补全
+     *
+     * @param prefix 前缀
+     * @param limit  最大返回数（不超过 topK）
+     * @return 按权重从高到低排列的词条原文
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        List<String> result = new ArrayList<>();
+        if (key.isEmpty() || limit <= 0) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) {
+                return result;
+            }
+            for (int i = 0; i < node.topTerms.size() && i < limit; i++) {
+                result.add(node.topTerms.get(i).text);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 词条数
+     *
+     * @return
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return termCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 词条权重增加后合并进节点的 topK
+     */
+    private void offer(Node node, Term term) {
+        List<Term> topTerms = node.topTerms;
+        topTerms.remove(term);
+        int index = 0;
+        while (index < topTerms.size() && TERM_COMPARATOR.compare(topTerms.get(index), term) < 0) {
+            index++;
+        }
+        if (index < topK) {
+            topTerms.add(index, term);
+            if (topTerms.size() > topK) {
+                topTerms.remove(topTerms.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * 词条权重减少后重新计算节点的 topK（子节点的 topK 已是最新）
+     */
+    private void recompute(Node node) {
+        List<Term> candidateList = new ArrayList<>();
+        if (node.term != null) {
+            candidateList.add(node.term);
+        }
+        for (Node child : node.children.values()) {
+            candidateList.addAll(child.topTerms);
+        }
+        candidateList.sort(TERM_COMPARATOR);
+        node.topTerms = new ArrayList<>(candidateList.subList(0, Math.min(topK, candidateList.size())));
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Node {
+
+        private final Map<Character, Node> children = new HashMap<>(4);
+
+        /**
+         * 以本节点结尾的词条
+         */
+        private Term term;
+
+        /**
+         * 子树中权重最高的词条
+         */
+        private List<Term> topTerms = new ArrayList<>(1);
+    }
+
+    private static class Term {
+
+        private final String text;
+
+        private long weight;
+
+        private Term(String text, long weight) {
+            this.text = text;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.iqb.programmingbank.tag;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.iqb.programmingbank.config.TagIndexConfig;
+import com.iqb.programmingbank.mapper.QuestionMapper;
+import com.iqb.programmingbank.model.entity.Question;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * 题目标签位图索引
+ * <p>
+ * 启动时按 id 游标分批从数据库加载所有题目的标签（后台加载，加载完成前不可用），
+ * 题目变更后通过 topic 通知所有节点，各节点重新读取变更的题目并增量更新位图；
+ * topic 不保证送达，另外定时与数据库全量对账。
+ * 所有写操作在同一个线程中执行，过滤和分面计数只访问内存。
+ */
+@Slf4j
+@Component
+public class QuestionTagIndex {
+
+    private static final String ID_SEPARATOR = ",";
+
+    @Resource
+    private TagIndexConfig tagIndexConfig;
+
+    @Resource
+    private QuestionMapper questionMapper;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    private final TagBitmapIndex tagBitmapIndex = new TagBitmapIndex();
+
+    private ExecutorService updateExecutor;
+
+    private RTopic changeTopic;
+
+    private int changeListenerId;
+
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() {
+        if (!tagIndexConfig.isEnabled()) {
+            return;
+        }
+        updateExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "question-tag-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        changeTopic = redissonClient.getTopic(tagIndexConfig.getChangeTopic(), StringCodec.INSTANCE);
+        changeListenerId = changeTopic.addListener(String.class, (channel, message) -> {
+            List<Long> questionIdList = StrUtil.split(message, ID_SEPARATOR).stream()
+                    .map(Long::valueOf)
+                    .collect(Collectors.toList());
+            updateExecutor.execute(() -> reload(questionIdList));
+        });
+        updateExecutor.execute(this::load);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (updateExecutor == null) {
+            return;
+        }
+        changeTopic.removeListener(changeListenerId);
+        updateExecutor.shutdownNow();
+    }
+
+    /**
+     * 索引是否可用
+     *
+     * @return
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 包含全部标签的题目
+     *
+     * @param tags
+     * @return 题目 id 位图，标签为空时返回 null
+     */
+    public RoaringBitmap and(Collection<String> tags) {
+        return tagBitmapIndex.and(tags);
+    }
+
+    /**
+     * 包含任意一个标签的题目
+     *
+     * @param tags
+     * @return 题目 id 位图，标签为空时返回 null
+     */
+    public RoaringBitmap or(Collection<String> tags) {
+        return tagBitmapIndex.or(tags);
+    }
+
+    /**
+     * 标签分面计数
+     *
+     * @param filter 参与计数的题目，为 null 时统计全部题目
+     * @param limit  最多返回的标签数
+     * @return 标签 => 题目数，按题目数从多到少排列
+     */
+    public Map<String, Integer> facets(RoaringBitmap filter, int limit) {
+        return tagBitmapIndex.facets(filter, Math.min(limit, tagIndexConfig.getMaxFacetSize()));
+    }
+
+    /**
+     * 题目变更后调用，有事务时在提交后通知所有节点更新
+     *
+     * @param questionIds
+     */
+    public void refresh(Collection<Long> questionIds) {
+        if (updateExecutor == null || CollUtil.isEmpty(questionIds)) {
+            return;
+        }
+        String message = CollUtil.join(questionIds, ID_SEPARATOR);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(message);
+                }
+            });
+            return;
+        }
+        publish(message);
+    }
+
+    /**
+     * 定时全量对账
+     */
+    @Scheduled(initialDelayString = "${tag-index.resync-interval-millis:600000}",
+            fixedDelayString = "${tag-index.resync-interval-millis:600000}")
+    public void resync() {
+        if (updateExecutor == null) {
+            return;
+        }
+        updateExecutor.execute(this::load);
+    }
+
+    private void publish(String message) {
+        try {
+            changeTopic.publish(message);
+        } catch (Exception e) {
+            log.error("question tag change publish failed, ids: {}", message, e);
+        }
+    }
+
+    /**
+     * 加载所有题目，并删除数据库中已不存在的题目（首次加载和对账共用）
+     */
+    private void load() {
+        long startTime = System.currentTimeMillis();
+        long lastId = 0;
+        RoaringBitmap loadedIdBitmap = new RoaringBitmap();
+        try {
+            while (true) {
+                LambdaQueryWrapper<Question> queryWrapper = Wrappers.lambdaQuery(Question.class)
+                        .select(Question::getId, Question::getTags)
+                        .gt(Question::getId, lastId)
+                        .orderByAsc(Question::getId)
+                        .last("limit " + tagIndexConfig.getLoadBatchSize());
+                List<Question> questionList = questionMapper.selectList(queryWrapper);
+                if (questionList.isEmpty()) {
+                    break;
+                }
+                for (Question question : questionList) {
+                    apply(question.getId(), getTags(question));
+                    if (question.getId() <= Integer.MAX_VALUE) {
+                        loadedIdBitmap.add(question.getId().intValue());
+                    }
+                }
+                lastId = questionList.get(questionList.size() - 1).getId();
+            }
+            // 所有写操作都在当前线程，扫描期间的变更通知会排在对账之后处理
+            RoaringBitmap staleIdBitmap = RoaringBitmap.andNot(tagBitmapIndex.questionIds(), loadedIdBitmap);
+            staleIdBitmap.forEach((int questionId) -> tagBitmapIndex.update(questionId, Collections.emptyList()));
+            ready = true;
+            log.info("question tag index loaded, questions: {}, stale: {}, cost: {} ms",
+                    tagBitmapIndex.questionCount(), staleIdBitmap.getCardinality(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("question tag index load failed, last id: {}", lastId, e);
+        }
+    }
+
+    /**
+     * 重新读取变更的题目（包括已删除的）
+     */
+    private void reload(List<Long> questionIdList) {
+        try {
+            Map<Long, Question> questionMap = questionMapper.listQuestionWithDeleteByIds(questionIdList).stream()
+                    .collect(Collectors.toMap(Question::getId, question -> question, (a, b) -> a));
+            for (Long questionId : questionIdList) {
+                Question question = questionMap.get(questionId);
+                boolean deleted = question == null || Integer.valueOf(1).equals(question.getIsDelete());
+                apply(questionId, deleted ? Collections.emptyList() : getTags(question));
+            }
+        } catch (Exception e) {
+            log.error("question tag index reload failed, ids: {}", questionIdList, e);
+        }
+    }
+
+    private void apply(long questionId, List<String> tags) {
+        if (questionId > Integer.MAX_VALUE) {
+            // 题目 id 为自增主键，正常不会超出 int 范围
+            log.warn("question id out of bitmap range, questionId: {}", questionId);
+            ready = false;
+            return;
+        }
+        tagBitmapIndex.update((int) questionId, tags);
+    }
+
+    private static List<String> getTags(Question question) {
+        if (!JSONUtil.isTypeJSONArray(question.getTags())) {
+            return Collections.emptyList();
+        }
+        return JSONUtil.toList(question.getTags(), String.class);
+    }
+}
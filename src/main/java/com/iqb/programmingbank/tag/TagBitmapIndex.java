@@ -0,0 +1,234 @@
+package com.iqb.programmingbank.tag;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 标签位图索引（线程安全）
+ * <p>
+ * 标签字典把标签字符串（忽略大小写）映射为连续的 int 编号，每个编号对应一个包含该标签的题目 id 位图，
+ * 同时记录每个题目当前的标签编号，题目变更时只对比新旧标签增量修改位图。
+ * 多标签的与、或过滤和标签分面计数都只做位图运算，不访问数据库。
+ */
+public class TagBitmapIndex {
+
+    private static final int[] EMPTY_TAG_IDS = new int[0];
+
+    /**
+     * 标签（小写） => 编号
+     */
+    private final Map<String, Integer> tagIdMap = new HashMap<>();
+
+    /**
+     * 编号 => 标签（首次出现时的写法）
+     */
+    private final List<String> tagList = new ArrayList<>();
+
+    /**
+     * 编号 => 题目 id 位图
+     */
+    private final List<RoaringBitmap> bitmapList = new ArrayList<>();
+
+    /**
+     * 题目 id => 标签编号（有序）
+     */
+    private final Map<Integer, int[]> questionTagIdsMap = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 设置题目的标签（幂等），标签为空表示删除题目
+     *
+     * @param questionId 题目 id
+     * @param tags       题目的全部标签
+     */
+    public void update(int questionId, Collection<String> tags) {
+        lock.writeLock().lock();
+        try {
+            int[] newTagIds = internAll(tags);
+            int[] oldTagIds = newTagIds.length == 0
+                    ? questionTagIdsMap.remove(questionId)
+                    : questionTagIdsMap.put(questionId, newTagIds);
+            if (oldTagIds == null) {
+                oldTagIds = EMPTY_TAG_IDS;
+            }
+            for (int tagId : oldTagIds) {
+                if (Arrays.binarySearch(newTagIds, tagId) < 0) {
+                    bitmapList.get(tagId).remove(questionId);
+                }
+            }
+            for (int tagId : newTagIds) {
+                if (Arrays.binarySearch(oldTagIds, tagId) < 0) {
+                    bitmapList.get(tagId).add(questionId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 包含全部标签的题目
+     *
+     * @param tags 标签
+     * @return 题目 id 位图（副本），标签为空时返回 null 表示不限制
+     */
+    public RoaringBitmap and(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> bitmaps = new ArrayList<>(tags.size());
+            for (String tag : tags) {
+                Integer tagId = tagIdMap.get(normalize(tag));
+                if (tagId == null) {
+                    return new RoaringBitmap();
+                }
+                bitmaps.add(bitmapList.get(tagId));
+            }
+            // 从最小的位图开始求交集
+            bitmaps.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+            RoaringBitmap result = bitmaps.get(0).clone();
+            for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+                result.and(bitmaps.get(i));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 包含任意一个标签的题目
+     *
+     * @param tags 标签
+     * @return 题目 id 位图（副本），标签为空时返回 null 表示不限制
+     */
+    public RoaringBitmap or(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = new RoaringBitmap();
+            for (String tag : tags) {
+                Integer tagId = tagIdMap.get(normalize(tag));
+                if (tagId != null) {
+                    result.or(bitmapList.get(tagId));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 标签分面计数
+     *
+     * @param filter 参与计数的题目，为 null 时统计全部题目
+     * @param limit  最多返回的标签数
+     * @return 标签 => 题目数，按题目数从多到少排列，不包含计数为 0 的标签
+     */
+    public Map<String, Integer> facets(RoaringBitmap filter, int limit) {
+        List<Map.Entry<String, Integer>> countList = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int tagId = 0; tagId < bitmapList.size(); tagId++) {
+                RoaringBitmap bitmap = bitmapList.get(tagId);
+                int count = filter == null
+                        ? bitmap.getCardinality()
+                        : RoaringBitmap.andCardinality(bitmap, filter);
+                if (count > 0) {
+                    countList.add(new AbstractMap.SimpleImmutableEntry<>(tagList.get(tagId), count));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        countList.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.<String, Integer>comparingByKey()));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < countList.size() && i < limit; i++) {
+            result.put(countList.get(i).getKey(), countList.get(i).getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 有标签的题目
+     *
+     * @return 题目 id 位图（副本）
+     */
+    public RoaringBitmap questionIds() {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = new RoaringBitmap();
+            questionTagIdsMap.keySet().forEach(result::add);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 有标签的题目数
+     *
+     * @return
+     */
+    public int questionCount() {
+        lock.readLock().lock();
+        try {
+            return questionTagIdsMap.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把标签转换为有序、去重的编号，新标签加入字典
+     */
+    private int[] internAll(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return EMPTY_TAG_IDS;
+        }
+        Set<Integer> tagIdSet = new LinkedHashSet<>();
+        for (String tag : tags) {
+            String key = normalize(tag);
+            if (key.isEmpty()) {
+                continue;
+            }
+            Integer tagId = tagIdMap.get(key);
+            if (tagId == null) {
+                tagId = tagList.size();
+                tagIdMap.put(key, tagId);
+                tagList.add(tag.trim());
+                bitmapList.add(new RoaringBitmap());
+            }
+            tagIdSet.add(tagId);
+        }
+        return tagIdSet.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * 与 question_tag 表的比较规则一致，忽略大小写
+     */
+    private static String normalize(String tag) {
+        return tag == null ? "" : tag.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,154 @@
+package com.iqb.programmingbank.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.ReflectUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.iqb.programmingbank.common.CursorPage;
+import com.iqb.programmingbank.common.ErrorCode;
+import com.iqb.programmingbank.common.PageRequest;
+import com.iqb.programmingbank.constant.CommonConstant;
+import com.iqb.programmingbank.exception.BusinessException;
+import com.iqb.programmingbank.exception.ThrowUtils;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 分页工具，支持普通分页（offset + count）和游标分页（keyset）
+ * <p>
+ * 游标分页按 sortField + id 排序，游标记录上一页最后一条的排序值和 id，
+ * 下一页用 where (sortField, id) 在游标之后的条件查询，不随页码变慢，默认也不查询总数。
+ */
+public class CursorPageUtils {
+
+    private static final String ID_FIELD = "id";
+
+    private static final String CURSOR_SEPARATOR = ":";
+
+    /**
+     * 分页查询，请求中 cursor 不为 null 时使用游标分页
+     *
+     * @param service      实体对应的服务
+     * @param queryWrapper 查询条件（已按 sortField 排序）
+     * @param pageRequest  分页请求
+     * @param <T>
+     * @return 游标分页时返回 {@link CursorPage}
+     */
+    public static <T> Page<T> page(IService<T> service, QueryWrapper<T> queryWrapper, PageRequest pageRequest) {
+        long size = pageRequest.getPageSize();
+        String cursor = pageRequest.getCursor();
+        // 普通分页
+        if (cursor == null) {
+            Page<T> page = new Page<>(pageRequest.getCurrent(), size, !Boolean.FALSE.equals(pageRequest.getSearchCount()));
+            return service.page(page, queryWrapper);
+        }
+        ThrowUtils.throwIf(size <= 0, ErrorCode.PARAMS_ERROR);
+        // 排序字段必须是实体字段，否则无法从记录中取出游标值
+        String sortField = pageRequest.getSortField();
+        boolean asc = CommonConstant.SORT_ORDER_ASC.equals(pageRequest.getSortOrder());
+        Field sortFieldDef = null;
+        if (SqlUtils.validSortField(sortField) && !ID_FIELD.equals(sortField)) {
+            sortFieldDef = ReflectUtil.getField(service.getEntityClass(), sortField);
+            ThrowUtils.throwIf(sortFieldDef == null, ErrorCode.PARAMS_ERROR, "sort field not supported");
+        }
+        CursorPage<T> cursorPage = new CursorPage<>(size);
+        // 总数与游标无关，需要时在加游标条件之前查询
+        if (Boolean.TRUE.equals(pageRequest.getSearchCount())) {
+            cursorPage.setTotal(service.count(queryWrapper));
+        }
+        // id 作为第二排序字段，保证顺序稳定
+        if (!ID_FIELD.equals(sortField)) {
+            queryWrapper.orderBy(true, asc, ID_FIELD);
+        }
+        if (!cursor.isEmpty()) {
+            applyCursor(queryWrapper, sortFieldDef, asc, cursor);
+        }
+        // 多查一条判断是否还有下一页
+        queryWrapper.last("limit " + (size + 1));
+        List<T> recordList = service.list(queryWrapper);
+        if (recordList.size() > size) {
+            recordList = recordList.subList(0, (int) size);
+            cursorPage.setNextCursor(encodeCursor(recordList.get(recordList.size() - 1), sortFieldDef));
+        }
+        cursorPage.setRecords(recordList);
+        return cursorPage;
+    }
+
+    /**
+     * 创建与原分页结果参数相同的空分页（用于转换封装类，保留游标）
+     *
+     * @param source
+     * @param <T>
+     * @return
+     */
+    public static <T> Page<T> newPage(Page<?> source) {
+        if (source instanceof CursorPage) {
+            CursorPage<T> cursorPage = new CursorPage<>(source.getSize());
+            cursorPage.setTotal(source.getTotal());
+            cursorPage.setNextCursor(((CursorPage<?>) source).getNextCursor());
+            return cursorPage;
+        }
+        return new Page<>(source.getCurrent(), source.getSize(), source.getTotal());
+    }
+
+    /**
+     * 追加游标条件（MySQL 中 null 最小：升序排在最前，降序排在最后）
+     */
+    private static <T> void applyCursor(QueryWrapper<T> queryWrapper, Field sortFieldDef, boolean asc, String cursor) {
+        // 游标格式：id[:排序值]，排序值为 null 时只有 id
+        String decodedCursor = Base64.decodeStr(cursor, StandardCharsets.UTF_8);
+        int separatorIndex = decodedCursor.indexOf(CURSOR_SEPARATOR);
+        String idPart = separatorIndex < 0 ? decodedCursor : decodedCursor.substring(0, separatorIndex);
+        String valuePart = separatorIndex < 0 ? null : decodedCursor.substring(separatorIndex + 1);
+        Long lastId = Convert.toLong(idPart, null);
+        ThrowUtils.throwIf(lastId == null, ErrorCode.PARAMS_ERROR, "invalid cursor");
+        if (sortFieldDef == null) {
+            queryWrapper.gt(asc, ID_FIELD, lastId).lt(!asc, ID_FIELD, lastId);
+            return;
+        }
+        String column = sortFieldDef.getName();
+        Object value = decodeSortValue(valuePart, sortFieldDef);
+        if (value == null) {
+            if (asc) {
+                queryWrapper.and(qw -> qw.and(w -> w.isNull(column).gt(ID_FIELD, lastId)).or().isNotNull(column));
+            } else {
+                queryWrapper.isNull(column).lt(ID_FIELD, lastId);
+            }
+        } else if (asc) {
+            queryWrapper.and(qw -> qw.gt(column, value).or(w -> w.eq(column, value).gt(ID_FIELD, lastId)));
+        } else {
+            queryWrapper.and(qw -> qw.lt(column, value).or(w -> w.eq(column, value).lt(ID_FIELD, lastId)).or().isNull(column));
+        }
+    }
+
+    private static String encodeCursor(Object record, Field sortFieldDef) {
+        Object sortValue = sortFieldDef == null ? null : ReflectUtil.getFieldValue(record, sortFieldDef);
+        if (sortValue instanceof Date) {
+            sortValue = ((Date) sortValue).getTime();
+        }
+        String decodedCursor = String.valueOf(ReflectUtil.getFieldValue(record, ID_FIELD));
+        if (sortValue != null) {
+            decodedCursor += CURSOR_SEPARATOR + sortValue;
+        }
+        return Base64.encodeUrlSafe(decodedCursor, StandardCharsets.UTF_8);
+    }
+
+    private static Object decodeSortValue(String value, Field sortFieldDef) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (Date.class.isAssignableFrom(sortFieldDef.getType())) {
+                return new Date(Convert.toLong(value));
+            }
+            return Convert.convert(sortFieldDef.getType(), value);
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "invalid cursor");
+        }
+    }
+}
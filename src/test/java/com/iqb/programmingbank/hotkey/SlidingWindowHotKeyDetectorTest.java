@@ -0,0 +1,69 @@
+package com.iqb.programmingbank.hotkey;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+class SlidingWindowHotKeyDetectorTest {
+
+    @Test
+    void access() {
+        SlidingWindowHotKeyDetector detector = new SlidingWindowHotKeyDetector(3, 5, 2, 4, 1024);
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertFalse(detector.access("bank_detail_1:basic"));
+        }
+        Assertions.assertTrue(detector.access("bank_detail_1:basic"));
+        Assertions.assertFalse(detector.access("bank_detail_2:basic"));
+        Assertions.assertTrue(detector.isHot("bank_detail_1:basic"));
+    }
+
+    @Test
+    void topK() {
+        SlidingWindowHotKeyDetector detector = new SlidingWindowHotKeyDetector(3, 2, 1, 4, 1024);
+        for (int i = 0; i < 2; i++) {
+            detector.access("a");
+        }
+        for (int i = 0; i < 3; i++) {
+            detector.access("b");
+        }
+        // 容量为 1，访问更多的 b 挤掉 a
+        Assertions.assertTrue(detector.isHot("b"));
+        Assertions.assertFalse(detector.isHot("a"));
+    }
+
+    @Test
+    void admissionAfterRotate() {
+        SlidingWindowHotKeyDetector detector = new SlidingWindowHotKeyDetector(3, 2, 1, 4, 1024);
+        for (int i = 0; i < 2; i++) {
+            detector.access("a");
+        }
+        // Top-K 已满且 b 的次数不超过 a，无法进入
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertFalse(detector.access("b"));
+        }
+        for (int i = 0; i < 3; i++) {
+            detector.rotate();
+        }
+        Assertions.assertFalse(detector.isHot("a"));
+        // a 冷却后腾出位置
+        Assertions.assertFalse(detector.access("b"));
+        Assertions.assertTrue(detector.access("b"));
+    }
+
+    @Test
+    void rotate() {
+        SlidingWindowHotKeyDetector detector = new SlidingWindowHotKeyDetector(3, 5, 10, 4, 1024);
+        for (int i = 0; i < 5; i++) {
+            detector.access("question_detail_1");
+        }
+        Assertions.assertTrue(detector.isHot("question_detail_1"));
+        // 窗口滑过 3 个分片后计数归零
+        Assertions.assertTrue(detector.rotate().isEmpty());
+        Assertions.assertTrue(detector.rotate().isEmpty());
+        Set<String> cooledKeys = detector.rotate();
+        Assertions.assertTrue(cooledKeys.contains("question_detail_1"));
+        Assertions.assertEquals(0, detector.estimate("question_detail_1"));
+        Assertions.assertFalse(detector.isHot("question_detail_1"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.iqb.programmingbank.localsearch;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.iqb.programmingbank.common.CursorPage;
+import com.iqb.programmingbank.config.EsSearchConfig;
+import com.iqb.programmingbank.config.EsSyncConfig;
+import com.iqb.programmingbank.config.LocalSearchConfig;
+import com.iqb.programmingbank.manager.SearchCacheManager;
+import com.iqb.programmingbank.mapper.EsSyncOutboxMapper;
+import com.iqb.programmingbank.mapper.QuestionMapper;
+import com.iqb.programmingbank.model.dto.question.QuestionQueryRequest;
+import com.iqb.programmingbank.model.entity.EsSyncOutbox;
+import com.iqb.programmingbank.model.entity.Question;
+import com.iqb.programmingbank.model.enums.EsSyncEntityTypeEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class LocalQuestionIndexTest {
+
+    @TempDir
+    Path indexPath;
+
+    private QuestionMapper questionMapper;
+
+    private EsSyncOutboxMapper esSyncOutboxMapper;
+
+    private LocalQuestionIndex localQuestionIndex;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        LocalSearchConfig localSearchConfig = new LocalSearchConfig();
+        localSearchConfig.setEnabled(true);
+        localSearchConfig.setIndexPath(indexPath.toString());
+        questionMapper = Mockito.mock(QuestionMapper.class);
+        esSyncOutboxMapper = Mockito.mock(EsSyncOutboxMapper.class);
+        // 重建时读到三道题
+        Mockito.when(questionMapper.selectList(ArgumentMatchers.any())).thenReturn(
+                Arrays.asList(
+                        newQuestion(1, "Redis 为什么这么快", "[\"Redis\"]"),
+                        newQuestion(2, "Redis 持久化方式", "[\"Redis\",\"存储\"]"),
+                        newQuestion(3, "Java 线程池参数", "[\"Java\"]")),
+                Collections.emptyList());
+        localQuestionIndex = new LocalQuestionIndex();
+        ReflectionTestUtils.setField(localQuestionIndex, "localSearchConfig", localSearchConfig);
+        ReflectionTestUtils.setField(localQuestionIndex, "esSyncConfig", new EsSyncConfig());
+        ReflectionTestUtils.setField(localQuestionIndex, "esSearchConfig", new EsSearchConfig());
+        ReflectionTestUtils.setField(localQuestionIndex, "questionMapper", questionMapper);
+        ReflectionTestUtils.setField(localQuestionIndex, "esSyncOutboxMapper", esSyncOutboxMapper);
+        ReflectionTestUtils.setField(localQuestionIndex, "searchCacheManager", Mockito.mock(SearchCacheManager.class));
+        localQuestionIndex.init();
+        // 等待后台重建完成
+        for (int i = 0; i < 500 && !localQuestionIndex.isReady(); i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(localQuestionIndex.isReady());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        localQuestionIndex.destroy();
+    }
+
+    @Test
+    void search() {
+        Assertions.assertEquals(Arrays.asList(1L, 2L), searchIds(newRequest("redis", null), null));
+        Assertions.assertEquals(Collections.singletonList(2L), searchIds(newRequest(null, "存储"), null));
+        // 题库过滤
+        Assertions.assertEquals(Collections.singletonList(2L),
+                searchIds(newRequest("Redis", null), RoaringBitmap.bitmapOf(2, 3)));
+        Assertions.assertEquals(Collections.emptyList(), searchIds(newRequest("Go", null), null));
+    }
+
+    @Test
+    void cursorPaging() {
+        QuestionQueryRequest questionQueryRequest = newRequest(null, null);
+        questionQueryRequest.setSortField("id");
+        questionQueryRequest.setPageSize(2);
+        questionQueryRequest.setCursor("");
+        CursorPage<Question> firstPage = (CursorPage<Question>) localQuestionIndex.search(questionQueryRequest, null);
+        Assertions.assertEquals(Arrays.asList(3L, 2L), toIds(firstPage));
+        Assertions.assertNotNull(firstPage.getNextCursor());
+        questionQueryRequest.setCursor(firstPage.getNextCursor());
+        CursorPage<Question> secondPage = (CursorPage<Question>) localQuestionIndex.search(questionQueryRequest, null);
+        Assertions.assertEquals(Collections.singletonList(1L), toIds(secondPage));
+        Assertions.assertNull(secondPage.getNextCursor());
+    }
+
+    @Test
+    void poll() {
+        // 题目 1 被删除，题目 3 修改了标题
+        Mockito.when(esSyncOutboxMapper.listAfter(ArgumentMatchers.eq(0L), ArgumentMatchers.anyInt()))
+                .thenReturn(Arrays.asList(newOutbox(1, 1), newOutbox(2, 3)));
+        Question deletedQuestion = newQuestion(1, "Redis 为什么这么快", "[\"Redis\"]");
+        deletedQuestion.setIsDelete(1);
+        Mockito.when(questionMapper.listQuestionWithDeleteByIds(ArgumentMatchers.anyCollection()))
+                .thenReturn(Arrays.asList(deletedQuestion, newQuestion(3, "Redis 和 Java 的线程模型", "[\"Java\"]")));
+        localQuestionIndex.poll();
+        Assertions.assertEquals(Arrays.asList(2L, 3L), searchIds(newRequest("redis", null), null));
+        // 位点推进后不再重复读取
+        localQuestionIndex.poll();
+        Mockito.verify(esSyncOutboxMapper).listAfter(ArgumentMatchers.eq(2L), ArgumentMatchers.anyInt());
+    }
+
+    private List<Long> searchIds(QuestionQueryRequest questionQueryRequest, RoaringBitmap questionIdBitmap) {
+        return toIds(localQuestionIndex.search(questionQueryRequest, questionIdBitmap)).stream()
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> toIds(Page<Question> page) {
+        return page.getRecords().stream().map(Question::getId).collect(Collectors.toList());
+    }
+
+    private static QuestionQueryRequest newRequest(String searchText, String tag) {
+        QuestionQueryRequest questionQueryRequest = new QuestionQueryRequest();
+        questionQueryRequest.setSearchText(searchText);
+        if (tag != null) {
+            questionQueryRequest.setTags(Collections.singletonList(tag));
+        }
+        questionQueryRequest.setPageSize(10);
+        return questionQueryRequest;
+    }
+
+    private static Question newQuestion(long id, String title, String tags) {
+        Question question = new Question();
+        question.setId(id);
+        question.setTitle(title);
+        question.setContent(title);
+        question.setTags(tags);
+        question.setUserId(1L);
+        question.setCreateTime(new Date());
+        question.setIsDelete(0);
+        return question;
+    }
+
+    private static EsSyncOutbox newOutbox(long id, long questionId) {
+        EsSyncOutbox outbox = new EsSyncOutbox();
+        outbox.setId(id);
+        outbox.setEntityType(EsSyncEntityTypeEnum.QUESTION.getValue());
+        outbox.setEntityId(questionId);
+        outbox.setCreateTime(new Date());
+        return outbox;
+    }
+}
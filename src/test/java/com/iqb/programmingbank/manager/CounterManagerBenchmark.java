@@ -0,0 +1,123 @@
+package com.iqb.programmingbank.manager;
+
+import com.iqb.programmingbank.config.CounterConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.redisson.Redisson;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.IntegerCodec;
+import org.redisson.config.Config;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CounterManager 吞吐量基准测试：原始 EVAL 实现 vs EVALSHA vs 批量模式
+ * <p>
+ * 需要本地 Redis（-Dredis.address=redis://127.0.0.1:6379），直接运行 main 方法即可。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(32)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CounterManagerBenchmark {
+
+    /**
+     * 模拟访问的用户数
+     */
+    private static final int USER_COUNT = 1000;
+
+    private RedissonClient redissonClient;
+
+    private CounterManager evalShaCounterManager;
+
+    private CounterManager batchCounterManager;
+
+    @Setup
+    public void setup() {
+        Config config = new Config();
+        config.useSingleServer().setAddress(System.getProperty("redis.address", "redis://127.0.0.1:6379"));
+        redissonClient = Redisson.create(config);
+        evalShaCounterManager = createCounterManager(false);
+        batchCounterManager = createCounterManager(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        batchCounterManager.destroy();
+        evalShaCounterManager.destroy();
+        redissonClient.shutdown();
+    }
+
+    /**
+     * 原始实现：每次拼接 Lua 脚本并 EVAL
+     */
+    @Benchmark
+    public long legacyEval() {
+        String redisKey = randomKey("bench:legacy") + ":" + Instant.now().getEpochSecond() / 60;
+        String luaScript =
+                "if redis.call('exists', KEYS[1]) == 1 then " +
+                        "  return redis.call('incr', KEYS[1]); " +
+                        "else " +
+                        "  redis.call('set', KEYS[1], 1); " +
+                        "  redis.call('expire', KEYS[1], ARGV[1]); " +
+                        "  return 1; " +
+                        "end";
+        RScript script = redissonClient.getScript(IntegerCodec.INSTANCE);
+        Object countObj = script.eval(RScript.Mode.READ_WRITE, luaScript, RScript.ReturnType.INTEGER,
+                Collections.singletonList(redisKey), 180L);
+        return (long) countObj;
+    }
+
+    @Benchmark
+    public long evalSha() {
+        return evalShaCounterManager.incrAndGetCounter(randomKey("bench:sha"), 1, TimeUnit.MINUTES, 180);
+    }
+
+    @Benchmark
+    public long batch() {
+        return batchCounterManager.incrAndGetCounter(randomKey("bench:batch"), 1, TimeUnit.MINUTES, 180);
+    }
+
+    private CounterManager createCounterManager(boolean batchEnabled) {
+        CounterConfig counterConfig = new CounterConfig();
+        counterConfig.setBatchEnabled(batchEnabled);
+        CounterManager counterManager = new CounterManager();
+        ReflectionTestUtils.setField(counterManager, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(counterManager, "counterConfig", counterConfig);
+        counterManager.init();
+        return counterManager;
+    }
+
+    private static String randomKey(String prefix) {
+        return prefix + ":" + ThreadLocalRandom.current().nextInt(USER_COUNT);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CounterManagerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,33 @@
+package com.iqb.programmingbank.practice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IdListCodecTest {
+
+    @Test
+    void encodeAndDecode() {
+        long[] ids = {1830000000000000001L, 300, 5, 300, 127, 128};
+        byte[] bytes = IdListCodec.encode(ids);
+        Assertions.assertArrayEquals(new long[]{5, 127, 128, 300, 1830000000000000001L}, IdListCodec.decode(bytes));
+        Assertions.assertEquals(0, IdListCodec.decode(null).length);
+        Assertions.assertEquals(0, IdListCodec.encode(new long[0]).length);
+        // 相邻 id 只占 1 个字节
+        Assertions.assertEquals(4, IdListCodec.encode(new long[]{100, 101, 102, 103}).length);
+    }
+
+    @Test
+    void add() {
+        byte[] bytes = IdListCodec.add(null, 200);
+        bytes = IdListCodec.add(bytes, 100);
+        Assertions.assertArrayEquals(new long[]{100, 200}, IdListCodec.decode(bytes));
+        // 已存在时不修改
+        Assertions.assertNull(IdListCodec.add(bytes, 200));
+    }
+
+    @Test
+    void malformed() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IdListCodec.decode(new byte[]{(byte) 0x80}));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IdListCodec.encode(new long[]{-1}));
+    }
+}
@@ -0,0 +1,42 @@
+package com.iqb.programmingbank.service.impl;
+
+import com.iqb.programmingbank.model.entity.Comment;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class CommentTreeTest {
+
+    @Test
+    void build() {
+        // 1 <- 2 <- 3（回复的回复），4 为另一条顶级评论，6 的父评论已删除
+        CommentServiceImpl.CommentTree commentTree = CommentServiceImpl.CommentTree.build(Arrays.asList(
+                comment(1, 0, 10L), comment(2, 1, 20L), comment(3, 2, 30L),
+                comment(4, null, 40L), comment(6, 5, 60L)));
+        Assertions.assertEquals(2, commentTree.getTopCommentList().size());
+        Assertions.assertEquals(Collections.singletonList(2), ids(commentTree, 1));
+        Assertions.assertEquals(Collections.singletonList(3), ids(commentTree, 2));
+        Assertions.assertTrue(commentTree.getReplyList(3).isEmpty());
+        Assertions.assertTrue(commentTree.getReplyList(5).isEmpty());
+        // 回复的被回复人
+        Comment reply = comment(7, 2, 70L);
+        reply.setBid(3);
+        Assertions.assertEquals(30L, commentTree.getReplyUserId(reply));
+    }
+
+    private static List<Integer> ids(CommentServiceImpl.CommentTree commentTree, int rid) {
+        return commentTree.getReplyList(rid).stream().map(Comment::getId).collect(Collectors.toList());
+    }
+
+    private static Comment comment(int id, Integer rid, Long userId) {
+        Comment comment = new Comment();
+        comment.setId(id);
+        comment.setRid(rid);
+        comment.setUserId(userId);
+        return comment;
+    }
+}
@@ -0,0 +1,53 @@
+package com.iqb.programmingbank.signin;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+class SignInStatsTest {
+
+    @Test
+    void currentStreak() {
+        BitSet signIns = bitSetOf(1, 2, 3, 10, 11, 12);
+        Assertions.assertEquals(3, SignInStats.currentStreak(signIns, 12, null, 365));
+        // 当天还没签到，前一天的连续记录仍然有效
+        Assertions.assertEquals(3, SignInStats.currentStreak(signIns, 13, null, 365));
+        Assertions.assertEquals(0, SignInStats.currentStreak(signIns, 14, null, 365));
+        // 跨年连续
+        BitSet lastYear = bitSetOf(360, 363, 364, 365);
+        Assertions.assertEquals(6, SignInStats.currentStreak(signIns, 3, lastYear, 365));
+        Assertions.assertEquals(3, SignInStats.currentStreak(new BitSet(), 1, lastYear, 365));
+    }
+
+    @Test
+    void longestStreak() {
+        Assertions.assertEquals(4, SignInStats.longestStreak(bitSetOf(1, 2, 5, 6, 7, 8, 20)));
+        Assertions.assertEquals(0, SignInStats.longestStreak(new BitSet()));
+    }
+
+    @Test
+    void monthlyCounts() {
+        // 2024 为闰年：第 31 天为 1 月 31 日，第 60 天为 2 月 29 日，第 366 天为 12 月 31 日
+        int[] counts = SignInStats.monthlyCounts(bitSetOf(1, 31, 32, 60, 366), 2024);
+        Assertions.assertEquals(2, counts[0]);
+        Assertions.assertEquals(2, counts[1]);
+        Assertions.assertEquals(1, counts[11]);
+        Assertions.assertEquals(5, counts[0] + counts[1] + counts[11]);
+    }
+
+    @Test
+    void fromRedisBitmap() {
+        // SETBIT key 1 1、SETBIT key 8 1 后 GET 得到 0x40 0x80
+        Assertions.assertEquals(bitSetOf(1, 8), SignInStats.fromRedisBitmap(new byte[]{0x40, (byte) 0x80}));
+        Assertions.assertTrue(SignInStats.fromRedisBitmap(null).isEmpty());
+    }
+
+    private static BitSet bitSetOf(int... days) {
+        BitSet bitSet = new BitSet();
+        for (int day : days) {
+            bitSet.set(day);
+        }
+        return bitSet;
+    }
+}
@@ -0,0 +1,46 @@
+package com.iqb.programmingbank.suggest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+class SuggestTrieTest {
+
+    @Test
+    void suggest() {
+        SuggestTrie trie = new SuggestTrie(3);
+        trie.add("Redis 持久化", 1);
+        trie.add("Redis", 5);
+        trie.add("Redis 集群", 2);
+        trie.add("RabbitMQ", 3);
+        // 权重高的在前，不区分大小写
+        Assertions.assertEquals(Arrays.asList("Redis", "Redis 集群", "Redis 持久化"), trie.suggest("re", 10));
+        Assertions.assertEquals(Arrays.asList("Redis", "RabbitMQ", "Redis 集群"), trie.suggest("R", 10));
+        Assertions.assertEquals(Collections.singletonList("Redis"), trie.suggest("r", 1));
+        Assertions.assertTrue(trie.suggest("java", 10).isEmpty());
+        Assertions.assertEquals(4, trie.size());
+    }
+
+    @Test
+    void remove() {
+        SuggestTrie trie = new SuggestTrie(2);
+        trie.add("Java", 3);
+        trie.add("JavaScript", 2);
+        trie.add("JVM", 1);
+        Assertions.assertEquals(Arrays.asList("Java", "JavaScript"), trie.suggest("j", 10));
+        // 删除后由子树中的其他词条补上
+        trie.add("Java", -3);
+        Assertions.assertEquals(Arrays.asList("JavaScript", "JVM"), trie.suggest("j", 10));
+        Assertions.assertEquals(Collections.singletonList("JavaScript"), trie.suggest("java", 10));
+        // 降权后重新排序
+        trie.add("JavaScript", -1);
+        trie.add("JVM", 1);
+        Assertions.assertEquals(Arrays.asList("JVM", "JavaScript"), trie.suggest("j", 10));
+        trie.add("JVM", -2);
+        trie.add("JavaScript", -1);
+        Assertions.assertTrue(trie.suggest("j", 10).isEmpty());
+        Assertions.assertEquals(0, trie.size());
+    }
+}
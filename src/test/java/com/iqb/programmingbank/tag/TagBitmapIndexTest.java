@@ -0,0 +1,69 @@
+package com.iqb.programmingbank.tag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+class TagBitmapIndexTest {
+
+    @Test
+    void filter() {
+        TagBitmapIndex index = new TagBitmapIndex();
+        index.update(1, Arrays.asList("Java", "Redis"));
+        index.update(2, Arrays.asList("Java", "MySQL"));
+        index.update(3, Collections.singletonList("Redis"));
+        Assertions.assertEquals(RoaringBitmap.bitmapOf(1), index.and(Arrays.asList("Java", "Redis")));
+        Assertions.assertEquals(RoaringBitmap.bitmapOf(1, 2, 3), index.or(Arrays.asList("MySQL", "Redis", "Java")));
+        Assertions.assertTrue(index.and(Arrays.asList("Java", "Go")).isEmpty());
+        Assertions.assertNull(index.and(Collections.emptyList()));
+        Assertions.assertEquals(3, index.questionCount());
+    }
+
+    @Test
+    void update() {
+        TagBitmapIndex index = new TagBitmapIndex();
+        index.update(1, Arrays.asList("Java", "Redis"));
+        // 重复更新幂等，只修改变化的标签
+        index.update(1, Arrays.asList("Java", "MySQL", "Java"));
+        index.update(1, Arrays.asList("Java", "MySQL"));
+        Assertions.assertEquals(RoaringBitmap.bitmapOf(1), index.and(Collections.singletonList("MySQL")));
+        Assertions.assertTrue(index.and(Collections.singletonList("Redis")).isEmpty());
+        // 删除题目
+        index.update(1, Collections.emptyList());
+        Assertions.assertTrue(index.or(Arrays.asList("Java", "MySQL")).isEmpty());
+        Assertions.assertEquals(0, index.questionCount());
+    }
+
+    @Test
+    void ignoreCase() {
+        TagBitmapIndex index = new TagBitmapIndex();
+        index.update(1, Arrays.asList("Java", "Redis"));
+        index.update(2, Arrays.asList(" java ", "MySQL"));
+        Assertions.assertEquals(RoaringBitmap.bitmapOf(1, 2), index.and(Collections.singletonList("JAVA")));
+        Assertions.assertEquals(RoaringBitmap.bitmapOf(1, 2), index.questionIds());
+        // 分面按首次出现的写法展示
+        Assertions.assertEquals(2, index.facets(null, 10).get("Java"));
+    }
+
+    @Test
+    void facets() {
+        TagBitmapIndex index = new TagBitmapIndex();
+        index.update(1, Arrays.asList("Java", "Redis"));
+        index.update(2, Arrays.asList("Java", "MySQL"));
+        index.update(3, Arrays.asList("Java", "Redis"));
+        index.update(4, Collections.singletonList("Go"));
+        Map<String, Integer> facets = index.facets(null, 10);
+        Assertions.assertEquals(Arrays.asList("Java", "Redis", "Go", "MySQL"), new ArrayList<>(facets.keySet()));
+        Assertions.assertEquals(3, facets.get("Java"));
+        // 只统计过滤后的题目，不返回计数为 0 的标签
+        Map<String, Integer> filtered = index.facets(RoaringBitmap.bitmapOf(2, 3), 2);
+        Assertions.assertEquals(2, filtered.size());
+        Assertions.assertEquals(2, filtered.get("Java"));
+        Assertions.assertEquals(1, filtered.get("MySQL"));
+    }
+}